@@ -42,6 +42,7 @@ dependencies {
 //    第一步 安装依赖
     implementation("io.github.youth5201314:banner:2.2.3")
     implementation("com.github.bumptech.glide:glide:4.12.0")
+    implementation("com.github.bumptech.glide:okhttp3-integration:4.12.0")
     implementation("androidx.recyclerview:recyclerview:1.2.1")
     // 第三方库（通过版本目录）
     implementation(libs.okhttp)
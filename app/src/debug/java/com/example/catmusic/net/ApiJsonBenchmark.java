@@ -0,0 +1,132 @@
+package com.example.catmusic.net;
+
+import android.content.Context;
+import android.os.Debug;
+import android.os.SystemClock;
+
+import com.example.catmusic.bean.LyricResponse;
+import com.example.catmusic.bean.Recommend;
+import com.example.catmusic.bean.SongUrls;
+import com.example.catmusic.bean.SongsList;
+import com.example.catmusic.utils.LogUtil;
+import com.google.gson.Gson;
+
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * 接口 JSON 解码基准测试（调试用）。
+ * 使用 debug 构建 assets/api_fixtures 下抓取的接口响应，对比旧路径
+ * （读成 String + 反射 Gson / org.json DOM）与 {@link ApiJson} 流式解码的耗时和分配字节数。
+ * 需在后台线程调用。只随 debug 构建打包，与测试数据位于同一个 source set；
+ * release 构建使用 src/release 中的同名空实现，只返回提示。
+ */
+public final class ApiJsonBenchmark {
+    private static final String TAG = "ApiJsonBenchmark";
+    private static final String FIXTURE_DIR = "api_fixtures/";
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURE_ROUNDS = 200;
+
+    private ApiJsonBenchmark() {
+    }
+
+    public static String run(Context context) {
+        StringBuilder report = new StringBuilder();
+        try {
+            report.append(compare(context, "recommend.json", Recommend.class));
+            report.append(compare(context, "album.json", SongsList.class));
+            report.append(compare(context, "songs_url.json", SongUrls.class));
+            report.append(compare(context, "lyric.json", LyricResponse.class));
+        } catch (IOException e) {
+            report.append("读取测试数据失败（assets/" + FIXTURE_DIR + "）: ").append(e.getMessage());
+        }
+        LogUtil.d(TAG, report.toString());
+        return report.toString();
+    }
+
+    private static String compare(Context context, String fixture, Class<?> type) throws IOException {
+        byte[] data = readAsset(context, FIXTURE_DIR + fixture);
+        Gson reflectGson = new Gson();
+        Decoder legacy = () -> {
+            String json = new String(data, StandardCharsets.UTF_8);
+            if (type == LyricResponse.class) {
+                // 旧版 LyricBiz 使用 org.json 构建完整 DOM
+                new JSONObject(json).optJSONObject("result").optString("lyric", "");
+            } else {
+                reflectGson.fromJson(json, type);
+            }
+        };
+        Decoder streaming = () -> ApiJson.fromJson(
+                new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8), type);
+
+        Result before = measure(legacy);
+        Result after = measure(streaming);
+        return String.format(Locale.US, "%s (%d B)\n  旧路径: %.1f µs/次, %d B/次\n  流式:   %.1f µs/次, %d B/次\n",
+                fixture, data.length, before.micros, before.bytes, after.micros, after.bytes);
+    }
+
+    private static Result measure(Decoder decoder) throws IOException {
+        try {
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                decoder.decode();
+            }
+            Runtime.getRuntime().gc();
+            long allocatedBefore = allocatedBytes();
+            long start = SystemClock.elapsedRealtimeNanos();
+            for (int i = 0; i < MEASURE_ROUNDS; i++) {
+                decoder.decode();
+            }
+            long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+            long allocated = allocatedBytes() - allocatedBefore;
+            return new Result(elapsed / 1000.0 / MEASURE_ROUNDS, Math.max(0, allocated) / MEASURE_ROUNDS);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("解码失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * ART 运行时累计分配的字节数，基准测试期间应避免其他线程大量分配
+     */
+    private static long allocatedBytes() {
+        try {
+            return Long.parseLong(Debug.getRuntimeStat("art.gc.bytes-allocated"));
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    private static byte[] readAsset(Context context, String path) throws IOException {
+        try (InputStream in = context.getAssets().open(path)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private interface Decoder {
+        void decode() throws Exception;
+    }
+
+    private static final class Result {
+        final double micros;
+        final long bytes;
+
+        Result(double micros, long bytes) {
+            this.micros = micros;
+            this.bytes = bytes;
+        }
+    }
+}
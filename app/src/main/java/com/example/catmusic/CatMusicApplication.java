@@ -2,8 +2,17 @@ package com.example.catmusic;
 
 import android.app.Application;
 
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.integration.okhttp3.OkHttpUrlLoader;
+import com.bumptech.glide.load.model.GlideUrl;
+import com.example.catmusic.biz.OfflineDownloadManager;
+import com.example.catmusic.biz.SongUrlBiz;
+
+import java.io.InputStream;
+
 /**
- * 在进程启动时初始化 {@link Config}，以便读取可选的服务器地址覆盖配置。
+ * 在进程启动时初始化 {@link Config}，以便读取可选的服务器地址覆盖配置，并在网络变化时重新确认服务器地址。
+ * 同时让 Glide 的图片请求走 {@link Config#getMediaHttpClient()}，与 API 请求共用连接池。
  */
 public class CatMusicApplication extends Application {
 
@@ -12,5 +21,12 @@ public class CatMusicApplication extends Application {
         super.onCreate();
         Config.init(this);
         Config.prefetchServerBaseUrlAsync();
+        Config.watchNetworkChanges();
+        // 提前在后台加载歌曲URL磁盘缓存
+        SongUrlBiz.getInstance(this);
+        // 继续上次未完成的离线下载
+        OfflineDownloadManager.getInstance(this).resumePending();
+        Glide.get(this).getRegistry().replace(GlideUrl.class, InputStream.class,
+                new OkHttpUrlLoader.Factory(Config.getMediaHttpClient()));
     }
 }
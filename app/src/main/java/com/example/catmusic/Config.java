@@ -1,32 +1,69 @@
 package com.example.catmusic;
 
 import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.LinkProperties;
+import android.net.Network;
 import android.text.TextUtils;
 
+import com.example.catmusic.net.ApiMetrics;
+import com.example.catmusic.net.CachingDns;
+import com.example.catmusic.net.ConnectionWarmer;
+import com.example.catmusic.net.HedgingInterceptor;
+import com.example.catmusic.net.RequestPolicy;
+import com.example.catmusic.net.RetryInterceptor;
 import com.example.catmusic.utils.LanHostResolver;
+import com.example.catmusic.utils.LogUtil;
 
-import org.json.JSONObject;
-
-import java.util.concurrent.Executor;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
 
 /**
  * 应用配置类
  * 统一管理服务器地址和API接口
  */
 public class Config {
+    private static final String TAG = "Config";
 
     public static final int SERVER_PORT = 3000;
     public static final String API_SERVER_BASE = "api/serverBase";
 
+    // 共享 OkHttpClient 的连接池与调度参数
+    private static final int HTTP_MAX_REQUESTS = 32;// 全局最大并发请求数
+    private static final int HTTP_MAX_REQUESTS_PER_HOST = 6;// 单个主机（Node 服务、图片 CDN）最大并发数
+    private static final int HTTP_MAX_IDLE_CONNECTIONS = 8;// 连接池保留的空闲 keep-alive 连接数
+    private static final long HTTP_KEEP_ALIVE_MINUTES = 5;// 空闲连接存活时间
+    private static final long API_CONNECT_TIMEOUT_SECONDS = 5;
+    private static final long API_READ_TIMEOUT_SECONDS = 10;
+    private static final long API_CALL_TIMEOUT_SECONDS = 15;// 接口请求整体超时
+    private static final long MEDIA_READ_TIMEOUT_SECONDS = 30;
+    private static final long MEDIA_CALL_TIMEOUT_SECONDS = 300;// 图片/音频请求整体超时
+    private static final long SERVER_PROBE_TIMEOUT_MILLIS = 3000;// 服务器地址探测超时
+
+    // 按网络记忆的服务器地址
+    private static final String SERVER_HOST_PREFS = "server_host";
+    private static final String KEY_BASE_URL_PREFIX = "base_url_";
+    private static final String KEY_LAST_GOOD_HOST = "last_good_host";
+
     private static Context appContext;
     private static volatile String cachedBaseUrl;
-    private static final Executor SERVER_BASE_EXECUTOR = Executors.newSingleThreadExecutor();
+    private static volatile OkHttpClient httpClient;
+    private static volatile OkHttpClient mediaHttpClient;
+    private static final ScheduledExecutorService SERVER_BASE_EXECUTOR = Executors.newSingleThreadScheduledExecutor();
+    private static final long NETWORK_CHANGE_DEBOUNCE_MILLIS = 1000;
+    private static ScheduledFuture<?> pendingRevalidation;
+    // 当前 baseUrl 已在哪个网络上通过校验
+    private static volatile String validatedNetworkIdentity;
 
     /**
      * 在 {@link CatMusicApplication} 中调用，用于读取可选的 {@link R.string#catmusic_server_host} 覆盖。
@@ -39,64 +76,144 @@ public class Config {
     }
 
     /**
-     * 在模拟器等环境下异步请求 {@code /api/serverBase}，将 baseUrl 更新为 Node 所在电脑的局域网 IPv4（与自定义资源 URL 一致）。
+     * 异步确认服务器地址，将 baseUrl 更新为实际可访问的 Node 服务地址。
+     * 当前网络记忆过可用地址时只校验这一个地址；否则（或校验失败时）并发探测所有候选主机，
+     * 以第一个正常响应 {@code /api/serverBase} 的为准，并按网络记住结果，下次冷启动直接使用。
      * 用户在 {@link R.string#catmusic_server_host} 中已指定主机时不会发起探测。
      */
     public static void prefetchServerBaseUrlAsync() {
-        SERVER_BASE_EXECUTOR.execute(new Runnable() {
-            @Override
-            public void run() {
-                if (appContext == null) {
-                    return;
-                }
-                if (!TextUtils.isEmpty(appContext.getString(R.string.catmusic_server_host).trim())) {
-                    return;
-                }
-                if (!LanHostResolver.isLikelyEmulatorNatNetwork()) {
-                    return;
+        scheduleServerBaseRevalidation(0);
+    }
+
+    /**
+     * 监听默认网络变化（如 Wi-Fi 切到热点），网络变化后在后台重新确认服务器地址。
+     * 新地址通过健康检查之前，请求继续使用旧地址；确认后原子替换，并清空旧网络上的空闲连接。
+     */
+    public static void watchNetworkChanges() {
+        if (appContext == null) {
+            return;
+        }
+        ConnectivityManager connectivityManager = appContext.getSystemService(ConnectivityManager.class);
+        if (connectivityManager == null) {
+            return;
+        }
+        try {
+            connectivityManager.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+                @Override
+                public void onAvailable(Network network) {
+                    // 新网络上 CDN 可能解析到不同的节点，旧结果先继续用，同时在后台重新解析
+                    CachingDns.getInstance().markAllStale();
+                    scheduleServerBaseRevalidation(NETWORK_CHANGE_DEBOUNCE_MILLIS);
                 }
-                String probeUrl = "http://10.0.2.2:" + SERVER_PORT + "/" + API_SERVER_BASE;
-                OkHttpClient client = new OkHttpClient.Builder()
-                        .connectTimeout(3, TimeUnit.SECONDS)
-                        .readTimeout(3, TimeUnit.SECONDS)
-                        .build();
-                Request request = new Request.Builder().url(probeUrl).get().build();
-                try (Response response = client.newCall(request).execute()) {
-                    if (!response.isSuccessful() || response.body() == null) {
-                        return;
-                    }
-                    String body = response.body().string();
-                    JSONObject root = new JSONObject(body);
-                    if (root.optInt("code") != 0) {
-                        return;
-                    }
-                    JSONObject result = root.optJSONObject("result");
-                    if (result == null) {
-                        return;
-                    }
-                    String baseUrl = result.optString("baseUrl", "").trim();
-                    if (TextUtils.isEmpty(baseUrl)) {
-                        return;
-                    }
-                    if (!baseUrl.endsWith("/")) {
-                        baseUrl = baseUrl + "/";
-                    }
-                    updateCachedBaseUrl(baseUrl);
-                } catch (Exception ignored) {
-                    // 保持 getBaseUrl() 已解析的 10.0.2.2 等回退地址
+
+                @Override
+                public void onLinkPropertiesChanged(Network network, LinkProperties linkProperties) {
+                    scheduleServerBaseRevalidation(NETWORK_CHANGE_DEBOUNCE_MILLIS);
                 }
+            });
+        } catch (RuntimeException e) {
+            LogUtil.w(TAG, "注册网络变化监听失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 合并短时间内的多次网络变化，只执行最后一次
+     */
+    private static void scheduleServerBaseRevalidation(long delayMillis) {
+        synchronized (Config.class) {
+            if (pendingRevalidation != null) {
+                pendingRevalidation.cancel(false);
             }
-        });
+            pendingRevalidation = SERVER_BASE_EXECUTOR.schedule(Config::revalidateServerBaseUrl,
+                    delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 在 {@link #SERVER_BASE_EXECUTOR} 上执行：校验或重新探测当前网络下的服务器地址
+     */
+    private static void revalidateServerBaseUrl() {
+        if (appContext == null || !TextUtils.isEmpty(getHostOverride())) {
+            return;
+        }
+        LanHostResolver.NetworkSnapshot snapshot = LanHostResolver.snapshot();
+        String identity = snapshot.identity();
+        if (identity.equals(validatedNetworkIdentity)) {
+            // 网络没有实际变化，当前地址已校验过
+            return;
+        }
+        SharedPreferences prefs = getServerHostPrefs();
+        String remembered = prefs.getString(KEY_BASE_URL_PREFIX + identity, null);
+        OkHttpClient client = getProbeHttpClient();
+        if (remembered != null) {
+            HttpUrl rememberedUrl = HttpUrl.parse(remembered);
+            String rememberedHost = rememberedUrl != null ? rememberedUrl.host() : null;
+            if (rememberedHost != null && LanHostResolver.race(client, Collections.singletonList(rememberedHost),
+                    SERVER_PORT, API_SERVER_BASE, SERVER_PROBE_TIMEOUT_MILLIS) != null) {
+                updateCachedBaseUrl(remembered);
+                validatedNetworkIdentity = identity;
+                return;
+            }
+            LogUtil.w(TAG, "记忆的服务器地址不可用，重新探测: " + remembered);
+            prefs.edit().remove(KEY_BASE_URL_PREFIX + identity).apply();
+        }
+
+        List<String> candidates = LanHostResolver.probeCandidates(snapshot, prefs.getString(KEY_LAST_GOOD_HOST, null));
+        LanHostResolver.ProbeResult result = LanHostResolver.race(client, candidates,
+                SERVER_PORT, API_SERVER_BASE, SERVER_PROBE_TIMEOUT_MILLIS);
+        if (result == null) {
+            // 新网络上探测失败时保持当前地址不变
+            return;
+        }
+        String baseUrl = "http://" + result.host + ":" + SERVER_PORT + "/";
+        if (LanHostResolver.EMULATOR_HOST.equals(result.host) && !TextUtils.isEmpty(result.reportedBaseUrl)) {
+            // 经模拟器宿主机访问时采用服务器自报的局域网地址，与自定义资源 URL 保持一致
+            baseUrl = result.reportedBaseUrl.endsWith("/") ? result.reportedBaseUrl : result.reportedBaseUrl + "/";
+        }
+        updateCachedBaseUrl(baseUrl);
+        validatedNetworkIdentity = identity;
+        prefs.edit()
+                .putString(KEY_BASE_URL_PREFIX + identity, baseUrl)
+                .putString(KEY_LAST_GOOD_HOST, result.host)
+                .apply();
+    }
+
+    /**
+     * 探测用的派生客户端，与共享客户端共用连接池和调度器，仅缩短超时
+     */
+    private static OkHttpClient getProbeHttpClient() {
+        return getHttpClient().newBuilder()
+                .connectTimeout(SERVER_PROBE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                .readTimeout(SERVER_PROBE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                .callTimeout(SERVER_PROBE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    private static SharedPreferences getServerHostPrefs() {
+        return appContext.getSharedPreferences(SERVER_HOST_PREFS, Context.MODE_PRIVATE);
+    }
+
+    private static String getHostOverride() {
+        return appContext != null ? appContext.getString(R.string.catmusic_server_host).trim() : "";
     }
 
     static void updateCachedBaseUrl(String baseUrl) {
+        String previous;
         synchronized (Config.class) {
+            previous = cachedBaseUrl;
             cachedBaseUrl = baseUrl;
         }
+        if (previous != null && !previous.equals(baseUrl)) {
+            LogUtil.d(TAG, "服务器地址已切换: " + previous + " -> " + baseUrl);
+            // 旧地址上的 keep-alive 连接多半已失效，避免后续请求拿到死连接
+            getHttpClient().connectionPool().evictAll();
+            ConnectionWarmer.getInstance().warmUp(baseUrl);
+        }
     }
 
     /**
-     * 服务器基础 URL，根据当前环境动态解析主机（模拟器为宿主机 10.0.2.2，真机为本机私网 IPv4，可被 strings 覆盖）。
+     * 服务器基础 URL，根据当前环境动态解析主机（当前网络记忆的探测结果优先，其次模拟器为宿主机 10.0.2.2，
+     * 真机为本机私网 IPv4，可被 strings 覆盖），随后由 {@link #prefetchServerBaseUrlAsync()} 探测校正。
      */
     public static String getBaseUrl() {
         String cached = cachedBaseUrl;
@@ -107,20 +224,81 @@ public class Config {
             if (cachedBaseUrl != null) {
                 return cachedBaseUrl;
             }
-            String host = resolveServerHost();
-            cachedBaseUrl = "http://" + host + ":" + SERVER_PORT + "/";
+            cachedBaseUrl = resolveServerHost();
             return cachedBaseUrl;
         }
     }
 
+    /**
+     * 进程内共享的 OkHttpClient，用于所有 API 请求。
+     * 各页面与业务类复用同一个连接池、调度线程和 TLS 会话，切换页面时无需重新与 Node 服务握手。
+     * 幂等 GET 接口按 {@link RequestPolicy} 自动重试并对冲慢请求；启动时由 {@link ConnectionWarmer} 预先建好连接；
+     * 各接口的分阶段耗时由 {@link ApiMetrics} 统计；域名解析经 {@link CachingDns} 缓存，派生客户端同样生效。
+     */
+    public static OkHttpClient getHttpClient() {
+        OkHttpClient client = httpClient;
+        if (client != null) {
+            return client;
+        }
+        synchronized (Config.class) {
+            if (httpClient == null) {
+                Dispatcher dispatcher = new Dispatcher();
+                dispatcher.setMaxRequests(HTTP_MAX_REQUESTS);
+                dispatcher.setMaxRequestsPerHost(HTTP_MAX_REQUESTS_PER_HOST);
+                // 对冲在外层、重试在内层：对冲请求本身不会再重试或对冲
+                HedgingInterceptor hedgingInterceptor = new HedgingInterceptor(RequestPolicy.getInstance());
+                httpClient = new OkHttpClient.Builder()
+                        .dispatcher(dispatcher)
+                        .addInterceptor(hedgingInterceptor)
+                        .addInterceptor(new RetryInterceptor(RequestPolicy.getInstance()))
+                        .addNetworkInterceptor(ConnectionWarmer.getInstance().interceptor())
+                        .eventListenerFactory(ApiMetrics.getInstance().eventListenerFactory())
+                        .dns(CachingDns.getInstance())
+                        .connectionPool(new ConnectionPool(HTTP_MAX_IDLE_CONNECTIONS, HTTP_KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                        .connectTimeout(API_CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                        .readTimeout(API_READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                        .callTimeout(API_CALL_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                        .build();
+                hedgingInterceptor.setClient(httpClient);
+            }
+            return httpClient;
+        }
+    }
+
+    /**
+     * 图片与音频请求使用的 OkHttpClient。
+     * 由 {@link #getHttpClient()} 派生，共享连接池与调度器，只放宽读取和整体超时。
+     */
+    public static OkHttpClient getMediaHttpClient() {
+        OkHttpClient client = mediaHttpClient;
+        if (client != null) {
+            return client;
+        }
+        synchronized (Config.class) {
+            if (mediaHttpClient == null) {
+                mediaHttpClient = getHttpClient().newBuilder()
+                        .readTimeout(MEDIA_READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                        .callTimeout(MEDIA_CALL_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                        .build();
+            }
+            return mediaHttpClient;
+        }
+    }
+
     private static String resolveServerHost() {
+        String override = getHostOverride();
+        if (!TextUtils.isEmpty(override)) {
+            return "http://" + override + ":" + SERVER_PORT + "/";
+        }
+        LanHostResolver.NetworkSnapshot snapshot = LanHostResolver.snapshot();
         if (appContext != null) {
-            String override = appContext.getString(R.string.catmusic_server_host).trim();
-            if (!TextUtils.isEmpty(override)) {
-                return override;
+            // 已知网络直接使用上次探测成功的地址，无需等待探测
+            String remembered = getServerHostPrefs().getString(KEY_BASE_URL_PREFIX + snapshot.identity(), null);
+            if (remembered != null) {
+                return remembered;
             }
         }
-        return LanHostResolver.resolveServerHost();
+        return "http://" + LanHostResolver.resolveServerHost(snapshot) + ":" + SERVER_PORT + "/";
     }
 
     // API接口路径
@@ -11,16 +11,15 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.catmusic.R;
 import com.example.catmusic.bean.SongsList;
-
-import java.util.ArrayList;
-import java.util.List;
+import com.example.catmusic.service.PlayQueue;
 
 /**
  * 播放列表对话框内的列表适配器：显示歌名、歌手，支持点击播放、点击删除。
+ * 直接读取 {@link PlayQueue}，按队列的变化通知局部刷新，条目 id 作为稳定 id。
  */
 public class PlaylistDialogAdapter extends RecyclerView.Adapter<PlaylistDialogAdapter.ViewHolder> {
 
-    private final List<SongsList.ResultBean.SongsBean> list = new ArrayList<>();
+    private PlayQueue queue;
     private int currentIndex = -1;
     private OnItemPlayListener onItemPlayListener;
     private OnItemRemoveListener onItemRemoveListener;
@@ -36,23 +35,59 @@ public class PlaylistDialogAdapter extends RecyclerView.Adapter<PlaylistDialogAd
     public void setOnItemPlayListener(OnItemPlayListener l) { this.onItemPlayListener = l; }
     public void setOnItemRemoveListener(OnItemRemoveListener l) { this.onItemRemoveListener = l; }
 
-    public void setList(List<SongsList.ResultBean.SongsBean> newList) {
-        list.clear();
-        if (newList != null) list.addAll(newList);
+    private final PlayQueue.Listener queueListener = new PlayQueue.Listener() {
+        @Override
+        public void onInserted(int position, int count) {
+            notifyItemRangeInserted(position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            notifyItemRangeRemoved(position, count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            notifyItemMoved(fromPosition, toPosition);
+        }
+
+        @Override
+        public void onRemovedBatch(int[] positions) {
+            // 从后往前通知，前面的位置不受影响
+            for (int i = positions.length - 1; i >= 0; i--) {
+                notifyItemRemoved(positions[i]);
+            }
+        }
+
+        @Override
+        public void onReset() {
+            notifyDataSetChanged();
+        }
+    };
+
+    public PlaylistDialogAdapter() {
+        setHasStableIds(true);
+    }
+
+    /**
+     * 绑定播放队列并开始跟随它的变化，不再显示时调用 {@link #release()}
+     */
+    public void setQueue(PlayQueue newQueue) {
+        if (queue != null) queue.removeListener(queueListener);
+        queue = newQueue;
+        if (queue != null) queue.addListener(queueListener);
         notifyDataSetChanged();
     }
 
+    public void release() {
+        setQueue(null);
+    }
+
     public void setCurrentIndex(int index) {
         int old = currentIndex;
         currentIndex = index;
-        if (old >= 0 && old < list.size()) notifyItemChanged(old);
-        if (currentIndex >= 0 && currentIndex < list.size()) notifyItemChanged(currentIndex);
-    }
-
-    public void removeAt(int position) {
-        if (position < 0 || position >= list.size()) return;
-        list.remove(position);
-        notifyItemRemoved(position);
+        if (old >= 0 && old < getItemCount()) notifyItemChanged(old);
+        if (currentIndex >= 0 && currentIndex < getItemCount()) notifyItemChanged(currentIndex);
     }
 
     @NonNull
@@ -64,8 +99,8 @@ public class PlaylistDialogAdapter extends RecyclerView.Adapter<PlaylistDialogAd
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        if (position >= list.size()) return;
-        SongsList.ResultBean.SongsBean song = list.get(position);
+        if (position >= getItemCount()) return;
+        SongsList.ResultBean.SongsBean song = queue.get(position);
         holder.title.setText(song.getName() != null ? song.getName() : "未知歌曲");
         holder.artist.setText(song.getSinger() != null ? song.getSinger() : "未知歌手");
         holder.itemView.setSelected(position == currentIndex);
@@ -77,9 +112,14 @@ public class PlaylistDialogAdapter extends RecyclerView.Adapter<PlaylistDialogAd
         });
     }
 
+    @Override
+    public long getItemId(int position) {
+        return queue.getEntry(position).getId();
+    }
+
     @Override
     public int getItemCount() {
-        return list.size();
+        return queue != null ? queue.size() : 0;
     }
 
     static class ViewHolder extends RecyclerView.ViewHolder {
@@ -16,6 +16,7 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.bumptech.glide.Glide;
 import com.example.catmusic.R;
 import com.example.catmusic.bean.SongsList;
+import com.example.catmusic.biz.OfflineDownloadManager;
 import com.example.catmusic.ui.activity.PlayerActivity;
 import com.example.catmusic.utils.FavoriteManager;
 
@@ -30,7 +31,9 @@ public class SongsRecyclerViewAdapter extends RecyclerView.Adapter<SongsRecycler
     private List<SongsList.ResultBean.SongsBean> songs;
     private OnItemClickListener listener;
     private OnFavoriteClickListener favoriteListener;
+    private OnItemLongClickListener longClickListener;
     private FavoriteManager favoriteManager;
+    private OfflineDownloadManager offlineDownloadManager;
     private boolean showFavoriteButton = true;
 
     public interface OnItemClickListener {
@@ -41,6 +44,10 @@ public class SongsRecyclerViewAdapter extends RecyclerView.Adapter<SongsRecycler
         void onFavoriteClick(int position, boolean isNowFavorite);
     }
 
+    public interface OnItemLongClickListener {
+        void onItemLongClick(int position);
+    }
+
     public void setOnItemClickListener(OnItemClickListener listener) {
         this.listener = listener;
     }
@@ -49,11 +56,20 @@ public class SongsRecyclerViewAdapter extends RecyclerView.Adapter<SongsRecycler
         this.favoriteListener = listener;
     }
 
+    public void setOnItemLongClickListener(OnItemLongClickListener listener) {
+        this.longClickListener = listener;
+    }
+
     /** 设置收藏管理器，为 null 则不显示收藏按钮 */
     public void setFavoriteManager(FavoriteManager manager) {
         this.favoriteManager = manager;
     }
 
+    /** 设置离线下载管理器，在歌手信息后显示下载状态；为 null 则不显示 */
+    public void setOfflineDownloadManager(OfflineDownloadManager manager) {
+        this.offlineDownloadManager = manager;
+    }
+
     /** 是否在列表项中显示收藏按钮 */
     public void setShowFavoriteButton(boolean show) {
         this.showFavoriteButton = show;
@@ -92,6 +108,13 @@ public class SongsRecyclerViewAdapter extends RecyclerView.Adapter<SongsRecycler
                 String artist = song.getSinger() != null ? song.getSinger() : "未知歌手";
                 if (song.isLocal()) {
                     artist = artist + " · 本地导入";
+                } else if (offlineDownloadManager != null) {
+                    OfflineDownloadManager.DownloadInfo info = offlineDownloadManager.getInfo(song.getMid());
+                    if (info != null && info.state == OfflineDownloadManager.State.COMPLETED) {
+                        artist = artist + " · 已下载";
+                    } else if (info != null && info.state != OfflineDownloadManager.State.FAILED) {
+                        artist = artist + " · 下载中 " + info.getPercent() + "%";
+                    }
                 }
                 holder.songArtist.setText(artist);
             }
@@ -131,6 +154,21 @@ public class SongsRecyclerViewAdapter extends RecyclerView.Adapter<SongsRecycler
                 }
             }
 
+            // 长按交给Activity处理，如离线下载
+            holder.itemView.setOnLongClickListener(new View.OnLongClickListener()
+            {
+                @Override
+                public boolean onLongClick(View v)
+                {
+                    int pos = holder.getAdapterPosition();
+                    if (longClickListener == null || pos < 0 || pos >= songs.size()) {
+                        return false;
+                    }
+                    longClickListener.onItemLongClick(pos);
+                    return true;
+                }
+            });
+
             // 设置点击事件
             holder.itemView.setOnClickListener(new View.OnClickListener()
             {
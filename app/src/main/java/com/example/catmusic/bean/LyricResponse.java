@@ -0,0 +1,60 @@
+package com.example.catmusic.bean;
+
+public class LyricResponse
+{
+
+    /**
+     * code : 0
+     * result : {"lyric":"[00:00.00]..."}
+     * message : 仅在出错时返回
+     */
+
+    private int code;
+    private String message;
+    private ResultBean result;
+
+    public int getCode()
+    {
+        return code;
+    }
+
+    public void setCode(int code)
+    {
+        this.code = code;
+    }
+
+    public String getMessage()
+    {
+        return message;
+    }
+
+    public void setMessage(String message)
+    {
+        this.message = message;
+    }
+
+    public ResultBean getResult()
+    {
+        return result;
+    }
+
+    public void setResult(ResultBean result)
+    {
+        this.result = result;
+    }
+
+    public static class ResultBean
+    {
+        private String lyric;
+
+        public String getLyric()
+        {
+            return lyric;
+        }
+
+        public void setLyric(String lyric)
+        {
+            this.lyric = lyric;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.catmusic.bean;
+
+/**
+ * 离线下载的专辑，与歌曲文件一起保存在本地，离线时用于展示歌曲列表
+ */
+public class OfflineAlbum
+{
+
+    /**
+     * id : 专辑 id
+     * title : 专辑标题
+     * pic : 专辑封面
+     * songs : 已选择下载的歌曲，结构与专辑接口返回的 SongsList 相同
+     */
+
+    private long id;
+    private String title;
+    private String pic;
+    private SongsList songs;
+
+    public long getId()
+    {
+        return id;
+    }
+
+    public void setId(long id)
+    {
+        this.id = id;
+    }
+
+    public String getTitle()
+    {
+        return title;
+    }
+
+    public void setTitle(String title)
+    {
+        this.title = title;
+    }
+
+    public String getPic()
+    {
+        return pic;
+    }
+
+    public void setPic(String pic)
+    {
+        this.pic = pic;
+    }
+
+    public SongsList getSongs()
+    {
+        return songs;
+    }
+
+    public void setSongs(SongsList songs)
+    {
+        this.songs = songs;
+    }
+}
@@ -3,9 +3,9 @@ package com.example.catmusic.biz;
 import com.example.catmusic.utils.LogUtil;
 
 import com.example.catmusic.Config;
-
-import org.json.JSONException;
-import org.json.JSONObject;
+import com.example.catmusic.bean.LyricResponse;
+import com.example.catmusic.net.ApiJson;
+import com.example.catmusic.net.RequestScheduler;
 
 import java.io.IOException;
 
@@ -24,7 +24,7 @@ public class LyricBiz {
     private OkHttpClient okHttpClient;
 
     public LyricBiz() {
-        this.okHttpClient = new OkHttpClient();
+        this(Config.getHttpClient());
     }
 
     public LyricBiz(OkHttpClient okHttpClient) {
@@ -32,14 +32,25 @@ public class LyricBiz {
     }
 
     /**
-     * 获取歌词
+     * 以前台优先级获取歌词
      * @param mid 歌曲mid
      * @param callback 回调接口
      */
     public void getLyric(String mid, LyricCallback callback) {
+        getLyric(mid, RequestScheduler.Priority.FOREGROUND, callback);
+    }
+
+    /**
+     * 获取歌词，请求经 {@link RequestScheduler} 按优先级发出
+     * @param mid 歌曲mid
+     * @param priority 请求优先级，预加载使用 {@link RequestScheduler.Priority#BACKGROUND}
+     * @param callback 回调接口
+     * @return 请求句柄，可用于取消或提升优先级；mid 为空时返回 null
+     */
+    public RequestScheduler.Task getLyric(String mid, RequestScheduler.Priority priority, LyricCallback callback) {
         if (mid == null || mid.isEmpty()) {
             callback.onFailure(new IllegalArgumentException("歌曲mid不能为空"));
-            return;
+            return null;
         }
 
         // 使用正确的配置常量和URL构建方式
@@ -48,9 +59,10 @@ public class LyricBiz {
 
         Request request = new Request.Builder()
                 .url(url)
+                .tag(RequestScheduler.Priority.class, priority)
                 .build();
 
-        okHttpClient.newCall(request).enqueue(new Callback() {
+        return RequestScheduler.getInstance().enqueue(okHttpClient, request, new Callback() {
             @Override
             public void onFailure(Call call, IOException e) {
                 LogUtil.e(TAG, "获取歌词失败: " + e.getMessage());
@@ -59,32 +71,37 @@ public class LyricBiz {
 
             @Override
             public void onResponse(Call call, Response response) throws IOException {
-                if (!response.isSuccessful()) {
-                    String errorMsg = "获取歌词失败，响应码: " + response.code();
-                    LogUtil.e(TAG, errorMsg);
-                    callback.onFailure(new IOException(errorMsg));
-                    return;
-                }
+                try (Response r = response) {
+                    if (!r.isSuccessful() || r.body() == null) {
+                        String errorMsg = "获取歌词失败，响应码: " + r.code();
+                        LogUtil.e(TAG, errorMsg);
+                        callback.onFailure(new IOException(errorMsg));
+                        return;
+                    }
 
-                String jsonString = response.body().string();
-                LogUtil.d(TAG, "获取歌词成功，原始内容长度: " + jsonString.length());
+                    LyricResponse lyricResponse;
+                    try {
+                        lyricResponse = ApiJson.fromBody(r.body(), LyricResponse.class, Config.API_GET_LYRIC);
+                    } catch (Exception e) {
+                        LogUtil.e(TAG, "解析歌词JSON失败: " + e.getMessage());
+                        callback.onFailure(e);
+                        return;
+                    }
 
-                try {
-                    JSONObject root = new JSONObject(jsonString);
-                    int code = root.optInt("code", -1);
+                    int code = lyricResponse != null ? lyricResponse.getCode() : -1;
                     if (code != 0) {
-                        String msg = root.optString("message", "歌词接口返回错误，code=" + code);
+                        String msg = lyricResponse != null && lyricResponse.getMessage() != null
+                                ? lyricResponse.getMessage() : "歌词接口返回错误，code=" + code;
                         callback.onFailure(new IOException(msg));
                         return;
                     }
 
-                    JSONObject result = root.optJSONObject("result");
-                    if (result == null) {
+                    if (lyricResponse.getResult() == null) {
                         callback.onFailure(new IOException("歌词数据字段缺失"));
                         return;
                     }
 
-                    String lyricContent = result.optString("lyric", "");
+                    String lyricContent = lyricResponse.getResult().getLyric();
                     if (lyricContent == null || lyricContent.isEmpty()) {
                         callback.onFailure(new IOException("歌词内容为空"));
                         return;
@@ -92,9 +109,6 @@ public class LyricBiz {
 
                     LogUtil.d(TAG, "解析歌词成功，歌词长度: " + lyricContent.length());
                     callback.onSuccess(lyricContent);
-                } catch (JSONException e) {
-                    LogUtil.e(TAG, "解析歌词JSON失败: " + e.getMessage());
-                    callback.onFailure(e);
                 }
             }
         });
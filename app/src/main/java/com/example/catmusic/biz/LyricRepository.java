@@ -0,0 +1,400 @@
+package com.example.catmusic.biz;
+
+import android.content.Context;
+import android.util.LruCache;
+
+import com.example.catmusic.Config;
+import com.example.catmusic.bean.Lyric;
+import com.example.catmusic.net.RequestScheduler;
+import com.example.catmusic.utils.LogUtil;
+import com.example.catmusic.utils.LyricParser;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 歌词仓库，以 mid 为键，在 {@link LyricBiz} 前面加两级缓存：
+ * 内存中按歌词字数限制大小的 LRU 保存解析好的 {@link Lyric}，磁盘上保存原始 LRC 文本。
+ * 最近 {@link #RECENT_DAYS} 天内播放过的歌曲直接读磁盘，不再请求网络；
+ * 更早的磁盘记录会先尝试网络刷新，失败时仍回退到磁盘内容。
+ * 离线下载的歌曲使用随下载保存的歌词（见 {@link OfflineDownloadManager#readLyric(String)}）。
+ * 播放页的请求以前台优先级发出，预加载以后台优先级发出；预加载中的歌词被播放页请求时会提升为前台。
+ */
+public class LyricRepository {
+    private static final String TAG = "LyricRepository";
+    private static final String CACHE_DIR_NAME = "lyric_cache";
+    private static final String FILE_SUFFIX = ".lrc";
+    private static final int MEMORY_MAX_CHARS = 256 * 1024;// 内存缓存中歌词总字数上限
+    private static final long DISK_MAX_BYTES = 4L * 1024 * 1024;// 磁盘缓存总上限
+    public static final int RECENT_DAYS = 30;
+    private static final long RECENT_MILLIS = RECENT_DAYS * 24 * 60 * 60 * 1000L;
+
+    private static volatile LyricRepository instance;
+
+    private final File cacheDir;
+    private final LyricBiz lyricBiz;
+    private final OfflineDownloadManager offlineDownloads;
+    private final Executor diskExecutor = Executors.newSingleThreadExecutor();
+    private final LruCache<String, Lyric> memoryCache = new LruCache<String, Lyric>(MEMORY_MAX_CHARS) {
+        @Override
+        protected int sizeOf(String key, Lyric value) {
+            int chars = 0;
+            for (Lyric.LyricLine line : value.getLyricLines()) {
+                chars += line.getContent() != null ? line.getContent().length() + 8 : 8;
+            }
+            return Math.max(1, chars);
+        }
+    };
+    // 同一个 mid 同一时刻只加载一次，其余调用方等待同一份结果
+    private final Map<String, List<LyricLoadCallback>> loadingCallbacks = new HashMap<>();
+    // 加载中的 mid 对应的最高请求优先级和网络请求句柄，由 loadingCallbacks 保护
+    private final Map<String, RequestScheduler.Priority> loadingPriorities = new HashMap<>();
+    private final Map<String, RequestScheduler.Task> loadingTasks = new HashMap<>();
+
+    // 命中统计
+    private final AtomicInteger memoryHitCount = new AtomicInteger();
+    private final AtomicInteger diskHitCount = new AtomicInteger();
+    private final AtomicInteger networkLoadCount = new AtomicInteger();
+    private final AtomicInteger staleFallbackCount = new AtomicInteger();
+    private final AtomicInteger failureCount = new AtomicInteger();
+
+    public static LyricRepository getInstance(Context context) {
+        if (instance == null) {
+            synchronized (LyricRepository.class) {
+                if (instance == null) {
+                    instance = new LyricRepository(context.getApplicationContext(), new LyricBiz(Config.getHttpClient()));
+                }
+            }
+        }
+        return instance;
+    }
+
+    private LyricRepository(Context context, LyricBiz lyricBiz) {
+        this.cacheDir = new File(context.getFilesDir(), CACHE_DIR_NAME);
+        this.lyricBiz = lyricBiz;
+        this.offlineDownloads = OfflineDownloadManager.getInstance(context);
+    }
+
+    /**
+     * 获取解析好的歌词，需要请求网络时以前台优先级发出。内存命中时在调用线程直接回调，否则在后台线程回调。
+     * @param mid 歌曲mid
+     * @param callback 回调接口
+     */
+    public void getLyric(String mid, LyricLoadCallback callback) {
+        getLyric(mid, RequestScheduler.Priority.FOREGROUND, callback);
+    }
+
+    private void getLyric(String mid, RequestScheduler.Priority priority, LyricLoadCallback callback) {
+        if (mid == null || mid.isEmpty()) {
+            callback.onFailure(new IllegalArgumentException("歌曲mid不能为空"));
+            return;
+        }
+        Lyric cached = memoryCache.get(mid);
+        if (cached != null) {
+            memoryHitCount.incrementAndGet();
+            touchAsync(mid);
+            callback.onLyricLoaded(cached);
+            return;
+        }
+        RequestScheduler.Task promoted = null;
+        synchronized (loadingCallbacks) {
+            List<LyricLoadCallback> waiting = loadingCallbacks.get(mid);
+            if (waiting == null) {
+                waiting = new ArrayList<>();
+                waiting.add(callback);
+                loadingCallbacks.put(mid, waiting);
+                loadingPriorities.put(mid, priority);
+                diskExecutor.execute(() -> loadFromDisk(mid));
+                return;
+            }
+            waiting.add(callback);
+            RequestScheduler.Priority current = loadingPriorities.get(mid);
+            if (current == null || priority.ordinal() < current.ordinal()) {
+                loadingPriorities.put(mid, priority);
+                promoted = loadingTasks.get(mid);
+            }
+        }
+        if (promoted != null) {
+            promoted.promote(priority);
+        }
+    }
+
+    /**
+     * 后台预加载歌词到内存缓存，已在内存中的直接跳过
+     */
+    public void prefetch(String mid) {
+        if (mid == null || mid.isEmpty() || memoryCache.get(mid) != null) {
+            return;
+        }
+        getLyric(mid, RequestScheduler.Priority.BACKGROUND, new LyricLoadCallback() {
+            @Override
+            public void onLyricLoaded(Lyric lyric) {
+                LogUtil.d(TAG, "预加载歌词完成: " + mid);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                LogUtil.w(TAG, "预加载歌词失败: " + mid + ", " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 是否已有可离线使用的歌词（内存或最近播放过的磁盘记录）
+     */
+    public boolean hasRecentLyric(String mid) {
+        if (mid == null || mid.isEmpty()) {
+            return false;
+        }
+        if (memoryCache.get(mid) != null) {
+            return true;
+        }
+        File file = lyricFile(mid);
+        return file.isFile() && System.currentTimeMillis() - file.lastModified() < RECENT_MILLIS;
+    }
+
+    private void loadFromDisk(String mid) {
+        File file = lyricFile(mid);
+        String stale = null;
+        if (file.isFile()) {
+            String raw = readFile(file);
+            if (raw != null && System.currentTimeMillis() - file.lastModified() < RECENT_MILLIS) {
+                Lyric lyric = parse(raw);
+                if (lyric != null) {
+                    diskHitCount.incrementAndGet();
+                    file.setLastModified(System.currentTimeMillis());
+                    memoryCache.put(mid, lyric);
+                    deliver(mid, lyric, null);
+                    return;
+                }
+            }
+            stale = raw;
+        }
+        // 离线下载的歌曲带有歌词，无需请求网络
+        String offlineRaw = offlineDownloads.readLyric(mid);
+        Lyric offline = offlineRaw != null ? parse(offlineRaw) : null;
+        if (offline != null) {
+            diskHitCount.incrementAndGet();
+            memoryCache.put(mid, offline);
+            deliver(mid, offline, null);
+            return;
+        }
+        loadFromNetwork(mid, stale);
+    }
+
+    private void loadFromNetwork(String mid, String staleRaw) {
+        networkLoadCount.incrementAndGet();
+        RequestScheduler.Priority priority;
+        synchronized (loadingCallbacks) {
+            priority = loadingPriorities.get(mid);
+        }
+        if (priority == null) {
+            priority = RequestScheduler.Priority.FOREGROUND;
+        }
+        RequestScheduler.Task task = lyricBiz.getLyric(mid, priority, new LyricBiz.LyricCallback() {
+            @Override
+            public void onSuccess(String lyricContent) {
+                Lyric lyric = parse(lyricContent);
+                if (lyric == null) {
+                    failureCount.incrementAndGet();
+                    deliver(mid, null, new IOException("歌词解析结果为空"));
+                    return;
+                }
+                memoryCache.put(mid, lyric);
+                writeAsync(mid, lyricContent);
+                deliver(mid, lyric, null);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                Lyric stale = staleRaw != null ? parse(staleRaw) : null;
+                if (stale != null) {
+                    // 网络不可用时旧歌词依然比没有好
+                    staleFallbackCount.incrementAndGet();
+                    LogUtil.w(TAG, "刷新歌词失败，使用磁盘中的旧歌词: " + mid);
+                    memoryCache.put(mid, stale);
+                    deliver(mid, stale, null);
+                    return;
+                }
+                failureCount.incrementAndGet();
+                deliver(mid, null, e);
+            }
+        });
+        RequestScheduler.Priority latest = null;
+        synchronized (loadingCallbacks) {
+            if (task != null && loadingCallbacks.containsKey(mid) && !loadingTasks.containsKey(mid)) {
+                loadingTasks.put(mid, task);
+                latest = loadingPriorities.get(mid);
+            }
+        }
+        if (latest != null && latest != priority) {
+            // 发出请求期间有更高优先级的调用方加入
+            task.promote(latest);
+        }
+    }
+
+    private void deliver(String mid, Lyric lyric, Exception error) {
+        List<LyricLoadCallback> waiting;
+        synchronized (loadingCallbacks) {
+            waiting = loadingCallbacks.remove(mid);
+            loadingPriorities.remove(mid);
+            loadingTasks.remove(mid);
+        }
+        logStats();
+        if (waiting == null) {
+            return;
+        }
+        for (LyricLoadCallback callback : waiting) {
+            if (lyric != null) {
+                callback.onLyricLoaded(lyric);
+            } else {
+                callback.onFailure(error);
+            }
+        }
+    }
+
+    private static Lyric parse(String raw) {
+        try {
+            Lyric lyric = LyricParser.parseLyric(raw);
+            return lyric != null && !lyric.getLyricLines().isEmpty() ? lyric : null;
+        } catch (Exception e) {
+            LogUtil.e(TAG, "解析歌词失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 磁盘文件的修改时间即最近一次播放时间
+     */
+    private void touchAsync(String mid) {
+        diskExecutor.execute(() -> {
+            File file = lyricFile(mid);
+            if (file.isFile()) {
+                file.setLastModified(System.currentTimeMillis());
+            }
+        });
+    }
+
+    private void writeAsync(String mid, String raw) {
+        diskExecutor.execute(() -> {
+            if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+                return;
+            }
+            File file = lyricFile(mid);
+            File tmp = new File(cacheDir, file.getName() + ".tmp");
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                out.write(raw.getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                LogUtil.w(TAG, "写入歌词缓存失败: " + e.getMessage());
+                tmp.delete();
+                return;
+            }
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+                return;
+            }
+            trimToSize();
+        });
+    }
+
+    private static String readFile(File file) {
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] data = new byte[(int) file.length()];
+            int offset = 0;
+            while (offset < data.length) {
+                int read = in.read(data, offset, data.length - offset);
+                if (read < 0) {
+                    break;
+                }
+                offset += read;
+            }
+            return new String(data, 0, offset, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            LogUtil.w(TAG, "读取歌词缓存失败: " + e.getMessage());
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * 按最近播放时间淘汰，保证缓存目录不超过 {@link #DISK_MAX_BYTES}
+     */
+    private void trimToSize() {
+        File[] files = cacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File f : files) {
+            total += f.length();
+        }
+        if (total <= DISK_MAX_BYTES) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File f : files) {
+            if (total <= DISK_MAX_BYTES) {
+                break;
+            }
+            long length = f.length();
+            if (f.delete()) {
+                total -= length;
+            }
+        }
+    }
+
+    private File lyricFile(String mid) {
+        // mid 只包含字母数字，其余字符替换掉以免形成非法路径
+        return new File(cacheDir, mid.replaceAll("[^A-Za-z0-9_-]", "_") + FILE_SUFFIX);
+    }
+
+    public int getMemoryHitCount() {
+        return memoryHitCount.get();
+    }
+
+    public int getDiskHitCount() {
+        return diskHitCount.get();
+    }
+
+    public int getNetworkLoadCount() {
+        return networkLoadCount.get();
+    }
+
+    public int getStaleFallbackCount() {
+        return staleFallbackCount.get();
+    }
+
+    public int getFailureCount() {
+        return failureCount.get();
+    }
+
+    private void logStats() {
+        LogUtil.d(TAG, "歌词缓存统计 memory=" + memoryHitCount.get()
+                + ", disk=" + diskHitCount.get()
+                + ", network=" + networkLoadCount.get()
+                + ", staleFallback=" + staleFallbackCount.get()
+                + ", failure=" + failureCount.get()
+                + ", memoryChars=" + memoryCache.size() + "/" + memoryCache.maxSize());
+    }
+
+    /**
+     * 歌词加载回调
+     */
+    public interface LyricLoadCallback {
+        void onLyricLoaded(Lyric lyric);
+        void onFailure(Exception e);
+    }
+}
@@ -0,0 +1,774 @@
+package com.example.catmusic.biz;
+
+import android.content.Context;
+
+import com.example.catmusic.Config;
+import com.example.catmusic.R;
+import com.example.catmusic.bean.OfflineAlbum;
+import com.example.catmusic.bean.SongsList;
+import com.example.catmusic.net.ApiJson;
+import com.example.catmusic.net.RequestScheduler;
+import com.example.catmusic.utils.LogUtil;
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * 离线下载管理，以 mid 为键。
+ * 整张专辑或在歌曲列表中选择的歌曲会连同专辑的 {@link SongsList} 元数据和歌词一起保存到应用私有目录，
+ * 音频由 {@link SegmentedDownloader} 分段并行下载，进程被杀后下次启动时从已下载的位置继续。
+ * 同时下载的歌曲数和每首歌的分段数都有上限，已下载和正在下载的歌曲总大小不超过存储配额，并为系统保留一部分空闲空间。
+ * 下载完成的歌曲由 {@link com.example.catmusic.service.MusicService} 优先从本地播放。
+ */
+public class OfflineDownloadManager {
+    private static final String TAG = "OfflineDownloadManager";
+    private static final String DIR_NAME = "offline";
+    private static final String ALBUM_DIR_NAME = "albums";
+    private static final String SONG_DIR_NAME = "songs";
+    private static final String AUDIO_SUFFIX = ".audio";
+    private static final String LYRIC_SUFFIX = ".lrc";
+    private static final String ALBUM_SUFFIX = ".json";
+    private static final int MAX_CONCURRENT_SONGS = 2;// 同时下载的歌曲数
+    private static final int SEGMENTS_PER_SONG = 3;// 每首歌的并行分段数
+    private static final long MIN_FREE_BYTES = 200L * 1024 * 1024;// 下载后至少保留的设备空闲空间
+    private static final long PROGRESS_INTERVAL_MILLIS = 500;// 同一首歌进度回调的最小间隔
+    private static final long URL_TIMEOUT_SECONDS = 30;
+    private static final long LYRIC_TIMEOUT_SECONDS = 30;
+
+    private static volatile OfflineDownloadManager instance;
+
+    /**
+     * 下载状态
+     */
+    public enum State {
+        QUEUED,
+        DOWNLOADING,
+        COMPLETED,
+        FAILED
+    }
+
+    private final File albumDir;
+    private final File songDir;
+    private final long quotaBytes;
+    private final OkHttpClient client;
+    private final SongUrlBiz songUrlBiz;
+    private final LyricBiz lyricBiz;
+    private final Gson gson = ApiJson.gson();
+    private final ExecutorService songExecutor = Executors.newFixedThreadPool(MAX_CONCURRENT_SONGS);
+    private final ExecutorService segmentExecutor = Executors.newFixedThreadPool(MAX_CONCURRENT_SONGS * SEGMENTS_PER_SONG);
+    // 专辑元数据的读写
+    private final ExecutorService diskExecutor = Executors.newSingleThreadExecutor();
+    private final Map<String, Task> tasks = new ConcurrentHashMap<>();
+    // 正在执行的任务；同一首歌删除后马上重新下载时，新任务等旧任务清理完文件再开始
+    private final Map<String, Task> runningTasks = new ConcurrentHashMap<>();
+    // 已下载完成的歌曲，文件名键 -> 文件长度；启动时扫描一次，之后随下载完成和删除更新，界面查询时不再访问磁盘
+    private final Map<String, Long> completedSizes = new ConcurrentHashMap<>();
+    private volatile boolean completedLoaded;
+    // 正在下载的歌曲为配额预留的字节数，由 quotaLock 保护
+    private final Map<String, Long> reservedBytes = new HashMap<>();
+    private final Object quotaLock = new Object();
+    private final List<DownloadListener> listeners = new CopyOnWriteArrayList<>();
+
+    public static OfflineDownloadManager getInstance(Context context) {
+        if (instance == null) {
+            synchronized (OfflineDownloadManager.class) {
+                if (instance == null) {
+                    Context appContext = context.getApplicationContext();
+                    long quotaBytes = appContext.getResources().getInteger(R.integer.offline_quota_mb) * 1024L * 1024L;
+                    // 下载大文件不限制整体耗时，只保留读取超时
+                    OkHttpClient client = Config.getMediaHttpClient().newBuilder()
+                            .callTimeout(0, TimeUnit.SECONDS)
+                            .build();
+                    instance = new OfflineDownloadManager(new File(appContext.getFilesDir(), DIR_NAME), quotaBytes,
+                            client, SongUrlBiz.getInstance(appContext), new LyricBiz(Config.getHttpClient()));
+                }
+            }
+        }
+        return instance;
+    }
+
+    public OfflineDownloadManager(File dir, long quotaBytes, OkHttpClient client, SongUrlBiz songUrlBiz, LyricBiz lyricBiz) {
+        this.albumDir = new File(dir, ALBUM_DIR_NAME);
+        this.songDir = new File(dir, SONG_DIR_NAME);
+        this.quotaBytes = quotaBytes;
+        this.client = client;
+        this.songUrlBiz = songUrlBiz;
+        this.lyricBiz = lyricBiz;
+        diskExecutor.execute(this::loadCompleted);
+    }
+
+    public void addListener(DownloadListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(DownloadListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 下载整张专辑或其中选择的歌曲。已选择过的歌曲会合并到同一张专辑，已下载的歌曲直接跳过
+     * @param songs 要下载的歌曲，本地导入和没有 mid 的歌曲会被忽略
+     * @return 新加入下载队列的歌曲数
+     */
+    public int downloadAlbum(long albumId, String title, String pic, List<SongsList.ResultBean.SongsBean> songs) {
+        List<SongsList.ResultBean.SongsBean> selected = new ArrayList<>();
+        for (SongsList.ResultBean.SongsBean song : songs) {
+            if (song != null && !song.isLocal() && song.getMid() != null && !song.getMid().isEmpty()) {
+                selected.add(song);
+            }
+        }
+        if (selected.isEmpty()) {
+            return 0;
+        }
+        diskExecutor.execute(() -> mergeAlbum(albumId, title, pic, selected));
+        int queued = 0;
+        for (SongsList.ResultBean.SongsBean song : selected) {
+            if (enqueue(song.getMid())) {
+                queued++;
+            }
+        }
+        LogUtil.d(TAG, "下载专辑 " + title + "，新加入 " + queued + " 首");
+        return queued;
+    }
+
+    /**
+     * 进程启动后调用：按已保存的专辑继续下载尚未完成的歌曲
+     */
+    public void resumePending() {
+        diskExecutor.execute(() -> {
+            int resumed = 0;
+            for (OfflineAlbum album : readAlbums()) {
+                for (SongsList.ResultBean.SongsBean song : songsOf(album)) {
+                    if (song.getMid() != null && enqueue(song.getMid())) {
+                        resumed++;
+                    }
+                }
+            }
+            if (resumed > 0) {
+                LogUtil.d(TAG, "继续下载未完成的离线歌曲 " + resumed + " 首");
+            }
+        });
+    }
+
+    /**
+     * 取消下载并删除这首歌的离线文件，同时从所在专辑的选择中移除，下次启动不会再继续下载
+     */
+    public void delete(String mid) {
+        Task task = tasks.remove(mid);
+        completedSizes.remove(fileKey(mid));
+        boolean running = false;
+        if (task != null) {
+            synchronized (task) {
+                task.deleted = true;
+                running = task.started && !task.finished;
+            }
+            task.downloader.cancel();
+        }
+        // 正在下载的任务可能还会写入状态文件或完成改名，文件由它退出时清理
+        boolean deleteFilesNow = !running;
+        diskExecutor.execute(() -> {
+            removeFromAlbums(mid);
+            if (deleteFilesNow) {
+                deleteFiles(mid);
+            }
+        });
+        notifyChanged(new DownloadInfo(mid, null, 0, 0, null));
+    }
+
+    /**
+     * 在 diskExecutor 中执行：把歌曲从所在专辑的选择中移除
+     */
+    private void removeFromAlbums(String mid) {
+        for (OfflineAlbum album : readAlbums()) {
+            List<SongsList.ResultBean.SongsBean> songs = songsOf(album);
+            for (int i = 0; i < songs.size(); i++) {
+                if (mid.equals(songs.get(i).getMid())) {
+                    songs.remove(i);
+                    writeAlbum(album);
+                    break;
+                }
+            }
+        }
+    }
+
+    private void deleteFiles(String mid) {
+        completedSizes.remove(fileKey(mid));
+        audioFile(mid).delete();
+        lyricFile(mid).delete();
+        new SegmentedDownloader(client, segmentExecutor, SEGMENTS_PER_SONG, audioFile(mid)).discardPartial();
+    }
+
+    public boolean isDownloaded(String mid) {
+        return completedSize(mid) != null;
+    }
+
+    /**
+     * @return 已下载完成的文件长度，未下载时返回 null。启动时的扫描完成前直接检查文件
+     */
+    private Long completedSize(String mid) {
+        if (mid == null || mid.isEmpty()) {
+            return null;
+        }
+        if (completedLoaded) {
+            return completedSizes.get(fileKey(mid));
+        }
+        File file = audioFile(mid);
+        return file.isFile() ? file.length() : null;
+    }
+
+    /**
+     * 在 diskExecutor 中执行：扫描已下载完成的音频文件
+     */
+    private void loadCompleted() {
+        File[] files = songDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.endsWith(AUDIO_SUFFIX)) {
+                    completedSizes.put(name.substring(0, name.length() - AUDIO_SUFFIX.length()), file.length());
+                }
+            }
+        }
+        completedLoaded = true;
+    }
+
+    /**
+     * @return 已下载完成的音频文件，没有时返回 null
+     */
+    public File getAudioFile(String mid) {
+        return isDownloaded(mid) ? audioFile(mid) : null;
+    }
+
+    /**
+     * 读取随歌曲一起下载的歌词，在调用线程中读文件
+     * @return 没有离线歌词时返回 null
+     */
+    public String readLyric(String mid) {
+        if (mid == null || mid.isEmpty()) {
+            return null;
+        }
+        File file = lyricFile(mid);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] data = new byte[(int) file.length()];
+            int offset = 0;
+            int n;
+            while (offset < data.length && (n = in.read(data, offset, data.length - offset)) > 0) {
+                offset += n;
+            }
+            return new String(data, 0, offset, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            LogUtil.w(TAG, "读取离线歌词失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 读取已下载专辑保存的歌曲列表，在调用线程中读文件；离线打开专辑时使用
+     * @return 没有下载过这张专辑时返回 null
+     */
+    public List<SongsList.ResultBean.SongsBean> getAlbumSongs(long albumId) {
+        OfflineAlbum album = readAlbum(albumFile(albumId));
+        return album != null ? songsOf(album) : null;
+    }
+
+    /**
+     * @return 排队或下载中的歌曲的状态，已下载的歌曲为 {@link State#COMPLETED}，其余返回 null
+     */
+    public DownloadInfo getInfo(String mid) {
+        Task task = mid != null ? tasks.get(mid) : null;
+        if (task != null) {
+            return task.snapshot();
+        }
+        Long size = completedSize(mid);
+        return size != null ? new DownloadInfo(mid, State.COMPLETED, size, size, null) : null;
+    }
+
+    /**
+     * 下载队列和存储占用统计，便于调试
+     */
+    public String dumpStats() {
+        int queued = 0;
+        int running = 0;
+        for (Task task : tasks.values()) {
+            if (task.state == State.DOWNLOADING) {
+                running++;
+            } else if (task.state == State.QUEUED) {
+                queued++;
+            }
+        }
+        return String.format(Locale.US, "离线下载: 排队=%d 下载中=%d 已用=%.1fMB 配额=%dMB",
+                queued, running, completedBytes() / 1024.0 / 1024.0, quotaBytes / 1024 / 1024);
+    }
+
+    /**
+     * @return 是否新加入了队列；已下载或已在队列中的歌曲返回 false
+     */
+    private boolean enqueue(String mid) {
+        if (isDownloaded(mid)) {
+            return false;
+        }
+        Task task = new Task(mid, new SegmentedDownloader(client, segmentExecutor, SEGMENTS_PER_SONG, audioFile(mid)));
+        Task existing = tasks.putIfAbsent(mid, task);
+        if (existing != null && existing.state != State.FAILED) {
+            return false;
+        }
+        if (existing != null) {
+            // 失败的歌曲再次选择时重新下载
+            tasks.put(mid, task);
+        }
+        notifyChanged(task.snapshot());
+        songExecutor.execute(() -> run(task));
+        return true;
+    }
+
+    private void run(Task task) {
+        synchronized (task) {
+            if (task.deleted) {
+                // 排队期间被删除
+                return;
+            }
+            task.started = true;
+        }
+        Task previous = runningTasks.put(task.mid, task);
+        if (previous != null) {
+            previous.awaitFinished();
+        }
+        try {
+            download(task);
+        } finally {
+            boolean deleted;
+            synchronized (task) {
+                task.finished = true;
+                deleted = task.deleted;
+            }
+            if (deleted) {
+                deleteFiles(task.mid);
+            }
+            runningTasks.remove(task.mid, task);
+            task.finishedLatch.countDown();
+        }
+    }
+
+    private void download(Task task) {
+        task.state = State.DOWNLOADING;
+        notifyChanged(task.snapshot());
+        try {
+            if (!songDir.isDirectory() && !songDir.mkdirs()) {
+                throw new IOException("无法创建目录: " + songDir);
+            }
+            task.downloader.download(refresh -> resolveUrl(task.mid, refresh), new SegmentedDownloader.Listener() {
+                @Override
+                public void onStart(long totalBytes, long remainingBytes) throws IOException {
+                    task.totalBytes = totalBytes;
+                    task.downloadedBytes = totalBytes >= 0 ? totalBytes - remainingBytes : 0;
+                    reserve(task.mid, totalBytes);
+                }
+
+                @Override
+                public void onProgress(long downloadedBytes, long totalBytes) {
+                    task.downloadedBytes = downloadedBytes;
+                    long now = System.currentTimeMillis();
+                    if (now - task.lastNotifyMillis >= PROGRESS_INTERVAL_MILLIS) {
+                        task.lastNotifyMillis = now;
+                        notifyChanged(task.snapshot());
+                    }
+                }
+            });
+            downloadLyric(task.mid);
+            task.state = State.COMPLETED;
+            synchronized (task) {
+                if (!task.deleted) {
+                    completedSizes.put(fileKey(task.mid), audioFile(task.mid).length());
+                }
+            }
+            if (!tasks.remove(task.mid, task)) {
+                // 完成时已被删除，文件由 run 清理，不再报告完成
+                releaseReservation(task.mid);
+                return;
+            }
+            LogUtil.d(TAG, "离线下载完成: " + task.mid + "，" + task.totalBytes / 1024 + "KB");
+        } catch (IOException e) {
+            task.state = State.FAILED;
+            task.error = e.getMessage();
+            if (e instanceof QuotaExceededException) {
+                // 空间不足时每次启动继续下载都会同样失败：清理临时文件，并从专辑的选择中移除，之后由用户重新选择
+                task.downloader.discardPartial();
+                diskExecutor.execute(() -> removeFromAlbums(task.mid));
+            }
+            if (tasks.get(task.mid) != task) {
+                // 已被删除，不再报告失败
+                releaseReservation(task.mid);
+                return;
+            }
+            LogUtil.w(TAG, "离线下载失败: " + task.mid + ", " + e.getMessage());
+        }
+        releaseReservation(task.mid);
+        notifyChanged(task.snapshot());
+    }
+
+    private String resolveUrl(String mid, boolean refresh) throws IOException {
+        if (refresh) {
+            // 地址签名已被上游拒绝
+            songUrlBiz.invalidate(mid);
+        }
+        String cached = songUrlBiz.getCachedUrl(mid);
+        if (cached != null) {
+            return cached;
+        }
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<String> url = new AtomicReference<>();
+        AtomicReference<Exception> error = new AtomicReference<>();
+        songUrlBiz.resolve(Collections.singletonList(mid), RequestScheduler.Priority.BACKGROUND,
+                new SongUrlBiz.SongUrlCallback() {
+                    @Override
+                    public void onUrlsResolved(Map<String, String> urlMap) {
+                        String resolved = urlMap.get(mid);
+                        if (resolved != null && !resolved.isEmpty()) {
+                            url.set(resolved);
+                        }
+                    }
+
+                    @Override
+                    public void onComplete(Exception e) {
+                        error.set(e);
+                        latch.countDown();
+                    }
+                });
+        try {
+            if (!latch.await(URL_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IOException("获取下载地址超时");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("获取下载地址被中断");
+        }
+        if (url.get() == null) {
+            Exception e = error.get();
+            throw new IOException("无法获取下载地址" + (e != null ? ": " + e.getMessage() : ""));
+        }
+        return url.get();
+    }
+
+    /**
+     * 歌词下载失败不影响歌曲本身，离线播放时没有歌词而已
+     */
+    private void downloadLyric(String mid) {
+        File file = lyricFile(mid);
+        if (file.isFile()) {
+            return;
+        }
+        CountDownLatch latch = new CountDownLatch(1);
+        lyricBiz.getLyric(mid, RequestScheduler.Priority.BACKGROUND, new LyricBiz.LyricCallback() {
+            @Override
+            public void onSuccess(String lyricContent) {
+                File tmp = new File(file.getPath() + ".tmp");
+                try (OutputStream out = new FileOutputStream(tmp)) {
+                    out.write(lyricContent.getBytes(StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    LogUtil.w(TAG, "保存离线歌词失败: " + e.getMessage());
+                    tmp.delete();
+                    latch.countDown();
+                    return;
+                }
+                if (!tmp.renameTo(file)) {
+                    tmp.delete();
+                }
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                LogUtil.w(TAG, "下载离线歌词失败: " + mid + ", " + e.getMessage());
+                latch.countDown();
+            }
+        });
+        try {
+            latch.await(LYRIC_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 为即将下载的歌曲预留配额，超出配额或设备空闲空间不足时抛出异常
+     */
+    private void reserve(String mid, long totalBytes) throws IOException {
+        if (totalBytes < 0) {
+            // 长度未知，只能下载完再计入占用
+            return;
+        }
+        synchronized (quotaLock) {
+            long reserved = 0;
+            for (Map.Entry<String, Long> entry : reservedBytes.entrySet()) {
+                if (!entry.getKey().equals(mid)) {
+                    reserved += entry.getValue();
+                }
+            }
+            long used = completedBytes() + reserved;
+            if (used + totalBytes > quotaBytes) {
+                throw new QuotaExceededException(String.format(Locale.US, "超出离线存储配额（已用 %dMB / %dMB）",
+                        used / 1024 / 1024, quotaBytes / 1024 / 1024));
+            }
+            if (songDir.getUsableSpace() - totalBytes < MIN_FREE_BYTES) {
+                throw new QuotaExceededException("设备存储空间不足");
+            }
+            reservedBytes.put(mid, totalBytes);
+        }
+    }
+
+    private void releaseReservation(String mid) {
+        synchronized (quotaLock) {
+            reservedBytes.remove(mid);
+        }
+    }
+
+    /**
+     * 已下载完成的歌曲总大小，按内存中的记录累加；启动时的扫描完成前直接统计文件
+     */
+    private long completedBytes() {
+        long total = 0;
+        if (completedLoaded) {
+            for (long size : completedSizes.values()) {
+                total += size;
+            }
+            return total;
+        }
+        File[] files = songDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(AUDIO_SUFFIX)) {
+                    total += file.length();
+                }
+            }
+        }
+        return total;
+    }
+
+    private void notifyChanged(DownloadInfo info) {
+        for (DownloadListener listener : listeners) {
+            listener.onDownloadChanged(info);
+        }
+    }
+
+    /**
+     * 在 diskExecutor 中执行：把新选择的歌曲合并进已保存的专辑
+     */
+    private void mergeAlbum(long albumId, String title, String pic, List<SongsList.ResultBean.SongsBean> selected) {
+        File file = albumFile(albumId);
+        OfflineAlbum album = readAlbum(file);
+        if (album == null) {
+            album = new OfflineAlbum();
+            album.setId(albumId);
+            SongsList songsList = new SongsList();
+            songsList.setResult(new SongsList.ResultBean());
+            songsList.getResult().setSongs(new ArrayList<>());
+            album.setSongs(songsList);
+        }
+        album.setTitle(title);
+        album.setPic(pic);
+        List<SongsList.ResultBean.SongsBean> songs = songsOf(album);
+        for (SongsList.ResultBean.SongsBean song : selected) {
+            boolean exists = false;
+            for (int i = 0; i < songs.size(); i++) {
+                if (song.getMid().equals(songs.get(i).getMid())) {
+                    songs.set(i, song);
+                    exists = true;
+                    break;
+                }
+            }
+            if (!exists) {
+                songs.add(song);
+            }
+        }
+        writeAlbum(album);
+    }
+
+    private List<OfflineAlbum> readAlbums() {
+        List<OfflineAlbum> albums = new ArrayList<>();
+        File[] files = albumDir.listFiles();
+        if (files == null) {
+            return albums;
+        }
+        for (File file : files) {
+            if (file.getName().endsWith(ALBUM_SUFFIX)) {
+                OfflineAlbum album = readAlbum(file);
+                if (album != null) {
+                    albums.add(album);
+                }
+            }
+        }
+        return albums;
+    }
+
+    private OfflineAlbum readAlbum(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] data = new byte[(int) file.length()];
+            int offset = 0;
+            int n;
+            while (offset < data.length && (n = in.read(data, offset, data.length - offset)) > 0) {
+                offset += n;
+            }
+            return gson.fromJson(new String(data, 0, offset, StandardCharsets.UTF_8), OfflineAlbum.class);
+        } catch (Exception e) {
+            LogUtil.w(TAG, "读取离线专辑失败: " + file.getName() + ", " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeAlbum(OfflineAlbum album) {
+        if (!albumDir.isDirectory() && !albumDir.mkdirs()) {
+            LogUtil.w(TAG, "无法创建目录: " + albumDir);
+            return;
+        }
+        File file = albumFile(album.getId());
+        File tmp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            out.write(gson.toJson(album).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            LogUtil.w(TAG, "保存离线专辑失败: " + e.getMessage());
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+        }
+    }
+
+    private static List<SongsList.ResultBean.SongsBean> songsOf(OfflineAlbum album) {
+        SongsList songsList = album.getSongs();
+        if (songsList == null || songsList.getResult() == null || songsList.getResult().getSongs() == null) {
+            return new ArrayList<>();
+        }
+        return songsList.getResult().getSongs();
+    }
+
+    private File albumFile(long albumId) {
+        return new File(albumDir, albumId + ALBUM_SUFFIX);
+    }
+
+    private File audioFile(String mid) {
+        return new File(songDir, fileKey(mid) + AUDIO_SUFFIX);
+    }
+
+    private File lyricFile(String mid) {
+        return new File(songDir, fileKey(mid) + LYRIC_SUFFIX);
+    }
+
+    private static String fileKey(String mid) {
+        StringBuilder sb = new StringBuilder(mid.length());
+        for (int i = 0; i < mid.length(); i++) {
+            char c = mid.charAt(i);
+            boolean safe = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '-';
+            sb.append(safe ? c : '_');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 超出离线存储配额或设备空闲空间不足
+     */
+    private static final class QuotaExceededException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        QuotaExceededException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * 一首歌的下载任务，字段由下载线程写入，其他线程只读取快照
+     */
+    private static final class Task {
+        final String mid;
+        final SegmentedDownloader downloader;
+        final CountDownLatch finishedLatch = new CountDownLatch(1);
+        // 以下三个字段由 Task 自身的锁保护，决定删除时由谁清理文件
+        boolean started;
+        boolean finished;
+        boolean deleted;
+        volatile State state = State.QUEUED;
+        volatile long downloadedBytes;
+        volatile long totalBytes = -1;
+        volatile String error;
+        long lastNotifyMillis;
+
+        Task(String mid, SegmentedDownloader downloader) {
+            this.mid = mid;
+            this.downloader = downloader;
+        }
+
+        DownloadInfo snapshot() {
+            return new DownloadInfo(mid, state, downloadedBytes, totalBytes, error);
+        }
+
+        void awaitFinished() {
+            try {
+                finishedLatch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 某首歌某一时刻的下载状态
+     */
+    public static final class DownloadInfo {
+        public final String mid;
+        /** 为 null 表示离线文件已被删除 */
+        public final State state;
+        public final long downloadedBytes;
+        /** 文件总长度，未知时为 -1 */
+        public final long totalBytes;
+        public final String error;
+
+        DownloadInfo(String mid, State state, long downloadedBytes, long totalBytes, String error) {
+            this.mid = mid;
+            this.state = state;
+            this.downloadedBytes = downloadedBytes;
+            this.totalBytes = totalBytes;
+            this.error = error;
+        }
+
+        /**
+         * @return 0~100 的下载进度，总长度未知时为 0
+         */
+        public int getPercent() {
+            return totalBytes > 0 ? (int) (downloadedBytes * 100 / totalBytes) : 0;
+        }
+    }
+
+    /**
+     * 下载进度和状态变化监听，在下载线程中回调
+     */
+    public interface DownloadListener {
+        void onDownloadChanged(DownloadInfo info);
+    }
+}
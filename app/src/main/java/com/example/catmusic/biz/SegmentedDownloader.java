@@ -0,0 +1,463 @@
+package com.example.catmusic.biz;
+
+import com.example.catmusic.utils.LogUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * 单首歌曲的分段下载。
+ * 先用 Range 请求得到文件总长度，再把文件切成若干段并行下载到 .part 文件，各段进度定期写入 .state 文件；
+ * 进程被杀后从各段已完成的位置继续。全部完成后改名为正式文件。上游不支持 Range 时退化为整文件下载。
+ */
+final class SegmentedDownloader {
+    private static final String TAG = "SegmentedDownloader";
+    private static final int STATE_VERSION = 1;
+    private static final long MIN_SEGMENT_BYTES = 512 * 1024;// 小于该大小的文件不再切分
+    private static final long STATE_SAVE_INTERVAL_MILLIS = 1000;
+    private static final int MAX_SEGMENT_RETRIES = 3;
+    private static final long RETRY_BACKOFF_MILLIS = 1000;
+    private static final int BUFFER_SIZE = 32 * 1024;
+
+    /**
+     * 提供下载地址；上游返回 403/404/410 时以 refresh 为 true 再次获取，用于地址签名过期
+     */
+    interface UrlProvider {
+        String getUrl(boolean refresh) throws IOException;
+    }
+
+    interface Listener {
+        /**
+         * 得到文件总长度后、预分配文件和开始下载前调用，可在此检查存储配额，抛出异常则放弃下载
+         * @param remainingBytes 还需要下载的字节数
+         */
+        void onStart(long totalBytes, long remainingBytes) throws IOException;
+
+        void onProgress(long downloadedBytes, long totalBytes);
+    }
+
+    private final OkHttpClient client;
+    private final ExecutorService segmentExecutor;
+    private final int maxSegments;
+    private final File targetFile;
+    private final File partFile;
+    private final File stateFile;
+    private final Set<Call> activeCalls = ConcurrentHashMap.newKeySet();
+    private final Object stateLock = new Object();
+    private volatile boolean canceled;
+    private volatile String url;
+    private long lastStateSave;
+
+    SegmentedDownloader(OkHttpClient client, ExecutorService segmentExecutor, int maxSegments, File targetFile) {
+        this.client = client;
+        this.segmentExecutor = segmentExecutor;
+        this.maxSegments = maxSegments;
+        this.targetFile = targetFile;
+        this.partFile = new File(targetFile.getPath() + ".part");
+        this.stateFile = new File(targetFile.getPath() + ".state");
+    }
+
+    /**
+     * 在调用线程中阻塞执行下载，各段在 segmentExecutor 中并行
+     */
+    void download(UrlProvider urls, Listener listener) throws IOException {
+        List<Segment> segments = readState();
+        long total;
+        if (segments != null) {
+            total = segments.get(segments.size() - 1).end;
+            url = urls.getUrl(false);
+            LogUtil.d(TAG, targetFile.getName() + " 从上次的进度继续下载: " + downloadedBytes(segments) + "/" + total);
+            listener.onStart(total, total - downloadedBytes(segments));
+        } else {
+            total = probe(urls);
+            if (total < 0) {
+                // 上游不支持 Range 或没有给出长度，只能整文件下载，无法断点续传
+                listener.onStart(-1, -1);
+                downloadWhole(listener);
+                return;
+            }
+            // 先检查配额，放弃下载时不留下预分配的文件
+            listener.onStart(total, total);
+            segments = split(total);
+            // 预先分配文件，各段按偏移写入
+            try (RandomAccessFile file = new RandomAccessFile(partFile, "rw")) {
+                file.setLength(total);
+            }
+            saveState(segments, true);
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(partFile, "rw")) {
+            FileChannel channel = file.getChannel();
+            AtomicLong downloaded = new AtomicLong(downloadedBytes(segments));
+            List<Future<?>> futures = new ArrayList<>();
+            for (Segment segment : segments) {
+                if (segment.isDone()) {
+                    continue;
+                }
+                List<Segment> all = segments;
+                futures.add(segmentExecutor.submit(() -> {
+                    downloadSegment(channel, segment, urls, all, downloaded, total, listener);
+                    return null;
+                }));
+            }
+            try {
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (ExecutionException e) {
+                cancel();
+                for (Future<?> future : futures) {
+                    waitQuietly(future);
+                }
+                Throwable cause = e.getCause();
+                if (cause instanceof ContentChangedException) {
+                    // 上游文件已变化，旧的进度作废，下次从头下载
+                    discardPartial();
+                } else {
+                    saveState(segments, true);
+                }
+                throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+            } catch (InterruptedException e) {
+                cancel();
+                Thread.currentThread().interrupt();
+                throw new IOException("下载被中断");
+            }
+        }
+        // 所有分段都已完成，即使恰好在此时被取消也直接保存
+        finish();
+    }
+
+    /**
+     * 取消下载，已下载的进度保留，下次继续
+     */
+    void cancel() {
+        canceled = true;
+        for (Call call : activeCalls) {
+            call.cancel();
+        }
+    }
+
+    /**
+     * 删除未完成的临时文件，下次从头下载
+     */
+    void discardPartial() {
+        partFile.delete();
+        stateFile.delete();
+    }
+
+    /**
+     * 请求第一个字节，从 Content-Range 得到总长度；不支持 Range 时返回 -1
+     */
+    private long probe(UrlProvider urls) throws IOException {
+        url = urls.getUrl(false);
+        for (int attempt = 0; ; attempt++) {
+            try (Response response = execute(new Request.Builder().url(url).header("Range", "bytes=0-0").build())) {
+                if (isUrlExpired(response.code()) && attempt == 0) {
+                    url = urls.getUrl(true);
+                    continue;
+                }
+                if (response.code() == 206) {
+                    long total = parseTotal(response.header("Content-Range"));
+                    return total > 0 ? total : -1;
+                }
+                if (response.code() == 200) {
+                    return -1;
+                }
+                throw new IOException("上游响应 " + response.code());
+            }
+        }
+    }
+
+    private void downloadSegment(FileChannel channel, Segment segment, UrlProvider urls, List<Segment> segments,
+                                 AtomicLong downloaded, long total, Listener listener) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int retries = 0;
+        while (!segment.isDone()) {
+            if (canceled) {
+                throw new IOException("Canceled");
+            }
+            long from = segment.position();
+            Request request = new Request.Builder()
+                    .url(url)
+                    .header("Range", "bytes=" + from + "-" + (segment.end - 1))
+                    .build();
+            try (Response response = execute(request)) {
+                if (isUrlExpired(response.code())) {
+                    throw new UrlExpiredException(response.code());
+                }
+                ResponseBody body = response.body();
+                if (response.code() != 206 || body == null) {
+                    throw new IOException("上游响应 " + response.code());
+                }
+                long rangeTotal = parseTotal(response.header("Content-Range"));
+                if (rangeTotal != total) {
+                    // 上游文件已变化，旧的进度作废
+                    throw new ContentChangedException(total, rangeTotal);
+                }
+                InputStream in = body.byteStream();
+                int n;
+                while (!segment.isDone() && !canceled && (n = in.read(buffer, 0, (int) Math.min(buffer.length, segment.end - segment.position()))) > 0) {
+                    ByteBuffer src = ByteBuffer.wrap(buffer, 0, n);
+                    long offset = segment.position();
+                    while (src.hasRemaining()) {
+                        offset += channel.write(src, offset);
+                    }
+                    // 数据写入后才推进进度，保存的进度不会超过文件中的有效数据
+                    segment.downloaded.addAndGet(n);
+                    listener.onProgress(downloaded.addAndGet(n), total);
+                    maybeSaveState(segments);
+                    retries = 0;
+                }
+                if (!segment.isDone() && !canceled) {
+                    throw new IOException("分段数据提前结束");
+                }
+            } catch (UrlExpiredException e) {
+                if (retries++ >= MAX_SEGMENT_RETRIES) {
+                    throw e;
+                }
+                url = urls.getUrl(true);
+            } catch (IOException e) {
+                if (canceled || e instanceof ContentChangedException || retries++ >= MAX_SEGMENT_RETRIES) {
+                    throw e;
+                }
+                LogUtil.w(TAG, targetFile.getName() + " 分段 " + segment.start + " 下载中断，稍后重试: " + e.getMessage());
+                try {
+                    Thread.sleep(RETRY_BACKOFF_MILLIS * retries);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("下载被中断");
+                }
+            }
+        }
+    }
+
+    private void downloadWhole(Listener listener) throws IOException {
+        try (Response response = execute(new Request.Builder().url(url).build())) {
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                throw new IOException("上游响应 " + response.code());
+            }
+            long total = body.contentLength();
+            long downloaded = 0;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try (InputStream in = body.byteStream();
+                 FileOutputStream out = new FileOutputStream(partFile)) {
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    if (canceled) {
+                        throw new IOException("Canceled");
+                    }
+                    out.write(buffer, 0, n);
+                    downloaded += n;
+                    listener.onProgress(downloaded, total);
+                }
+            }
+            if (total >= 0 && downloaded != total) {
+                throw new IOException("下载不完整: " + downloaded + "/" + total);
+            }
+        } catch (IOException e) {
+            partFile.delete();
+            throw e;
+        }
+        finish();
+    }
+
+    private void finish() throws IOException {
+        stateFile.delete();
+        if (!partFile.renameTo(targetFile)) {
+            throw new IOException("无法保存下载文件: " + targetFile);
+        }
+    }
+
+    private Response execute(Request request) throws IOException {
+        Call call = client.newCall(request);
+        activeCalls.add(call);
+        try {
+            if (canceled) {
+                call.cancel();
+            }
+            return call.execute();
+        } finally {
+            activeCalls.remove(call);
+        }
+    }
+
+    private List<Segment> split(long total) {
+        int count = (int) Math.max(1, Math.min(maxSegments, total / MIN_SEGMENT_BYTES));
+        long size = total / count;
+        List<Segment> segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long start = i * size;
+            long end = i == count - 1 ? total : start + size;
+            segments.add(new Segment(start, end, 0));
+        }
+        return segments;
+    }
+
+    private void maybeSaveState(List<Segment> segments) {
+        long now = System.currentTimeMillis();
+        synchronized (stateLock) {
+            if (now - lastStateSave < STATE_SAVE_INTERVAL_MILLIS) {
+                return;
+            }
+            lastStateSave = now;
+        }
+        saveState(segments, false);
+    }
+
+    private void saveState(List<Segment> segments, boolean force) {
+        synchronized (stateLock) {
+            if (force) {
+                lastStateSave = System.currentTimeMillis();
+            }
+            File tmp = new File(stateFile.getPath() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(STATE_VERSION);
+                out.writeInt(segments.size());
+                for (Segment segment : segments) {
+                    out.writeLong(segment.start);
+                    out.writeLong(segment.end);
+                    out.writeLong(segment.downloaded.get());
+                }
+            } catch (IOException e) {
+                LogUtil.w(TAG, "保存下载进度失败: " + e.getMessage());
+                tmp.delete();
+                return;
+            }
+            if (!tmp.renameTo(stateFile)) {
+                tmp.delete();
+            }
+        }
+    }
+
+    /**
+     * 读取上次保存的进度，没有或与临时文件不一致时返回 null
+     */
+    private List<Segment> readState() {
+        if (!stateFile.isFile() || !partFile.isFile()) {
+            discardPartial();
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(stateFile)))) {
+            if (in.readInt() != STATE_VERSION) {
+                discardPartial();
+                return null;
+            }
+            int count = in.readInt();
+            List<Segment> segments = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long start = in.readLong();
+                long end = in.readLong();
+                long downloaded = in.readLong();
+                segments.add(new Segment(start, end, Math.min(downloaded, end - start)));
+            }
+            if (segments.isEmpty() || partFile.length() != segments.get(count - 1).end) {
+                discardPartial();
+                return null;
+            }
+            return segments;
+        } catch (IOException e) {
+            LogUtil.w(TAG, "读取下载进度失败: " + e.getMessage());
+            discardPartial();
+            return null;
+        }
+    }
+
+    private static long downloadedBytes(List<Segment> segments) {
+        long downloaded = 0;
+        for (Segment segment : segments) {
+            downloaded += segment.downloaded.get();
+        }
+        return downloaded;
+    }
+
+    /**
+     * 解析 Content-Range: bytes start-end/total 中的 total，无法解析时返回 -1
+     */
+    private static long parseTotal(String contentRange) {
+        int slash = contentRange != null ? contentRange.lastIndexOf('/') : -1;
+        if (slash < 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static boolean isUrlExpired(int code) {
+        return code == 403 || code == 404 || code == 410;
+    }
+
+    private static void waitQuietly(Future<?> future) {
+        try {
+            future.get();
+        } catch (Exception ignored) {
+            // 已经在处理第一个失败的分段
+        }
+    }
+
+    /**
+     * 文件中的一段 [start, end)
+     */
+    private static final class Segment {
+        final long start;
+        final long end;
+        final AtomicLong downloaded;
+
+        Segment(long start, long end, long downloaded) {
+            this.start = start;
+            this.end = end;
+            this.downloaded = new AtomicLong(downloaded);
+        }
+
+        long position() {
+            return start + downloaded.get();
+        }
+
+        boolean isDone() {
+            return downloaded.get() >= end - start;
+        }
+    }
+
+    private static final class UrlExpiredException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        UrlExpiredException(int code) {
+            super("下载地址已失效: " + code);
+        }
+    }
+
+    private static final class ContentChangedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        ContentChangedException(long expected, long actual) {
+            super("文件长度由 " + expected + " 变为 " + actual + "，需要重新下载");
+        }
+    }
+}
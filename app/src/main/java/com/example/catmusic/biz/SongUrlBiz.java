@@ -0,0 +1,456 @@
+package com.example.catmusic.biz;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.example.catmusic.Config;
+import com.example.catmusic.bean.SongUrls;
+import com.example.catmusic.net.ApiJson;
+import com.example.catmusic.net.RequestScheduler;
+import com.example.catmusic.utils.LogUtil;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 歌曲播放地址业务类
+ * 负责调用 {@link Config#API_GET_SONGS_URL} 解析 mid 对应的播放地址。
+ * 先查 {@link SongUrlCache}，只把缺失或已过期的 mid 发给服务器，即将过期的记录在后台提前刷新；
+ * 对并发或紧邻的请求做合并：同一个 mid 同一时刻只会有一个在途请求，
+ * 所有等待该 mid 的调用方共享同一份结果；大批量 mid 会切分成多个分片有限并发地请求。
+ * 分片经 {@link RequestScheduler} 按优先级发出：当前歌曲的地址优先于列表可见区域，后台刷新排在最后。
+ */
+public class SongUrlBiz {
+    private static final String TAG = "SongUrlBiz";
+    private static final int MAX_MIDS_PER_CHUNK = 30;// 单个请求最多携带的 mid 数
+    private static final int MAX_QUERY_LENGTH = 1024;// 单个请求查询串的长度上限
+    private static final int MID_PARAM_OVERHEAD = "&mid[]=".length();
+    private static final int MAX_PARALLEL_CHUNKS = 3;// 同时在途的分片数
+
+    private static volatile SongUrlBiz instance;
+
+    private final OkHttpClient okHttpClient;
+    private final SongUrlCache urlCache;
+    private final Object lock = new Object();
+    private final Map<String, UrlChunk> inFlightByMid = new HashMap<>();
+    private final List<UrlChunk> queuedChunks = new ArrayList<>();
+    private int runningChunkCount;
+
+    public static SongUrlBiz getInstance(Context context) {
+        if (instance == null) {
+            synchronized (SongUrlBiz.class) {
+                if (instance == null) {
+                    instance = new SongUrlBiz(Config.getHttpClient(), new SongUrlCache(context));
+                }
+            }
+        }
+        return instance;
+    }
+
+    public SongUrlBiz(OkHttpClient okHttpClient, SongUrlCache urlCache) {
+        this.okHttpClient = okHttpClient;
+        this.urlCache = urlCache;
+    }
+
+    /**
+     * 获取缓存中仍然有效的播放地址
+     * @return 没有缓存或已过期时返回 null
+     */
+    public String getCachedUrl(String mid) {
+        SongUrlCache.Entry entry = mid != null ? urlCache.get(mid) : null;
+        return entry != null ? entry.url : null;
+    }
+
+    /**
+     * 丢弃缓存的播放地址，如地址签名已被上游拒绝，下次解析时重新请求
+     */
+    public void invalidate(String mid) {
+        if (mid != null) {
+            urlCache.remove(mid);
+        }
+    }
+
+    /**
+     * 以 {@link RequestScheduler.Priority#VISIBLE} 优先级解析一批 mid 的播放地址
+     * @see #resolve(Collection, RequestScheduler.Priority, SongUrlCallback)
+     */
+    public Ticket resolve(Collection<String> mids, SongUrlCallback callback) {
+        return resolve(mids, RequestScheduler.Priority.VISIBLE, callback);
+    }
+
+    /**
+     * 解析一批 mid 的播放地址
+     * 待请求的 mid 会按 {@link #MAX_MIDS_PER_CHUNK} 和 {@link #MAX_QUERY_LENGTH} 切成多个分片，
+     * 最多 {@link #MAX_PARALLEL_CHUNKS} 个分片同时在途（前台分片不受此限制），每个分片返回后立即回调，调用方可逐步刷新界面。
+     * 若 mid 已在更低优先级的分片中，该分片会被提升到本次的优先级。
+     * @param mids 歌曲mid集合，空值会被忽略；排在前面的 mid 会被优先请求
+     * @param priority 请求优先级
+     * @param callback 回调接口，可能在调用线程或网络线程中执行
+     * @return 可用于取消本次解析的句柄
+     */
+    public Ticket resolve(Collection<String> mids, RequestScheduler.Priority priority, SongUrlCallback callback) {
+        Set<String> wanted = new LinkedHashSet<>();
+        if (mids != null) {
+            for (String mid : mids) {
+                if (mid != null && !mid.isEmpty()) {
+                    wanted.add(mid);
+                }
+            }
+        }
+        Waiter waiter = new Waiter(callback, wanted);
+        Map<String, String> cachedUrls = new HashMap<>();
+        int fetchCount = 0;
+        int refreshCount = 0;
+        boolean ready;
+        synchronized (lock) {
+            long now = System.currentTimeMillis();
+            List<String> toFetch = new ArrayList<>();
+            List<String> toRefresh = new ArrayList<>();
+            for (String mid : wanted) {
+                SongUrlCache.Entry cached = urlCache.get(mid);
+                if (cached != null) {
+                    cachedUrls.put(mid, cached.url);
+                    waiter.pending.remove(mid);
+                    if (cached.needsRefresh(now) && !inFlightByMid.containsKey(mid)) {
+                        toRefresh.add(mid);
+                    }
+                    continue;
+                }
+                UrlChunk chunk = inFlightByMid.get(mid);
+                if (chunk != null) {
+                    if (!chunk.waiters.contains(waiter)) {
+                        chunk.waiters.add(waiter);
+                    }
+                    promote(chunk, priority);
+                } else {
+                    toFetch.add(mid);
+                }
+            }
+            for (UrlChunk chunk : split(toFetch, priority)) {
+                chunk.waiters.add(waiter);
+                enqueueChunk(chunk);
+            }
+            // 没有等待者的后台刷新分片，结果只写入缓存，排在正常请求之后
+            for (UrlChunk chunk : split(toRefresh, RequestScheduler.Priority.BACKGROUND)) {
+                enqueueChunk(chunk);
+            }
+            fetchCount = toFetch.size();
+            refreshCount = toRefresh.size();
+            ready = waiter.pending.isEmpty();
+            if (ready) {
+                waiter.done = true;
+            }
+        }
+
+        LogUtil.d(TAG, "解析 " + wanted.size() + " 首歌曲URL：缓存命中 " + cachedUrls.size()
+                + "，新请求 " + fetchCount + "，合并复用 " + (wanted.size() - cachedUrls.size() - fetchCount)
+                + "，提前刷新 " + refreshCount);
+        if (!cachedUrls.isEmpty()) {
+            callback.onUrlsResolved(cachedUrls);
+        }
+        if (ready) {
+            callback.onComplete(null);
+        }
+        pumpChunks();
+        return new Ticket(waiter);
+    }
+
+    /**
+     * 调用方需持有 {@link #lock}
+     */
+    private void promote(UrlChunk chunk, RequestScheduler.Priority priority) {
+        if (priority.ordinal() >= chunk.priority.ordinal()) {
+            return;
+        }
+        chunk.priority = priority;
+        if (chunk.task != null) {
+            chunk.task.promote(priority);
+        }
+    }
+
+    /**
+     * 取消一次解析：不再回调，且排队中只为它服务的分片会被丢弃；
+     * 已交给调度器但尚未发出的分片也会被撤回，已在途的分片照常完成并写入缓存
+     */
+    private void cancel(Waiter waiter) {
+        int dropped = 0;
+        List<RequestScheduler.Task> withdrawn = new ArrayList<>();
+        synchronized (lock) {
+            if (waiter.done) {
+                return;
+            }
+            waiter.done = true;
+            Iterator<UrlChunk> iterator = queuedChunks.iterator();
+            while (iterator.hasNext()) {
+                UrlChunk chunk = iterator.next();
+                if (chunk.waiters.remove(waiter) && chunk.waiters.isEmpty()) {
+                    iterator.remove();
+                    for (String mid : chunk.mids) {
+                        if (inFlightByMid.get(mid) == chunk) {
+                            inFlightByMid.remove(mid);
+                        }
+                    }
+                    dropped++;
+                }
+            }
+            for (UrlChunk chunk : new LinkedHashSet<>(inFlightByMid.values())) {
+                if (chunk.task != null && chunk.waiters.remove(waiter) && chunk.waiters.isEmpty()) {
+                    withdrawn.add(chunk.task);
+                }
+            }
+        }
+        for (RequestScheduler.Task task : withdrawn) {
+            if (task.isQueued()) {
+                // 撤回后以失败结束分片，其中的 mid 之后会被重新请求
+                task.cancel();
+                dropped++;
+            }
+        }
+        if (dropped > 0) {
+            LogUtil.d(TAG, "取消解析，丢弃排队中的分片 " + dropped + " 个");
+        }
+    }
+
+    /**
+     * 按数量和查询串长度切分 mid 列表
+     */
+    private List<UrlChunk> split(List<String> mids, RequestScheduler.Priority priority) {
+        List<UrlChunk> chunks = new ArrayList<>();
+        List<String> current = new ArrayList<>();
+        int queryLength = 0;
+        for (String mid : mids) {
+            int midLength = mid.length() + MID_PARAM_OVERHEAD;
+            if (!current.isEmpty() && (current.size() >= MAX_MIDS_PER_CHUNK || queryLength + midLength > MAX_QUERY_LENGTH)) {
+                chunks.add(new UrlChunk(current, priority));
+                current = new ArrayList<>();
+                queryLength = 0;
+            }
+            current.add(mid);
+            queryLength += midLength;
+        }
+        if (!current.isEmpty()) {
+            chunks.add(new UrlChunk(current, priority));
+        }
+        return chunks;
+    }
+
+    /**
+     * 调用方需持有 {@link #lock}
+     */
+    private void enqueueChunk(UrlChunk chunk) {
+        for (String mid : chunk.mids) {
+            inFlightByMid.put(mid, chunk);
+        }
+        queuedChunks.add(chunk);
+    }
+
+    /**
+     * 在并发上限内按优先级启动排队中的分片，前台分片不受上限约束
+     */
+    private void pumpChunks() {
+        List<UrlChunk> toStart = new ArrayList<>();
+        synchronized (lock) {
+            while (!queuedChunks.isEmpty()) {
+                UrlChunk next = queuedChunks.get(0);
+                for (UrlChunk chunk : queuedChunks) {
+                    if (chunk.priority.ordinal() < next.priority.ordinal()) {
+                        next = chunk;
+                    }
+                }
+                if (runningChunkCount >= MAX_PARALLEL_CHUNKS && next.priority != RequestScheduler.Priority.FOREGROUND) {
+                    break;
+                }
+                queuedChunks.remove(next);
+                toStart.add(next);
+                runningChunkCount++;
+            }
+        }
+        for (UrlChunk chunk : toStart) {
+            startChunk(chunk);
+        }
+    }
+
+    private void startChunk(UrlChunk chunk) {
+        StringBuilder midUrls = new StringBuilder();
+        for (String mid : chunk.mids) {
+            if (midUrls.length() > 0) {
+                midUrls.append("&");
+            }
+            midUrls.append("mid[]=").append(mid);
+        }
+        String url = Config.getApiUrl(Config.API_GET_SONGS_URL) + "?" + midUrls;
+        RequestScheduler.Priority priority;
+        synchronized (lock) {
+            priority = chunk.priority;
+        }
+        Request request = new Request.Builder()
+                .url(url)
+                .tag(RequestScheduler.Priority.class, priority)
+                .build();
+        RequestScheduler.Task task = RequestScheduler.getInstance().enqueue(okHttpClient, request, new Callback() {
+            @Override
+            public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                LogUtil.e(TAG, "获取歌曲URL失败: " + e.getMessage());
+                finishChunk(chunk, null, e);
+            }
+
+            @Override
+            public void onResponse(@NonNull Call call, @NonNull Response response) {
+                try (Response r = response) {
+                    if (!r.isSuccessful() || r.body() == null) {
+                        finishChunk(chunk, null, new IOException("获取歌曲URL响应失败: " + r.code()));
+                        return;
+                    }
+                    SongUrls songUrls = ApiJson.fromBody(r.body(), SongUrls.class, Config.API_GET_SONGS_URL);
+                    if (songUrls == null || songUrls.getCode() != 0 || songUrls.getResult() == null
+                            || songUrls.getResult().getMap() == null) {
+                        finishChunk(chunk, null, new IOException("未获取到有效的歌曲URL数据"));
+                        return;
+                    }
+                    finishChunk(chunk, songUrls.getResult().getMap(), null);
+                } catch (Exception e) {
+                    LogUtil.e(TAG, "解析歌曲URL数据失败: " + e.getMessage());
+                    finishChunk(chunk, null, e);
+                }
+            }
+        });
+        synchronized (lock) {
+            chunk.task = task;
+            if (chunk.priority != priority) {
+                // 发出期间有更高优先级的调用方加入
+                task.promote(chunk.priority);
+            }
+        }
+    }
+
+    /**
+     * 分片结束：写入缓存并把本分片的结果分发给各等待者
+     * @param resultMap 成功时的 mid→url 映射，失败时为 null
+     * @param error 失败原因，成功时为 null
+     */
+    private void finishChunk(UrlChunk chunk, Map<String, String> resultMap, Exception error) {
+        List<Waiter> notified = new ArrayList<>();
+        List<Map<String, String>> deltas = new ArrayList<>();
+        List<Waiter> completed = new ArrayList<>();
+        synchronized (lock) {
+            runningChunkCount--;
+            long now = System.currentTimeMillis();
+            for (String mid : chunk.mids) {
+                if (inFlightByMid.get(mid) == chunk) {
+                    inFlightByMid.remove(mid);
+                }
+                if (resultMap != null) {
+                    urlCache.put(mid, resultMap.get(mid), now);
+                }
+            }
+            for (Waiter waiter : chunk.waiters) {
+                if (waiter.done) {
+                    continue;
+                }
+                Map<String, String> delta = new HashMap<>();
+                for (String mid : chunk.mids) {
+                    if (waiter.pending.remove(mid) && resultMap != null) {
+                        String url = resultMap.get(mid);
+                        if (url != null && !url.isEmpty()) {
+                            delta.put(mid, url);
+                        }
+                    }
+                }
+                if (error != null) {
+                    waiter.error = error;
+                }
+                if (!delta.isEmpty()) {
+                    notified.add(waiter);
+                    deltas.add(delta);
+                }
+                if (waiter.pending.isEmpty()) {
+                    waiter.done = true;
+                    completed.add(waiter);
+                }
+            }
+        }
+        for (int i = 0; i < notified.size(); i++) {
+            notified.get(i).callback.onUrlsResolved(deltas.get(i));
+        }
+        for (Waiter waiter : completed) {
+            waiter.callback.onComplete(waiter.error);
+        }
+        pumpChunks();
+    }
+
+    /**
+     * 解析句柄，用于取消不再需要的解析
+     */
+    public final class Ticket {
+        private final Waiter waiter;
+
+        private Ticket(Waiter waiter) {
+            this.waiter = waiter;
+        }
+
+        public void cancel() {
+            SongUrlBiz.this.cancel(waiter);
+        }
+    }
+
+    /**
+     * 一个在途或排队中的 getSongsUrl 分片请求及等待它的调用方
+     */
+    private static class UrlChunk {
+        final List<String> mids;
+        final List<Waiter> waiters = new ArrayList<>();
+        RequestScheduler.Priority priority;
+        RequestScheduler.Task task;// 交给调度器后才有值
+
+        UrlChunk(List<String> mids, RequestScheduler.Priority priority) {
+            this.mids = mids;
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * 一次 resolve 调用：记录仍未返回的 mid 与分片失败原因
+     */
+    private static class Waiter {
+        final SongUrlCallback callback;
+        final Set<String> pending;
+        Exception error;
+        boolean done;
+
+        Waiter(SongUrlCallback callback, Set<String> mids) {
+            this.callback = callback;
+            this.pending = new LinkedHashSet<>(mids);
+        }
+    }
+
+    /**
+     * 歌曲URL回调接口
+     */
+    public interface SongUrlCallback {
+        /**
+         * 每当有新的地址可用时回调（缓存命中的地址会在第一次回调中返回），可能被调用多次
+         * @param urlMap 本次新解析到的 mid 到播放地址的映射，未返回地址的 mid 不会出现在其中
+         */
+        void onUrlsResolved(Map<String, String> urlMap);
+
+        /**
+         * 所有 mid 都已处理完毕时回调一次
+         * @param error 若有分片请求失败则为最后一次失败的原因，否则为 null
+         */
+        void onComplete(Exception error);
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.catmusic.biz;
+
+import android.content.Context;
+import android.net.Uri;
+
+import com.example.catmusic.utils.LogUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 歌曲播放地址缓存，以 mid 为键。
+ * 内存优先（按访问顺序淘汰），并在后台定期写入一个紧凑的二进制文件，进程重启后仍可复用。
+ * 每条记录保存获取时间和由地址签名推断出的过期时间。
+ */
+public class SongUrlCache {
+    private static final String TAG = "SongUrlCache";
+    private static final String FILE_NAME = "song_url_cache.bin";
+    private static final int FILE_VERSION = 1;
+    private static final int MAX_ENTRIES = 1000;
+    private static final long SAVE_DELAY_MILLIS = 2000;
+
+    // QQ 音乐的 vkey 每天都会变化，保守地按 8 小时有效处理；自定义歌曲地址长期有效
+    private static final long SIGNED_URL_TTL_MILLIS = 8 * 60 * 60 * 1000L;
+    private static final long UNSIGNED_URL_TTL_MILLIS = 24 * 60 * 60 * 1000L;
+    // 距过期不足该时间的记录仍可使用，但会在后台提前刷新
+    public static final long REFRESH_AHEAD_MILLIS = 30 * 60 * 1000L;
+
+    private final File file;
+    private final ScheduledExecutorService diskExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private boolean saveScheduled;
+
+    public SongUrlCache(Context context) {
+        this.file = new File(context.getApplicationContext().getFilesDir(), FILE_NAME);
+        diskExecutor.execute(this::load);
+    }
+
+    /**
+     * 获取未过期的记录，过期记录会被移除并返回 null
+     */
+    public Entry get(String mid) {
+        synchronized (entries) {
+            Entry entry = entries.get(mid);
+            if (entry != null && entry.isExpired(System.currentTimeMillis())) {
+                entries.remove(mid);
+                scheduleSave();
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    public void put(String mid, String url, long fetchedAt) {
+        if (mid == null || url == null || url.isEmpty()) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(mid, new Entry(url, fetchedAt, resolveExpiresAt(url, fetchedAt)));
+            scheduleSave();
+        }
+    }
+
+    public void remove(String mid) {
+        synchronized (entries) {
+            if (entries.remove(mid) != null) {
+                scheduleSave();
+            }
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * 根据地址中的签名参数推断过期时间：
+     * 带 expire/expires 时间戳的按时间戳计算，带 vkey 的按签名有效期计算，其余视为长期有效。
+     */
+    static long resolveExpiresAt(String url, long fetchedAt) {
+        try {
+            Uri uri = Uri.parse(url);
+            String expire = uri.getQueryParameter("expire");
+            if (expire == null) {
+                expire = uri.getQueryParameter("expires");
+            }
+            if (expire != null) {
+                long expireSeconds = Long.parseLong(expire.trim());
+                if (expireSeconds > 0) {
+                    return Math.min(expireSeconds * 1000L, fetchedAt + UNSIGNED_URL_TTL_MILLIS);
+                }
+            }
+            if (uri.getQueryParameter("vkey") != null) {
+                return fetchedAt + SIGNED_URL_TTL_MILLIS;
+            }
+        } catch (Exception ignored) {
+            // 无法解析的地址按长期有效处理
+        }
+        return fetchedAt + UNSIGNED_URL_TTL_MILLIS;
+    }
+
+    private void scheduleSave() {
+        if (saveScheduled) {
+            return;
+        }
+        saveScheduled = true;
+        diskExecutor.schedule(this::save, SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void load() {
+        if (!file.isFile()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_VERSION) {
+                return;
+            }
+            int count = in.readInt();
+            List<String> mids = new ArrayList<>(count);
+            List<Entry> loaded = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String mid = in.readUTF();
+                String url = in.readUTF();
+                long fetchedAt = in.readLong();
+                long expiresAt = in.readLong();
+                if (expiresAt > now) {
+                    mids.add(mid);
+                    loaded.add(new Entry(url, fetchedAt, expiresAt));
+                }
+            }
+            synchronized (entries) {
+                for (int i = 0; i < mids.size(); i++) {
+                    // 加载完成前已写入内存的新记录优先
+                    if (!entries.containsKey(mids.get(i))) {
+                        entries.put(mids.get(i), loaded.get(i));
+                    }
+                }
+            }
+            LogUtil.d(TAG, "加载歌曲URL缓存 " + loaded.size() + " 条");
+        } catch (IOException e) {
+            LogUtil.w(TAG, "读取歌曲URL缓存失败: " + e.getMessage());
+        }
+    }
+
+    private void save() {
+        List<String> mids;
+        List<Entry> snapshot;
+        synchronized (entries) {
+            saveScheduled = false;
+            mids = new ArrayList<>(entries.keySet());
+            snapshot = new ArrayList<>(entries.values());
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FILE_VERSION);
+            out.writeInt(mids.size());
+            for (int i = 0; i < mids.size(); i++) {
+                Entry entry = snapshot.get(i);
+                out.writeUTF(mids.get(i));
+                out.writeUTF(entry.url);
+                out.writeLong(entry.fetchedAt);
+                out.writeLong(entry.expiresAt);
+            }
+        } catch (IOException e) {
+            LogUtil.w(TAG, "写入歌曲URL缓存失败: " + e.getMessage());
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * 一条缓存的播放地址
+     */
+    public static final class Entry {
+        public final String url;
+        public final long fetchedAt;
+        public final long expiresAt;
+
+        Entry(String url, long fetchedAt, long expiresAt) {
+            this.url = url;
+            this.fetchedAt = fetchedAt;
+            this.expiresAt = expiresAt;
+        }
+
+        public boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+
+        /** 即将过期，需要在后台提前刷新 */
+        public boolean needsRefresh(long now) {
+            return expiresAt - now < REFRESH_AHEAD_MILLIS;
+        }
+    }
+}
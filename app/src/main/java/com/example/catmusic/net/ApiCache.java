@@ -0,0 +1,332 @@
+package com.example.catmusic.net;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.example.catmusic.Config;
+import com.example.catmusic.utils.LogUtil;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * GET 接口的磁盘缓存，采用 stale-while-revalidate 策略。
+ * 有缓存时立即回调缓存的响应体，再在后台向服务器校验；只有数据确实变化时才会第二次回调。
+ * 缓存以接口路径 + 查询参数为键（不含服务器地址），切换网络后依然可以命中。
+ */
+public class ApiCache {
+    private static final String TAG = "ApiCache";
+    private static final String CACHE_DIR_NAME = "api_cache";
+    private static final int ENTRY_VERSION = 1;
+    private static final long MAX_CACHE_BYTES = 4L * 1024 * 1024;// 磁盘缓存总上限
+    private static final long DEFAULT_FRESH_MILLIS = 5 * 60 * 1000L;
+
+    private static volatile ApiCache instance;
+
+    private final File cacheDir;
+    private final OkHttpClient okHttpClient;
+    private final Executor diskExecutor = Executors.newSingleThreadExecutor();
+    private final Map<String, Long> freshMillisByApi = new ConcurrentHashMap<>();
+
+    // 命中统计
+    private final AtomicInteger freshHitCount = new AtomicInteger();
+    private final AtomicInteger staleHitCount = new AtomicInteger();
+    private final AtomicInteger missCount = new AtomicInteger();
+    private final AtomicInteger revalidateChangedCount = new AtomicInteger();
+    private final AtomicInteger revalidateUnchangedCount = new AtomicInteger();
+    private final AtomicInteger networkFailureCount = new AtomicInteger();
+
+    public static ApiCache getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ApiCache.class) {
+                if (instance == null) {
+                    instance = new ApiCache(context.getApplicationContext(), Config.getHttpClient());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private ApiCache(Context context, OkHttpClient okHttpClient) {
+        this.cacheDir = new File(context.getCacheDir(), CACHE_DIR_NAME);
+        this.okHttpClient = okHttpClient;
+        freshMillisByApi.put(Config.API_GET_RECOMMEND, 10 * 60 * 1000L);
+        freshMillisByApi.put(Config.API_GET_ALBUM, 30 * 60 * 1000L);
+    }
+
+    /**
+     * 设置某个接口的新鲜期，新鲜期内直接使用缓存而不向服务器校验。
+     */
+    public void setFreshMillis(String apiPath, long freshMillis) {
+        freshMillisByApi.put(apiPath, Math.max(0, freshMillis));
+    }
+
+    public long getFreshMillis(String apiPath) {
+        Long freshMillis = freshMillisByApi.get(apiPath);
+        return freshMillis != null ? freshMillis : DEFAULT_FRESH_MILLIS;
+    }
+
+    /**
+     * 读取接口数据。回调在后台线程执行，调用方需自行切回主线程。
+     *
+     * @param apiPath  {@link Config} 中的接口路径常量
+     * @param query    查询参数（不含 ?），可为 null
+     * @param listener 先回调缓存数据（若有），数据变化时再回调网络数据
+     */
+    public void get(String apiPath, String query, Listener listener) {
+        get(apiPath, query, null, listener);
+    }
+
+    /**
+     * 读取接口数据，网络请求带上 tag，页面关闭时可通过 {@link RequestScheduler#cancelAll(Object)} 取消。
+     * 被取消的请求以失败回调，缓存不会更新。
+     *
+     * @param tag 请求标记，可为 null
+     */
+    public void get(String apiPath, String query, Object tag, Listener listener) {
+        String cacheKey = query == null || query.isEmpty() ? apiPath : apiPath + "?" + query;
+        diskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Entry cached = readEntry(cacheKey);
+                if (cached != null) {
+                    boolean fresh = System.currentTimeMillis() - cached.fetchedAt < getFreshMillis(apiPath);
+                    (fresh ? freshHitCount : staleHitCount).incrementAndGet();
+                    listener.onData(cached.body, true);
+                    if (fresh) {
+                        logStats();
+                        return;
+                    }
+                } else {
+                    missCount.incrementAndGet();
+                }
+                revalidate(cacheKey, Config.getApiUrl(cacheKey), tag, cached, listener);
+            }
+        });
+    }
+
+    private void revalidate(String cacheKey, String url, Object tag, Entry cached, Listener listener) {
+        Request.Builder builder = new Request.Builder()
+                .url(url)
+                .tag(tag)
+                .tag(RequestScheduler.Priority.class, RequestScheduler.Priority.VISIBLE);
+        if (cached != null && !cached.etag.isEmpty()) {
+            builder.header("If-None-Match", cached.etag);
+        }
+        RequestScheduler.getInstance().enqueue(okHttpClient, builder.build(), new Callback() {
+            @Override
+            public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                networkFailureCount.incrementAndGet();
+                LogUtil.w(TAG, "校验缓存失败: " + cacheKey + ", " + e.getMessage());
+                listener.onFailure(e, cached != null);
+            }
+
+            @Override
+            public void onResponse(@NonNull Call call, @NonNull Response response) throws IOException {
+                try (Response r = response) {
+                    if (r.code() == 304 && cached != null) {
+                        onUnchanged(cacheKey, cached, r.header("ETag"));
+                        return;
+                    }
+                    if (!r.isSuccessful() || r.body() == null) {
+                        networkFailureCount.incrementAndGet();
+                        listener.onFailure(new IOException("服务器响应失败: " + r.code()), cached != null);
+                        return;
+                    }
+                    String body = r.body().string();
+                    String etag = r.header("ETag");
+                    if (cached != null && cached.body.equals(body)) {
+                        onUnchanged(cacheKey, cached, etag);
+                        return;
+                    }
+                    if (cached != null) {
+                        revalidateChangedCount.incrementAndGet();
+                    }
+                    writeEntryAsync(cacheKey, new Entry(System.currentTimeMillis(), etag, body));
+                    listener.onData(body, false);
+                    logStats();
+                }
+            }
+        });
+    }
+
+    private void onUnchanged(String cacheKey, Entry cached, String etag) {
+        revalidateUnchangedCount.incrementAndGet();
+        String newEtag = etag != null ? etag : cached.etag;
+        writeEntryAsync(cacheKey, new Entry(System.currentTimeMillis(), newEtag, cached.body));
+        logStats();
+    }
+
+    private Entry readEntry(String cacheKey) {
+        File file = new File(cacheDir, hashKey(cacheKey));
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != ENTRY_VERSION) {
+                return null;
+            }
+            long fetchedAt = in.readLong();
+            String etag = in.readUTF();
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            file.setLastModified(System.currentTimeMillis());
+            return new Entry(fetchedAt, etag, new String(body, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            LogUtil.w(TAG, "读取缓存失败: " + e.getMessage());
+            file.delete();
+            return null;
+        }
+    }
+
+    private void writeEntryAsync(String cacheKey, Entry entry) {
+        diskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+                    return;
+                }
+                File file = new File(cacheDir, hashKey(cacheKey));
+                File tmp = new File(cacheDir, file.getName() + ".tmp");
+                try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp))) {
+                    byte[] body = entry.body.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(ENTRY_VERSION);
+                    out.writeLong(entry.fetchedAt);
+                    out.writeUTF(entry.etag);
+                    out.writeInt(body.length);
+                    out.write(body);
+                } catch (IOException e) {
+                    LogUtil.w(TAG, "写入缓存失败: " + e.getMessage());
+                    tmp.delete();
+                    return;
+                }
+                if (!tmp.renameTo(file)) {
+                    tmp.delete();
+                    return;
+                }
+                trimToSize();
+            }
+        });
+    }
+
+    /**
+     * 按最近访问时间淘汰，保证缓存目录不超过 {@link #MAX_CACHE_BYTES}。
+     */
+    private void trimToSize() {
+        File[] files = cacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File f : files) {
+            total += f.length();
+        }
+        if (total <= MAX_CACHE_BYTES) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File f : files) {
+            if (total <= MAX_CACHE_BYTES) {
+                break;
+            }
+            long length = f.length();
+            if (f.delete()) {
+                total -= length;
+            }
+        }
+    }
+
+    private static String hashKey(String cacheKey) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(cacheKey.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(cacheKey.hashCode());
+        }
+    }
+
+    public int getFreshHitCount() {
+        return freshHitCount.get();
+    }
+
+    public int getStaleHitCount() {
+        return staleHitCount.get();
+    }
+
+    public int getMissCount() {
+        return missCount.get();
+    }
+
+    public int getRevalidateChangedCount() {
+        return revalidateChangedCount.get();
+    }
+
+    public int getRevalidateUnchangedCount() {
+        return revalidateUnchangedCount.get();
+    }
+
+    public int getNetworkFailureCount() {
+        return networkFailureCount.get();
+    }
+
+    private void logStats() {
+        LogUtil.d(TAG, "缓存统计 fresh=" + freshHitCount.get()
+                + ", stale=" + staleHitCount.get()
+                + ", miss=" + missCount.get()
+                + ", changed=" + revalidateChangedCount.get()
+                + ", unchanged=" + revalidateUnchangedCount.get()
+                + ", failure=" + networkFailureCount.get());
+    }
+
+    private static class Entry {
+        final long fetchedAt;
+        final String etag;
+        final String body;
+
+        Entry(long fetchedAt, String etag, String body) {
+            this.fetchedAt = fetchedAt;
+            this.etag = etag != null ? etag : "";
+            this.body = body;
+        }
+    }
+
+    /**
+     * 缓存读取回调（后台线程）
+     */
+    public interface Listener {
+        /**
+         * @param json      响应体
+         * @param fromCache true 表示来自磁盘缓存（可能已过期），false 表示来自网络的最新数据
+         */
+        void onData(String json, boolean fromCache);
+
+        /**
+         * @param hasCachedData 失败前是否已经回调过缓存数据
+         */
+        void onFailure(Exception e, boolean hasCachedData);
+    }
+}
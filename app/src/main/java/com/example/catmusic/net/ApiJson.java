@@ -0,0 +1,605 @@
+package com.example.catmusic.net;
+
+import com.example.catmusic.bean.LyricResponse;
+import com.example.catmusic.bean.Recommend;
+import com.example.catmusic.bean.SongUrls;
+import com.example.catmusic.bean.SongsList;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.ResponseBody;
+
+/**
+ * 接口 JSON 解码。
+ * 为各接口的实体类手写流式 {@link TypeAdapter}，边读边填充对象，不经过反射也不构建中间 DOM；
+ * 所有接口共用同一个注册了这些适配器的 {@link Gson} 实例。未知字段会被跳过。
+ */
+public final class ApiJson {
+    private static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(Recommend.class, new RecommendAdapter())
+            .registerTypeAdapter(SongsList.class, new SongsListAdapter())
+            .registerTypeAdapter(SongsList.ResultBean.SongsBean.class, new SongAdapter())
+            .registerTypeAdapter(SongUrls.class, new SongUrlsAdapter())
+            .registerTypeAdapter(LyricResponse.class, new LyricResponseAdapter())
+            .create();
+
+    private ApiJson() {
+    }
+
+    public static Gson gson() {
+        return GSON;
+    }
+
+    /**
+     * 直接从响应体的字符流解码，例如 {@code ApiJson.fromJson(body.charStream(), SongUrls.class)}
+     */
+    public static <T> T fromJson(Reader reader, Class<T> type) throws IOException {
+        return GSON.getAdapter(type).fromJson(reader);
+    }
+
+    /**
+     * 解码响应体并记录 {@link ApiMetrics.Phase#DECODE}。先把响应体完整读入缓冲区，读取时间计入 BODY 阶段，
+     * 再从缓冲区的字符流解码，所以解码耗时不含网络读取；响应体仍不会转成字符串
+     * @param apiPath {@link com.example.catmusic.Config} 中的接口路径常量
+     */
+    public static <T> T fromBody(ResponseBody body, Class<T> type, String apiPath) throws IOException {
+        body.source().request(Long.MAX_VALUE);
+        long decodeStart = System.nanoTime();
+        T value = fromJson(body.charStream(), type);
+        ApiMetrics.getInstance().record(apiPath, ApiMetrics.Phase.DECODE, decodeStart);
+        return value;
+    }
+
+    public static <T> T fromJson(String json, Class<T> type) throws IOException {
+        return GSON.getAdapter(type).fromJson(json);
+    }
+
+    private static final class RecommendAdapter extends TypeAdapter<Recommend> {
+        @Override
+        public Recommend read(JsonReader in) throws IOException {
+            if (skipNull(in)) {
+                return null;
+            }
+            Recommend recommend = new Recommend();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "code":
+                        recommend.setCode(nextInt(in, -1));
+                        break;
+                    case "result":
+                        recommend.setResult(readResult(in));
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return recommend;
+        }
+
+        private Recommend.ResultBean readResult(JsonReader in) throws IOException {
+            if (skipNull(in)) {
+                return null;
+            }
+            Recommend.ResultBean result = new Recommend.ResultBean();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "sliders":
+                        result.setSliders(readSliders(in));
+                        break;
+                    case "albums":
+                        result.setAlbums(readAlbums(in));
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return result;
+        }
+
+        private List<Recommend.ResultBean.SlidersBean> readSliders(JsonReader in) throws IOException {
+            if (skipNull(in)) {
+                return null;
+            }
+            List<Recommend.ResultBean.SlidersBean> sliders = new ArrayList<>();
+            in.beginArray();
+            while (in.hasNext()) {
+                Recommend.ResultBean.SlidersBean slider = new Recommend.ResultBean.SlidersBean();
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "id":
+                            slider.setId(nextString(in));
+                            break;
+                        case "pic":
+                            slider.setPic(nextString(in));
+                            break;
+                        case "link":
+                            slider.setLink(nextString(in));
+                            break;
+                        default:
+                            in.skipValue();
+                            break;
+                    }
+                }
+                in.endObject();
+                sliders.add(slider);
+            }
+            in.endArray();
+            return sliders;
+        }
+
+        private List<Recommend.ResultBean.AlbumsBean> readAlbums(JsonReader in) throws IOException {
+            if (skipNull(in)) {
+                return null;
+            }
+            List<Recommend.ResultBean.AlbumsBean> albums = new ArrayList<>();
+            in.beginArray();
+            while (in.hasNext()) {
+                Recommend.ResultBean.AlbumsBean album = new Recommend.ResultBean.AlbumsBean();
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "id":
+                            album.setId(nextLong(in, 0));
+                            break;
+                        case "username":
+                            album.setUsername(nextString(in));
+                            break;
+                        case "title":
+                            album.setTitle(nextString(in));
+                            break;
+                        case "pic":
+                            album.setPic(nextString(in));
+                            break;
+                        default:
+                            in.skipValue();
+                            break;
+                    }
+                }
+                in.endObject();
+                albums.add(album);
+            }
+            in.endArray();
+            return albums;
+        }
+
+        @Override
+        public void write(JsonWriter out, Recommend value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("code").value(value.getCode());
+            out.name("result");
+            Recommend.ResultBean result = value.getResult();
+            if (result == null) {
+                out.nullValue();
+            } else {
+                out.beginObject();
+                out.name("sliders");
+                if (result.getSliders() == null) {
+                    out.nullValue();
+                } else {
+                    out.beginArray();
+                    for (Recommend.ResultBean.SlidersBean slider : result.getSliders()) {
+                        out.beginObject();
+                        out.name("id").value(slider.getId());
+                        out.name("pic").value(slider.getPic());
+                        out.name("link").value(slider.getLink());
+                        out.endObject();
+                    }
+                    out.endArray();
+                }
+                out.name("albums");
+                if (result.getAlbums() == null) {
+                    out.nullValue();
+                } else {
+                    out.beginArray();
+                    for (Recommend.ResultBean.AlbumsBean album : result.getAlbums()) {
+                        out.beginObject();
+                        out.name("id").value(album.getId());
+                        out.name("username").value(album.getUsername());
+                        out.name("title").value(album.getTitle());
+                        out.name("pic").value(album.getPic());
+                        out.endObject();
+                    }
+                    out.endArray();
+                }
+                out.endObject();
+            }
+            out.endObject();
+        }
+    }
+
+    private static final class SongsListAdapter extends TypeAdapter<SongsList> {
+        private final SongAdapter songAdapter = new SongAdapter();
+
+        @Override
+        public SongsList read(JsonReader in) throws IOException {
+            if (skipNull(in)) {
+                return null;
+            }
+            SongsList songsList = new SongsList();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "code":
+                        songsList.setCode(nextInt(in, -1));
+                        break;
+                    case "result":
+                        songsList.setResult(readResult(in));
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return songsList;
+        }
+
+        private SongsList.ResultBean readResult(JsonReader in) throws IOException {
+            if (skipNull(in)) {
+                return null;
+            }
+            SongsList.ResultBean result = new SongsList.ResultBean();
+            in.beginObject();
+            while (in.hasNext()) {
+                if ("songs".equals(in.nextName()) && !skipNull(in)) {
+                    List<SongsList.ResultBean.SongsBean> songs = new ArrayList<>();
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        SongsList.ResultBean.SongsBean song = songAdapter.read(in);
+                        if (song != null) {
+                            songs.add(song);
+                        }
+                    }
+                    in.endArray();
+                    result.setSongs(songs);
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return result;
+        }
+
+        @Override
+        public void write(JsonWriter out, SongsList value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("code").value(value.getCode());
+            out.name("result");
+            if (value.getResult() == null) {
+                out.nullValue();
+            } else {
+                out.beginObject();
+                out.name("songs");
+                List<SongsList.ResultBean.SongsBean> songs = value.getResult().getSongs();
+                if (songs == null) {
+                    out.nullValue();
+                } else {
+                    out.beginArray();
+                    for (SongsList.ResultBean.SongsBean song : songs) {
+                        songAdapter.write(out, song);
+                    }
+                    out.endArray();
+                }
+                out.endObject();
+            }
+            out.endObject();
+        }
+    }
+
+    /**
+     * 字段名与反射序列化保持一致，本地导入歌曲的字段也会完整读写
+     */
+    private static final class SongAdapter extends TypeAdapter<SongsList.ResultBean.SongsBean> {
+        @Override
+        public SongsList.ResultBean.SongsBean read(JsonReader in) throws IOException {
+            if (skipNull(in)) {
+                return null;
+            }
+            SongsList.ResultBean.SongsBean song = new SongsList.ResultBean.SongsBean();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        song.setId(nextInt(in, 0));
+                        break;
+                    case "mid":
+                        song.setMid(nextString(in));
+                        break;
+                    case "name":
+                        song.setName(nextString(in));
+                        break;
+                    case "singer":
+                        song.setSinger(nextString(in));
+                        break;
+                    case "url":
+                        song.setUrl(nextString(in));
+                        break;
+                    case "duration":
+                        song.setDuration(nextInt(in, 0));
+                        break;
+                    case "pic":
+                        song.setPic(nextString(in));
+                        break;
+                    case "album":
+                        song.setAlbum(nextString(in));
+                        break;
+                    case "isLocal":
+                        song.setLocal(nextBoolean(in, false));
+                        break;
+                    case "localAudioUri":
+                        song.setLocalAudioUri(nextString(in));
+                        break;
+                    case "localLyricUri":
+                        song.setLocalLyricUri(nextString(in));
+                        break;
+                    case "lyricPrecise":
+                        song.setLyricPrecise(nextBoolean(in, true));
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return song;
+        }
+
+        @Override
+        public void write(JsonWriter out, SongsList.ResultBean.SongsBean song) throws IOException {
+            if (song == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("id").value(song.getId());
+            out.name("mid").value(song.getMid());
+            out.name("name").value(song.getName());
+            out.name("singer").value(song.getSinger());
+            out.name("url").value(song.getUrl());
+            out.name("duration").value(song.getDuration());
+            out.name("pic").value(song.getPic());
+            out.name("album").value(song.getAlbum());
+            out.name("isLocal").value(song.isLocal());
+            out.name("localAudioUri").value(song.getLocalAudioUri());
+            out.name("localLyricUri").value(song.getLocalLyricUri());
+            out.name("lyricPrecise").value(song.isLyricPrecise());
+            out.endObject();
+        }
+    }
+
+    private static final class SongUrlsAdapter extends TypeAdapter<SongUrls> {
+        @Override
+        public SongUrls read(JsonReader in) throws IOException {
+            if (skipNull(in)) {
+                return null;
+            }
+            SongUrls songUrls = new SongUrls();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "code":
+                        songUrls.setCode(nextInt(in, -1));
+                        break;
+                    case "result":
+                        songUrls.setResult(readResult(in));
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return songUrls;
+        }
+
+        private SongUrls.ResultBean readResult(JsonReader in) throws IOException {
+            if (skipNull(in)) {
+                return null;
+            }
+            SongUrls.ResultBean result = new SongUrls.ResultBean();
+            in.beginObject();
+            while (in.hasNext()) {
+                if ("map".equals(in.nextName()) && !skipNull(in)) {
+                    Map<String, String> map = new HashMap<>();
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        String mid = in.nextName();
+                        String url = nextString(in);
+                        if (url != null) {
+                            map.put(mid, url);
+                        }
+                    }
+                    in.endObject();
+                    result.setMap(map);
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return result;
+        }
+
+        @Override
+        public void write(JsonWriter out, SongUrls value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("code").value(value.getCode());
+            out.name("result");
+            if (value.getResult() == null) {
+                out.nullValue();
+            } else {
+                out.beginObject();
+                out.name("map");
+                Map<String, String> map = value.getResult().getMap();
+                if (map == null) {
+                    out.nullValue();
+                } else {
+                    out.beginObject();
+                    for (Map.Entry<String, String> entry : map.entrySet()) {
+                        out.name(entry.getKey()).value(entry.getValue());
+                    }
+                    out.endObject();
+                }
+                out.endObject();
+            }
+            out.endObject();
+        }
+    }
+
+    private static final class LyricResponseAdapter extends TypeAdapter<LyricResponse> {
+        @Override
+        public LyricResponse read(JsonReader in) throws IOException {
+            if (skipNull(in)) {
+                return null;
+            }
+            LyricResponse response = new LyricResponse();
+            response.setCode(-1);
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "code":
+                        response.setCode(nextInt(in, -1));
+                        break;
+                    case "message":
+                        response.setMessage(nextString(in));
+                        break;
+                    case "result":
+                        if (skipNull(in)) {
+                            break;
+                        }
+                        LyricResponse.ResultBean result = new LyricResponse.ResultBean();
+                        in.beginObject();
+                        while (in.hasNext()) {
+                            if ("lyric".equals(in.nextName())) {
+                                result.setLyric(nextString(in));
+                            } else {
+                                in.skipValue();
+                            }
+                        }
+                        in.endObject();
+                        response.setResult(result);
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return response;
+        }
+
+        @Override
+        public void write(JsonWriter out, LyricResponse value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("code").value(value.getCode());
+            if (value.getMessage() != null) {
+                out.name("message").value(value.getMessage());
+            }
+            out.name("result");
+            if (value.getResult() == null) {
+                out.nullValue();
+            } else {
+                out.beginObject();
+                out.name("lyric").value(value.getResult().getLyric());
+                out.endObject();
+            }
+            out.endObject();
+        }
+    }
+
+    /**
+     * 当前值为 null 时消费掉并返回 true
+     */
+    private static boolean skipNull(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 读取字符串，数字和布尔值会转成字符串（服务器的 id 字段有时是数字有时是字符串）
+     */
+    private static String nextString(JsonReader in) throws IOException {
+        switch (in.peek()) {
+            case NULL:
+                in.nextNull();
+                return null;
+            case BOOLEAN:
+                return String.valueOf(in.nextBoolean());
+            case STRING:
+            case NUMBER:
+                return in.nextString();
+            default:
+                in.skipValue();
+                return null;
+        }
+    }
+
+    private static int nextInt(JsonReader in, int defaultValue) throws IOException {
+        return (int) nextLong(in, defaultValue);
+    }
+
+    /**
+     * 数字和数字字符串都可读取；先整体读成字符串再转换，转换失败时该值也已被消费
+     */
+    private static long nextLong(JsonReader in, long defaultValue) throws IOException {
+        JsonToken token = in.peek();
+        if (token != JsonToken.NUMBER && token != JsonToken.STRING) {
+            in.skipValue();
+            return defaultValue;
+        }
+        String value = in.nextString().trim();
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            try {
+                return (long) Double.parseDouble(value);
+            } catch (NumberFormatException ignored) {
+                return defaultValue;
+            }
+        }
+    }
+
+    private static boolean nextBoolean(JsonReader in, boolean defaultValue) throws IOException {
+        if (in.peek() == JsonToken.BOOLEAN) {
+            return in.nextBoolean();
+        }
+        in.skipValue();
+        return defaultValue;
+    }
+}
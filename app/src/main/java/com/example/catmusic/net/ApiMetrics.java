@@ -0,0 +1,243 @@
+package com.example.catmusic.net;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.example.catmusic.Config;
+import com.example.catmusic.utils.LogUtil;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 接口耗时分解统计。
+ * 通过 OkHttp {@link EventListener} 记录每次接口调用各阶段的耗时（DNS、建连、首字节、读取响应体、总耗时），
+ * 加上调用方在回调里记录的 JSON 解码耗时和切换到主线程处理的耗时，按 {@link Config} 中的接口路径分别统计。
+ * 每个阶段用 {@link LatencyHistogram} 保存最近两个窗口的分布，可随时导出到文件，便于在用户设备上排查慢请求。
+ */
+public final class ApiMetrics {
+    private static final String TAG = "ApiMetrics";
+    private static final long WINDOW_MILLIS = 5 * 60 * 1000L;// 直方图窗口长度
+    private static final String DUMP_DIR_NAME = "api_metrics";
+    private static final List<String> API_PATHS = Arrays.asList(
+            Config.API_GET_RECOMMEND, Config.API_GET_ALBUM, Config.API_GET_SONGS_URL, Config.API_GET_LYRIC);
+
+    /**
+     * 统计的阶段
+     */
+    public enum Phase {
+        DNS("DNS"),
+        CONNECT("建连"),
+        TTFB("首字节"),
+        BODY("读取响应体"),
+        TOTAL("网络总耗时"),
+        DECODE("JSON解码"),
+        UI_DISPATCH("主线程处理");
+
+        final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final ApiMetrics INSTANCE = new ApiMetrics();
+
+    private final ConcurrentHashMap<String, Map<Phase, LatencyHistogram>> histograms = new ConcurrentHashMap<>();
+
+    public static ApiMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    private ApiMetrics() {
+    }
+
+    /**
+     * 安装到共享 OkHttpClient 上的监听器工厂，只为已知接口创建监听器
+     */
+    public EventListener.Factory eventListenerFactory() {
+        return call -> {
+            String apiPath = apiPathOf(call);
+            return apiPath != null ? new PhaseListener(call, apiPath) : EventListener.NONE;
+        };
+    }
+
+    /**
+     * 记录一个阶段的耗时
+     * @param apiPath {@link Config} 中的接口路径常量
+     * @param startNanos 阶段开始时的 {@link System#nanoTime()}
+     */
+    public void record(String apiPath, Phase phase, long startNanos) {
+        recordMicros(apiPath, phase, (System.nanoTime() - startNanos) / 1000);
+    }
+
+    private void recordMicros(String apiPath, Phase phase, long micros) {
+        Map<Phase, LatencyHistogram> phases = histograms.computeIfAbsent(apiPath, key -> {
+            Map<Phase, LatencyHistogram> created = new EnumMap<>(Phase.class);
+            for (Phase p : Phase.values()) {
+                created.put(p, new LatencyHistogram(WINDOW_MILLIS));
+            }
+            return created;
+        });
+        phases.get(phase).record(micros);
+    }
+
+    /**
+     * 各接口各阶段最近两个窗口内的样本数与 p50/p90/p99/最大值（毫秒）
+     */
+    public String dumpStats() {
+        StringBuilder sb = new StringBuilder();
+        for (String apiPath : API_PATHS) {
+            Map<Phase, LatencyHistogram> phases = histograms.get(apiPath);
+            if (phases == null) {
+                continue;
+            }
+            sb.append(apiPath).append('\n');
+            for (Phase phase : Phase.values()) {
+                LatencyHistogram histogram = phases.get(phase);
+                long count = histogram.count();
+                if (count == 0) {
+                    continue;
+                }
+                sb.append(String.format(Locale.US, "  %-6s n=%d p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms\n",
+                        phase.label, count, histogram.percentile(0.5) / 1000.0, histogram.percentile(0.9) / 1000.0,
+                        histogram.percentile(0.99) / 1000.0, histogram.percentile(1.0) / 1000.0));
+            }
+        }
+        return sb.length() > 0 ? sb.toString() : "暂无接口耗时数据\n";
+    }
+
+    /**
+     * 把当前统计导出到应用外部文件目录（不可用时为内部文件目录）下的 api_metrics 目录
+     * @return 导出的文件
+     */
+    public File dumpToFile(Context context) throws IOException {
+        File baseDir = context.getExternalFilesDir(null);
+        File dir = new File(baseDir != null ? baseDir : context.getFilesDir(), DUMP_DIR_NAME);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("无法创建目录: " + dir);
+        }
+        String time = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date());
+        File file = new File(dir, "api_metrics_" + time + ".txt");
+        String content = "导出时间: " + time + "\n服务器: " + Config.getBaseUrl() + "\n\n"
+                + dumpStats() + "\n" + RequestPolicy.getInstance().dumpStats()
+                + RequestScheduler.getInstance().dumpStats() + "\n";
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        LogUtil.d(TAG, "接口耗时统计已导出: " + file.getAbsolutePath());
+        return file;
+    }
+
+    private static String apiPathOf(Call call) {
+        String path = call.request().url().encodedPath();
+        String apiPath = path.startsWith("/") ? path.substring(1) : path;
+        return API_PATHS.contains(apiPath) ? apiPath : null;
+    }
+
+    /**
+     * 单个 {@link Call} 的阶段计时，每个 Call 有自己的监听器。
+     * 对冲时主请求和对冲请求是各自独立的 Call（带 {@link HedgingInterceptor.RaceTag} 或
+     * {@link HedgingInterceptor.HedgeTag}），两者并发也不会共用计时字段；它们各自记录网络阶段，
+     * 网络总耗时只由调用方发起的外层 Call 记录，即调用方实际等待的时间。被取消的一方不再记录。
+     * 同一个 Call 内的重试是串行的，每次尝试分别记录 DNS、建连、首字节和读取响应体，网络总耗时包含全部重试
+     */
+    private final class PhaseListener extends EventListener {
+        private final String apiPath;
+        private final boolean attempt;// 对冲竞争中的一方，不记录网络总耗时
+        private long callStart;
+        private long dnsStart;
+        private long connectStart;
+        private long requestStart;
+        private long bodyStart;
+
+        PhaseListener(Call call, String apiPath) {
+            this.apiPath = apiPath;
+            Request request = call.request();
+            attempt = request.tag(HedgingInterceptor.RaceTag.class) != null
+                    || request.tag(HedgingInterceptor.HedgeTag.class) != null;
+        }
+
+        private void recordPhase(Call call, Phase phase, long startNanos) {
+            if (!call.isCanceled()) {
+                record(apiPath, phase, startNanos);
+            }
+        }
+
+        @Override
+        public void callStart(@NonNull Call call) {
+            callStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsStart(@NonNull Call call, @NonNull String domainName) {
+            dnsStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(@NonNull Call call, @NonNull String domainName, @NonNull List<InetAddress> inetAddressList) {
+            recordPhase(call, Phase.DNS, dnsStart);
+        }
+
+        @Override
+        public void connectStart(@NonNull Call call, @NonNull InetSocketAddress inetSocketAddress, @NonNull Proxy proxy) {
+            connectStart = System.nanoTime();
+        }
+
+        @Override
+        public void connectEnd(@NonNull Call call, @NonNull InetSocketAddress inetSocketAddress, @NonNull Proxy proxy,
+                               Protocol protocol) {
+            // 包含 TLS 握手
+            recordPhase(call, Phase.CONNECT, connectStart);
+        }
+
+        @Override
+        public void requestHeadersStart(@NonNull Call call) {
+            requestStart = System.nanoTime();
+        }
+
+        @Override
+        public void responseHeadersStart(@NonNull Call call) {
+            // 首字节：从开始发送请求到开始收到响应，主要反映服务器处理时间
+            recordPhase(call, Phase.TTFB, requestStart);
+        }
+
+        @Override
+        public void responseHeadersEnd(@NonNull Call call, @NonNull Response response) {
+            bodyStart = System.nanoTime();
+        }
+
+        @Override
+        public void responseBodyEnd(@NonNull Call call, long byteCount) {
+            recordPhase(call, Phase.BODY, bodyStart);
+        }
+
+        @Override
+        public void callEnd(@NonNull Call call) {
+            if (!attempt) {
+                recordPhase(call, Phase.TOTAL, callStart);
+            }
+        }
+    }
+}
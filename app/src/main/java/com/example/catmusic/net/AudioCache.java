@@ -0,0 +1,456 @@
+package com.example.catmusic.net;
+
+import android.content.Context;
+
+import com.example.catmusic.R;
+import com.example.catmusic.utils.LogUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 音频流的磁盘缓存，以 mid 为键，由 {@link AudioProxy} 边播放边写入。
+ * 每首歌对应一个稀疏的数据文件和一个索引文件，索引记录总长度、类型和已缓存的字节区间；
+ * 已缓存的区间直接从本地读取，只有缺失的区间才需要向上游请求。
+ * 总大小超过上限时按最近访问顺序淘汰，正在读写的歌曲不会被淘汰。
+ */
+public final class AudioCache {
+    private static final String TAG = "AudioCache";
+    private static final String DIR_NAME = "audio_cache";
+    private static final String DATA_SUFFIX = ".data";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final int INDEX_VERSION = 1;
+    private static final long SAVE_DELAY_MILLIS = 3000;
+
+    private static volatile AudioCache instance;
+
+    private final File dir;
+    private final long maxBytes;
+    private final ScheduledExecutorService diskExecutor = Executors.newSingleThreadScheduledExecutor();
+    // 按访问顺序排列，最久未访问的在前
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+    private int evictedCount;
+
+    public static AudioCache getInstance(Context context) {
+        if (instance == null) {
+            synchronized (AudioCache.class) {
+                if (instance == null) {
+                    Context appContext = context.getApplicationContext();
+                    long maxBytes = appContext.getResources().getInteger(R.integer.audio_cache_max_mb) * 1024L * 1024L;
+                    instance = new AudioCache(new File(appContext.getCacheDir(), DIR_NAME), maxBytes);
+                }
+            }
+        }
+        return instance;
+    }
+
+    public AudioCache(File dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        diskExecutor.execute(this::load);
+    }
+
+    /**
+     * 缓存占用和淘汰统计，便于调试
+     */
+    public String dumpStats() {
+        synchronized (entries) {
+            return String.format(Locale.US, "音频缓存: 歌曲=%d 已缓存=%.1fMB 上限=%dMB 淘汰=%d",
+                    entries.size(), totalBytes / 1024.0 / 1024.0, maxBytes / 1024 / 1024, evictedCount);
+        }
+    }
+
+    /**
+     * 打开一首歌的缓存用于读写，用完后必须调用 {@link #release(Entry)}
+     */
+    Entry open(String mid) throws IOException {
+        synchronized (entries) {
+            Entry entry = entries.get(mid);
+            if (entry == null) {
+                // 后台加载索引前就被访问时直接读取这首歌的索引
+                entry = readIndex(indexFile(mid));
+                if (entry == null) {
+                    entry = new Entry(mid, dataFile(mid), indexFile(mid));
+                }
+                entries.put(mid, entry);
+                totalBytes += entry.cachedBytes;
+            }
+            if (entry.channel == null) {
+                if (!dir.isDirectory() && !dir.mkdirs()) {
+                    throw new IOException("无法创建目录: " + dir);
+                }
+                entry.channel = new RandomAccessFile(entry.dataFile, "rw").getChannel();
+            }
+            entry.openCount++;
+            return entry;
+        }
+    }
+
+    void release(Entry entry) {
+        FileChannel channel = null;
+        synchronized (entries) {
+            if (--entry.openCount == 0) {
+                channel = entry.channel;
+                entry.channel = null;
+            }
+            // 即使没有新数据也重写索引，文件修改时间即为最近访问时间，进程重启后据此恢复淘汰顺序
+            scheduleSave(entry);
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // 只读到这里的数据已经写完，关闭失败不影响缓存
+            }
+        }
+        trim();
+    }
+
+    /**
+     * @return 包含 position 的已缓存区间的结束位置（不含），position 未缓存时返回 position
+     */
+    long cachedUntil(Entry entry, long position) {
+        synchronized (entries) {
+            for (long[] range : entry.ranges) {
+                if (range[0] <= position && position < range[1]) {
+                    return range[1];
+                }
+            }
+            return position;
+        }
+    }
+
+    /**
+     * @return position 之后第一个已缓存区间的起始位置，没有时返回 -1
+     */
+    long nextCachedStart(Entry entry, long position) {
+        synchronized (entries) {
+            for (long[] range : entry.ranges) {
+                if (range[0] > position) {
+                    return range[0];
+                }
+            }
+            return -1;
+        }
+    }
+
+    long getContentLength(Entry entry) {
+        synchronized (entries) {
+            return entry.contentLength;
+        }
+    }
+
+    String getContentType(Entry entry) {
+        synchronized (entries) {
+            return entry.contentType;
+        }
+    }
+
+    /**
+     * 记录上游返回的总长度和类型；长度与已有记录不同说明上游文件变了（如换了音质），旧数据作废
+     */
+    void setContentInfo(Entry entry, long contentLength, String contentType) {
+        synchronized (entries) {
+            if (contentLength >= 0 && entry.contentLength >= 0 && entry.contentLength != contentLength) {
+                LogUtil.w(TAG, entry.mid + " 上游长度由 " + entry.contentLength + " 变为 " + contentLength + "，丢弃旧缓存");
+                clear(entry);
+            }
+            if (contentLength >= 0) {
+                entry.contentLength = contentLength;
+            }
+            if (contentType != null) {
+                entry.contentType = contentType;
+            }
+            scheduleSave(entry);
+        }
+    }
+
+    /**
+     * 本地数据不可读（如缓存目录被系统清理）时丢弃这首歌的全部区间，之后重新从上游获取
+     */
+    void invalidate(Entry entry) {
+        synchronized (entries) {
+            clear(entry);
+            scheduleSave(entry);
+        }
+    }
+
+    int read(Entry entry, long position, byte[] buffer, int length) throws IOException {
+        return entry.channel.read(ByteBuffer.wrap(buffer, 0, length), position);
+    }
+
+    void write(Entry entry, long position, byte[] buffer, int length) throws IOException {
+        ByteBuffer src = ByteBuffer.wrap(buffer, 0, length);
+        long offset = position;
+        while (src.hasRemaining()) {
+            offset += entry.channel.write(src, offset);
+        }
+        boolean overLimit;
+        synchronized (entries) {
+            long added = entry.addRange(position, position + length);
+            entry.cachedBytes += added;
+            totalBytes += added;
+            scheduleSave(entry);
+            overLimit = totalBytes > maxBytes;
+        }
+        if (overLimit) {
+            trim();
+        }
+    }
+
+    /**
+     * 调用方需持有 {@link #entries} 锁
+     */
+    private void clear(Entry entry) {
+        totalBytes -= entry.cachedBytes;
+        entry.cachedBytes = 0;
+        entry.ranges.clear();
+        entry.contentLength = -1;
+        if (entry.channel != null) {
+            try {
+                entry.channel.truncate(0);
+            } catch (IOException e) {
+                LogUtil.w(TAG, "清空缓存文件失败: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 超出上限时从最久未访问的歌曲开始淘汰，跳过正在读写的歌曲
+     */
+    private void trim() {
+        synchronized (entries) {
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (totalBytes > maxBytes && iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.openCount > 0) {
+                    continue;
+                }
+                iterator.remove();
+                totalBytes -= entry.cachedBytes;
+                entry.removed = true;
+                evictedCount++;
+                entry.dataFile.delete();
+                entry.indexFile.delete();
+                LogUtil.d(TAG, "淘汰音频缓存: " + entry.mid + "，释放 " + entry.cachedBytes / 1024 + "KB");
+            }
+        }
+    }
+
+    /**
+     * 调用方需持有 {@link #entries} 锁
+     */
+    private void scheduleSave(Entry entry) {
+        if (entry.saveScheduled) {
+            return;
+        }
+        entry.saveScheduled = true;
+        diskExecutor.schedule(() -> saveIndex(entry), SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void saveIndex(Entry entry) {
+        long contentLength;
+        String contentType;
+        List<long[]> ranges;
+        synchronized (entries) {
+            entry.saveScheduled = false;
+            if (entry.removed) {
+                return;
+            }
+            contentLength = entry.contentLength;
+            contentType = entry.contentType;
+            ranges = new ArrayList<>(entry.ranges);
+        }
+        File tmp = new File(entry.indexFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(INDEX_VERSION);
+            out.writeUTF(entry.mid);
+            out.writeLong(contentLength);
+            out.writeUTF(contentType != null ? contentType : "");
+            out.writeInt(ranges.size());
+            for (long[] range : ranges) {
+                out.writeLong(range[0]);
+                out.writeLong(range[1]);
+            }
+        } catch (IOException e) {
+            LogUtil.w(TAG, "写入音频缓存索引失败: " + e.getMessage());
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(entry.indexFile)) {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * 读取索引文件，数据文件已不存在时删除索引并返回 null
+     */
+    private Entry readIndex(File indexFile) {
+        if (!indexFile.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != INDEX_VERSION) {
+                indexFile.delete();
+                return null;
+            }
+            String mid = in.readUTF();
+            Entry entry = new Entry(mid, dataFile(mid), indexFile);
+            if (!entry.dataFile.isFile()) {
+                indexFile.delete();
+                return null;
+            }
+            entry.contentLength = in.readLong();
+            String contentType = in.readUTF();
+            entry.contentType = contentType.isEmpty() ? null : contentType;
+            int count = in.readInt();
+            long dataLength = entry.dataFile.length();
+            for (int i = 0; i < count; i++) {
+                long start = in.readLong();
+                long end = Math.min(in.readLong(), dataLength);
+                if (start < end) {
+                    entry.cachedBytes += entry.addRange(start, end);
+                }
+            }
+            return entry;
+        } catch (IOException e) {
+            LogUtil.w(TAG, "读取音频缓存索引失败: " + e.getMessage());
+            indexFile.delete();
+            return null;
+        }
+    }
+
+    /**
+     * 启动时扫描缓存目录恢复索引，按索引文件修改时间恢复访问顺序，并清理没有索引的数据文件
+     */
+    private void load() {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        List<Entry> loaded = new ArrayList<>();
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(INDEX_SUFFIX)) {
+                Entry entry = readIndex(file);
+                if (entry != null) {
+                    loaded.add(entry);
+                }
+            } else if (name.endsWith(DATA_SUFFIX)) {
+                File indexFile = new File(dir, name.substring(0, name.length() - DATA_SUFFIX.length()) + INDEX_SUFFIX);
+                if (!indexFile.isFile()) {
+                    file.delete();
+                }
+            } else {
+                file.delete();
+            }
+        }
+        synchronized (entries) {
+            // 加载完成前已打开的歌曲最近被访问过，排在最后
+            List<Entry> opened = new ArrayList<>(entries.values());
+            entries.clear();
+            for (Entry entry : loaded) {
+                entries.put(entry.mid, entry);
+                totalBytes += entry.cachedBytes;
+            }
+            for (Entry entry : opened) {
+                Entry replaced = entries.put(entry.mid, entry);
+                if (replaced != null) {
+                    totalBytes -= replaced.cachedBytes;
+                }
+            }
+            LogUtil.d(TAG, "加载音频缓存 " + loaded.size() + " 首，共 " + totalBytes / 1024 / 1024 + "MB");
+        }
+        trim();
+    }
+
+    private File dataFile(String mid) {
+        return new File(dir, fileKey(mid) + DATA_SUFFIX);
+    }
+
+    private File indexFile(String mid) {
+        return new File(dir, fileKey(mid) + INDEX_SUFFIX);
+    }
+
+    private static String fileKey(String mid) {
+        StringBuilder sb = new StringBuilder(mid.length());
+        for (int i = 0; i < mid.length(); i++) {
+            char c = mid.charAt(i);
+            boolean safe = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '-';
+            sb.append(safe ? c : '_');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 一首歌的缓存状态，除数据文件的读写外都在 {@link #entries} 锁内访问
+     */
+    static final class Entry {
+        final String mid;
+        final File dataFile;
+        final File indexFile;
+        // 按起始位置排序、互不相邻的已缓存区间 [start, end)
+        final List<long[]> ranges = new ArrayList<>();
+        long contentLength = -1;
+        String contentType;
+        long cachedBytes;
+        int openCount;
+        FileChannel channel;
+        boolean saveScheduled;
+        boolean removed;
+
+        Entry(String mid, File dataFile, File indexFile) {
+            this.mid = mid;
+            this.dataFile = dataFile;
+            this.indexFile = indexFile;
+        }
+
+        /**
+         * 加入区间并与重叠或相邻的区间合并
+         * @return 新增覆盖的字节数
+         */
+        long addRange(long start, long end) {
+            long mergedStart = start;
+            long mergedEnd = end;
+            long overlap = 0;
+            int insertAt = 0;
+            Iterator<long[]> iterator = ranges.iterator();
+            while (iterator.hasNext()) {
+                long[] range = iterator.next();
+                if (range[1] < start) {
+                    insertAt++;
+                    continue;
+                }
+                if (range[0] > end) {
+                    break;
+                }
+                overlap += Math.max(0, Math.min(range[1], end) - Math.max(range[0], start));
+                mergedStart = Math.min(mergedStart, range[0]);
+                mergedEnd = Math.max(mergedEnd, range[1]);
+                iterator.remove();
+            }
+            ranges.add(insertAt, new long[]{mergedStart, mergedEnd});
+            return end - start - overlap;
+        }
+    }
+}
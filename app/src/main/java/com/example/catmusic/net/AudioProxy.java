@@ -0,0 +1,583 @@
+package com.example.catmusic.net;
+
+import android.content.Context;
+import android.text.TextUtils;
+
+import com.example.catmusic.Config;
+import com.example.catmusic.utils.LogUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * 运行在 127.0.0.1 上的音频缓存代理。
+ * {@link com.example.catmusic.service.MusicService} 把在线歌曲地址经 {@link #proxyUrl(String, String)} 转换后交给 MediaPlayer，
+ * 代理按 mid 查 {@link AudioCache}：已缓存的字节区间直接从本地返回，缺失的区间才按 Range 向上游请求，
+ * 下载的数据同时写入缓存。重播、往回拖动进度和单曲循环都不会再重新下载整首歌。
+ * 还可以通过 {@link #prebuffer(String, String, int, int)} 提前把后续歌曲的开头写入缓存，切歌后开头直接从本地读取。
+ * 其他应用同样可以连接本机端口，代理地址中带有每个进程随机生成的令牌，不带令牌的请求一律拒绝，
+ * 上游也只允许 http/https 地址，避免被当作开放的 HTTP 中转或用来塞满缓存。
+ */
+public final class AudioProxy {
+    private static final String TAG = "AudioProxy";
+    private static final String PATH_SEGMENT = "audio";
+    private static final String PARAM_URL = "url";
+    private static final String DEFAULT_CONTENT_TYPE = "audio/mpeg";
+    private static final int BUFFER_SIZE = 32 * 1024;
+    private static final int SOCKET_TIMEOUT_MILLIS = 30 * 1000;// 等待播放器发送请求头的超时
+    private static final int MAX_UPSTREAM_RETRIES = 2;// 上游连接中途断开时按当前位置重新请求的次数
+    private static final int PREBUFFER_HEADER_BYTES = 64 * 1024;// 预缓冲时额外下载的文件头等元数据
+    private static final int DEFAULT_BYTES_PER_SECOND = 320 * 1024 / 8;// 还不知道文件长度时按 320kbps 估算
+    private static final int TOKEN_BYTES = 16;
+
+    private static volatile AudioProxy instance;
+
+    private final AudioCache cache;
+    private final OkHttpClient client;
+    private final ExecutorService workers = Executors.newCachedThreadPool();
+    // 预缓冲逐首进行，不与正在播放的歌曲争抢太多带宽
+    private final ExecutorService prebufferExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicInteger prebufferGeneration = new AtomicInteger();
+    private final String token = newToken();// 代理地址中的访问令牌
+    private volatile int port = -1;
+
+    // 字节统计
+    private final AtomicLong cacheBytes = new AtomicLong();
+    private final AtomicLong upstreamBytes = new AtomicLong();
+    private final AtomicLong prebufferBytes = new AtomicLong();
+
+    public static AudioProxy getInstance(Context context) {
+        if (instance == null) {
+            synchronized (AudioProxy.class) {
+                if (instance == null) {
+                    // 播放器暂停时连接可能长时间挂起，不限制整体耗时，只保留读取超时
+                    OkHttpClient client = Config.getMediaHttpClient().newBuilder()
+                            .callTimeout(0, TimeUnit.SECONDS)
+                            .build();
+                    instance = new AudioProxy(AudioCache.getInstance(context), client);
+                }
+            }
+        }
+        return instance;
+    }
+
+    public AudioProxy(AudioCache cache, OkHttpClient client) {
+        this.cache = cache;
+        this.client = client;
+        start();
+    }
+
+    /**
+     * 把在线播放地址转换为经过本地代理的地址；代理未启动、没有 mid 或不是 http 地址时原样返回
+     */
+    public String proxyUrl(String mid, String url) {
+        if (port < 0 || TextUtils.isEmpty(mid) || url == null || HttpUrl.parse(url) == null) {
+            return url;
+        }
+        return new HttpUrl.Builder()
+                .scheme("http")
+                .host("127.0.0.1")
+                .port(port)
+                .addPathSegment(PATH_SEGMENT)
+                .addPathSegment(token)
+                .addPathSegment(mid)
+                .addQueryParameter(PARAM_URL, url)
+                .build()
+                .toString();
+    }
+
+    /**
+     * 在后台把歌曲开头约 seconds 秒的数据下载到缓存，已缓存的部分不会重复下载。
+     * 按提交顺序逐首进行，调用 {@link #cancelPrebuffer()} 后之前提交的预缓冲全部放弃。
+     *
+     * @param durationSeconds 歌曲时长，用于按文件长度换算字节数，未知时传 0
+     */
+    public void prebuffer(String mid, String url, int durationSeconds, int seconds) {
+        if (TextUtils.isEmpty(mid) || url == null || HttpUrl.parse(url) == null || seconds <= 0) {
+            return;
+        }
+        int generation = prebufferGeneration.get();
+        prebufferExecutor.execute(() -> {
+            if (generation != prebufferGeneration.get()) {
+                return;
+            }
+            try {
+                fillHead(mid, url, durationSeconds, seconds, generation);
+            } catch (IOException e) {
+                LogUtil.w(TAG, mid + " 预缓冲失败: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 放弃尚未完成的预缓冲，如切歌后后续歌曲发生了变化
+     */
+    public void cancelPrebuffer() {
+        prebufferGeneration.incrementAndGet();
+    }
+
+    /**
+     * 从缓存和从网络读取的字节数，便于调试
+     */
+    public String dumpStats() {
+        long fromCache = cacheBytes.get();
+        long fromUpstream = upstreamBytes.get();
+        long total = fromCache + fromUpstream;
+        return String.format(Locale.US, "音频代理: 本地=%.1fMB 网络=%.1fMB 本地占比=%.1f%% 预缓冲=%.1fMB %s",
+                fromCache / 1024.0 / 1024.0, fromUpstream / 1024.0 / 1024.0,
+                total > 0 ? fromCache * 100.0 / total : 0, prebufferBytes.get() / 1024.0 / 1024.0,
+                cache.dumpStats());
+    }
+
+    private void start() {
+        try {
+            ServerSocket serverSocket = new ServerSocket(0, 16, InetAddress.getByName("127.0.0.1"));
+            port = serverSocket.getLocalPort();
+            Thread acceptThread = new Thread(() -> acceptLoop(serverSocket), TAG);
+            acceptThread.setDaemon(true);
+            acceptThread.start();
+            LogUtil.d(TAG, "音频代理已启动，端口: " + port);
+        } catch (IOException e) {
+            // 代理不可用时 proxyUrl 原样返回，播放器直接访问上游
+            LogUtil.e(TAG, "音频代理启动失败: " + e.getMessage());
+        }
+    }
+
+    private void acceptLoop(ServerSocket serverSocket) {
+        while (true) {
+            try {
+                Socket socket = serverSocket.accept();
+                workers.execute(() -> handle(socket));
+            } catch (IOException e) {
+                LogUtil.e(TAG, "音频代理停止接受连接: " + e.getMessage());
+                port = -1;
+                return;
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (Socket s = socket) {
+            s.setSoTimeout(SOCKET_TIMEOUT_MILLIS);
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            OutputStream out = new BufferedOutputStream(s.getOutputStream(), BUFFER_SIZE);
+            String requestLine = readLine(in);
+            if (requestLine == null) {
+                return;
+            }
+            String rangeHeader = null;
+            String line;
+            while ((line = readLine(in)) != null && !line.isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Range")) {
+                    rangeHeader = line.substring(colon + 1).trim();
+                }
+            }
+            String[] parts = requestLine.split(" ");
+            HttpUrl target = parts.length >= 2 ? HttpUrl.parse("http://127.0.0.1" + parts[1]) : null;
+            List<String> segments = target != null ? target.pathSegments() : null;
+            String upstreamUrl = target != null ? target.queryParameter(PARAM_URL) : null;
+            if (segments == null || segments.size() != 3 || !PATH_SEGMENT.equals(segments.get(0))) {
+                writeStatus(out, "404 Not Found");
+                return;
+            }
+            if (!isValidToken(segments.get(1))) {
+                writeStatus(out, "403 Forbidden");
+                return;
+            }
+            if (upstreamUrl == null || HttpUrl.parse(upstreamUrl) == null) {
+                // HttpUrl 只接受 http/https 地址
+                writeStatus(out, "400 Bad Request");
+                return;
+            }
+            boolean head = "HEAD".equals(parts[0]);
+            if (!head && !"GET".equals(parts[0])) {
+                writeStatus(out, "405 Method Not Allowed");
+                return;
+            }
+            long[] range = parseRange(rangeHeader);
+            serve(out, segments.get(2), upstreamUrl, range[0], range[1], head);
+        } catch (IOException e) {
+            // 播放器拖动进度或切歌时会主动断开连接，属正常情况
+            LogUtil.d(TAG, "代理连接结束: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 按固定时间比较，不因比较耗时泄露令牌内容
+     */
+    private boolean isValidToken(String candidate) {
+        return MessageDigest.isEqual(token.getBytes(StandardCharsets.US_ASCII), candidate.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder sb = new StringBuilder(TOKEN_BYTES * 2);
+        for (byte b : bytes) {
+            sb.append(String.format(Locale.US, "%02x", b & 0xff));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 返回 [start, end]，没有 Range 时 start 为 -1；end 为 -1 表示到文件末尾。
+     * MediaPlayer 只会发送 bytes=start- 或 bytes=start-end，其他形式按没有 Range 处理。
+     */
+    private static long[] parseRange(String header) {
+        long[] range = {-1, -1};
+        if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return range;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash <= 0) {
+            return range;
+        }
+        try {
+            range[0] = Long.parseLong(spec.substring(0, dash).trim());
+            String end = spec.substring(dash + 1).trim();
+            range[1] = end.isEmpty() ? -1 : Long.parseLong(end);
+        } catch (NumberFormatException e) {
+            range[0] = -1;
+            range[1] = -1;
+        }
+        return range;
+    }
+
+    private void serve(OutputStream out, String mid, String upstreamUrl, long rangeStart, long rangeEnd,
+                       boolean head) throws IOException {
+        AudioCache.Entry entry = cache.open(mid);
+        Upstream upstream = null;
+        long fromCache = 0;
+        long fromUpstream = 0;
+        try {
+            long position = Math.max(0, rangeStart);
+            long total = cache.getContentLength(entry);
+            long cachedUntil = cache.cachedUntil(entry, position);
+            if (total < 0 || cachedUntil == position) {
+                // 需要上游的数据或者还不知道总长度，先请求上游，同时从响应头得到总长度；
+                // 开头已有缓存时从缓存之后请求，已缓存的部分仍从本地返回
+                long gapEnd = cachedUntil == position ? gapEnd(entry, position, rangeEnd) : gapEnd(entry, cachedUntil, -1);
+                try {
+                    upstream = openUpstream(entry, upstreamUrl, cachedUntil, gapEnd);
+                } catch (IOException e) {
+                    LogUtil.w(TAG, "请求上游失败: " + e.getMessage());
+                    if (cachedUntil == position || rangeStart > 0) {
+                        writeStatus(out, "502 Bad Gateway");
+                        return;
+                    }
+                    // 从头播放时先返回已缓存的部分
+                }
+                total = cache.getContentLength(entry);
+            }
+            if (total >= 0 && position >= total) {
+                writeStatus(out, "416 Range Not Satisfiable");
+                return;
+            }
+            long end = total < 0 ? -1 : rangeEnd >= 0 ? Math.min(rangeEnd, total - 1) : total - 1;
+            writeHeaders(out, entry, rangeStart >= 0 && total >= 0, position, end, total);
+            if (head) {
+                out.flush();
+                return;
+            }
+
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int retries = 0;
+            while (end < 0 || position <= end) {
+                cachedUntil = cache.cachedUntil(entry, position);
+                if (cachedUntil > position) {
+                    if (upstream != null && upstream.position != cachedUntil) {
+                        // 已打开的上游正好从缓存之后开始时保留，读完缓存接着使用
+                        upstream.close();
+                        upstream = null;
+                    }
+                    long limit = end >= 0 ? Math.min(cachedUntil, end + 1) : cachedUntil;
+                    int n = cache.read(entry, position, buffer, (int) Math.min(buffer.length, limit - position));
+                    if (n <= 0) {
+                        LogUtil.w(TAG, mid + " 本地缓存不可读，改为从网络获取");
+                        cache.invalidate(entry);
+                        continue;
+                    }
+                    out.write(buffer, 0, n);
+                    position += n;
+                    fromCache += n;
+                    continue;
+                }
+                int n;
+                try {
+                    if (upstream == null || upstream.position != position) {
+                        if (upstream != null) {
+                            upstream.close();
+                            upstream = null;
+                        }
+                        upstream = openUpstream(entry, upstreamUrl, position, gapEnd(entry, position, end));
+                    }
+                    n = upstream.read(buffer);
+                } catch (IOException e) {
+                    if (upstream != null) {
+                        upstream.close();
+                        upstream = null;
+                    }
+                    if (retries++ >= MAX_UPSTREAM_RETRIES) {
+                        throw e;
+                    }
+                    LogUtil.w(TAG, mid + " 上游连接中断，从 " + position + " 处重新请求: " + e.getMessage());
+                    continue;
+                }
+                if (n < 0) {
+                    boolean rangeDone = upstream.end >= 0 && upstream.position >= upstream.end;
+                    upstream.close();
+                    upstream = null;
+                    if (rangeDone) {
+                        continue;
+                    }
+                    if (total < 0) {
+                        // 上游没有给出长度，读到结尾才知道
+                        cache.setContentInfo(entry, position, null);
+                        break;
+                    }
+                    throw new IOException("上游数据提前结束，位置: " + position + "/" + total);
+                }
+                retries = 0;
+                cache.write(entry, position, buffer, n);
+                int writable = end >= 0 ? (int) Math.min(n, end + 1 - position) : n;
+                out.write(buffer, 0, writable);
+                position += n;
+                fromUpstream += n;
+            }
+            out.flush();
+        } finally {
+            if (upstream != null) {
+                upstream.close();
+            }
+            cache.release(entry);
+            cacheBytes.addAndGet(fromCache);
+            upstreamBytes.addAndGet(fromUpstream);
+            if (fromCache + fromUpstream > 0) {
+                LogUtil.d(TAG, mid + " 本次从缓存读取 " + fromCache / 1024 + "KB，从网络下载 " + fromUpstream / 1024 + "KB");
+            }
+        }
+    }
+
+    /**
+     * 补齐 [0, headBytes) 中缺失的区间，开始下载后才知道文件长度时按实际长度重新计算目标
+     */
+    private void fillHead(String mid, String url, int durationSeconds, int seconds, int generation) throws IOException {
+        AudioCache.Entry entry = cache.open(mid);
+        Upstream upstream = null;
+        long downloaded = 0;
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long position = 0;
+            while (generation == prebufferGeneration.get()) {
+                long target = headBytes(entry, durationSeconds, seconds);
+                if (position >= target) {
+                    break;
+                }
+                long cachedUntil = cache.cachedUntil(entry, position);
+                if (cachedUntil > position) {
+                    if (upstream != null) {
+                        upstream.close();
+                        upstream = null;
+                    }
+                    position = cachedUntil;
+                    continue;
+                }
+                if (upstream == null || upstream.position != position) {
+                    if (upstream != null) {
+                        upstream.close();
+                    }
+                    upstream = openUpstream(entry, url, position, gapEnd(entry, position, target - 1));
+                }
+                int n = upstream.read(buffer);
+                if (n < 0) {
+                    boolean rangeDone = upstream.end >= 0 && upstream.position >= upstream.end;
+                    upstream.close();
+                    upstream = null;
+                    if (!rangeDone) {
+                        break;
+                    }
+                    continue;
+                }
+                cache.write(entry, position, buffer, n);
+                position += n;
+                downloaded += n;
+            }
+        } finally {
+            if (upstream != null) {
+                upstream.close();
+            }
+            cache.release(entry);
+            prebufferBytes.addAndGet(downloaded);
+            if (downloaded > 0) {
+                LogUtil.d(TAG, mid + " 预缓冲 " + downloaded / 1024 + "KB");
+            }
+        }
+    }
+
+    /**
+     * 歌曲开头 seconds 秒大约对应的字节数：知道文件长度和时长时按平均码率换算，否则按较高码率估算
+     */
+    private long headBytes(AudioCache.Entry entry, int durationSeconds, int seconds) {
+        long total = cache.getContentLength(entry);
+        long bytes = total > 0 && durationSeconds > 0
+                ? total * seconds / durationSeconds + PREBUFFER_HEADER_BYTES
+                : (long) seconds * DEFAULT_BYTES_PER_SECOND + PREBUFFER_HEADER_BYTES;
+        return total > 0 ? Math.min(bytes, total) : bytes;
+    }
+
+    /**
+     * 从 position 起需要向上游请求的区间结束位置（不含）：下一个已缓存区间的开始或请求的结尾，-1 表示到文件末尾
+     */
+    private long gapEnd(AudioCache.Entry entry, long position, long end) {
+        long nextCached = cache.nextCachedStart(entry, position);
+        long requestEnd = end >= 0 ? end + 1 : -1;
+        if (nextCached < 0) {
+            return requestEnd;
+        }
+        return requestEnd < 0 ? nextCached : Math.min(nextCached, requestEnd);
+    }
+
+    /**
+     * 按 Range 请求上游的 [from, to)，并把总长度和类型记入缓存
+     */
+    private Upstream openUpstream(AudioCache.Entry entry, String url, long from, long to) throws IOException {
+        Request.Builder builder = new Request.Builder().url(url);
+        if (from > 0 || to > 0) {
+            builder.header("Range", "bytes=" + from + "-" + (to > 0 ? String.valueOf(to - 1) : ""));
+        }
+        Response response = client.newCall(builder.build()).execute();
+        ResponseBody body = response.body();
+        if (body == null || (response.code() != 200 && response.code() != 206)) {
+            response.close();
+            throw new IOException("上游响应 " + response.code());
+        }
+        long total = -1;
+        InputStream stream = body.byteStream();
+        if (response.code() == 206) {
+            // Content-Range: bytes start-end/total
+            String contentRange = response.header("Content-Range");
+            int slash = contentRange != null ? contentRange.lastIndexOf('/') : -1;
+            int dash = contentRange != null ? contentRange.indexOf('-') : -1;
+            int space = contentRange != null ? contentRange.indexOf(' ') : -1;
+            try {
+                if (slash < 0 || dash < 0 || Long.parseLong(contentRange.substring(space + 1, dash).trim()) != from) {
+                    response.close();
+                    throw new IOException("上游返回的区间不符: " + contentRange);
+                }
+                String totalText = contentRange.substring(slash + 1).trim();
+                total = "*".equals(totalText) ? -1 : Long.parseLong(totalText);
+            } catch (NumberFormatException e) {
+                response.close();
+                throw new IOException("无法解析 Content-Range: " + contentRange);
+            }
+        } else {
+            // 上游不支持 Range，整个文件返回，跳过前面已有的部分
+            total = body.contentLength();
+            long skipped = 0;
+            while (skipped < from) {
+                long n = stream.skip(from - skipped);
+                if (n <= 0) {
+                    response.close();
+                    throw new IOException("上游数据不足 " + from + " 字节");
+                }
+                skipped += n;
+            }
+        }
+        String contentType = response.header("Content-Type");
+        cache.setContentInfo(entry, total, contentType);
+        return new Upstream(response, stream, from, to);
+    }
+
+    private void writeHeaders(OutputStream out, AudioCache.Entry entry, boolean partial, long start, long end,
+                              long total) throws IOException {
+        String contentType = cache.getContentType(entry);
+        StringBuilder sb = new StringBuilder();
+        sb.append("HTTP/1.1 ").append(partial ? "206 Partial Content" : "200 OK").append("\r\n");
+        sb.append("Content-Type: ").append(contentType != null ? contentType : DEFAULT_CONTENT_TYPE).append("\r\n");
+        sb.append("Accept-Ranges: bytes\r\n");
+        if (total >= 0) {
+            sb.append("Content-Length: ").append(end - start + 1).append("\r\n");
+            if (partial) {
+                sb.append("Content-Range: bytes ").append(start).append('-').append(end).append('/').append(total).append("\r\n");
+            }
+        }
+        sb.append("Connection: close\r\n\r\n");
+        out.write(sb.toString().getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static void writeStatus(OutputStream out, String status) throws IOException {
+        out.write(("HTTP/1.1 " + status + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n")
+                .getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                int length = sb.length();
+                return length > 0 && sb.charAt(length - 1) == '\r' ? sb.substring(0, length - 1) : sb.toString();
+            }
+            sb.append((char) c);
+        }
+        return sb.length() > 0 ? sb.toString() : null;
+    }
+
+    /**
+     * 一次上游请求，读到 end（不含）为止
+     */
+    private static final class Upstream {
+        final Response response;
+        final InputStream stream;
+        final long end;
+        long position;
+
+        Upstream(Response response, InputStream stream, long position, long end) {
+            this.response = response;
+            this.stream = stream;
+            this.position = position;
+            this.end = end;
+        }
+
+        int read(byte[] buffer) throws IOException {
+            int length = end >= 0 ? (int) Math.min(buffer.length, end - position) : buffer.length;
+            if (length <= 0) {
+                return -1;
+            }
+            int n = stream.read(buffer, 0, length);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+
+        void close() {
+            response.close();
+        }
+    }
+}
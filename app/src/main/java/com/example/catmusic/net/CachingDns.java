@@ -0,0 +1,191 @@
+package com.example.catmusic.net;
+
+import androidx.annotation.NonNull;
+
+import com.example.catmusic.utils.LogUtil;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Dns;
+
+/**
+ * 带缓存的 DNS 解析，安装在共享 OkHttpClient 上，图片 CDN 和歌曲地址所在的少数几个外部主机反复访问时不必每次都解析。
+ * <ul>
+ *   <li>解析结果在 {@link #FRESH_MILLIS} 内直接使用；之后到 {@link #MAX_STALE_MILLIS} 之间先返回旧结果，同时在后台刷新</li>
+ *   <li>近期被频繁使用的主机在过期前由后台任务提前刷新，滑动封面列表时不会卡在解析上</li>
+ *   <li>系统解析失败时退回到上一次成功的结果（不超过 {@link #LAST_KNOWN_MAX_MILLIS}）</li>
+ * </ul>
+ * IP 字面量直接交给系统解析，不进入缓存。
+ */
+public final class CachingDns implements Dns {
+    private static final String TAG = "CachingDns";
+    private static final long FRESH_MILLIS = 5 * 60 * 1000L;// 解析结果的有效期
+    private static final long MAX_STALE_MILLIS = 30 * 60 * 1000L;// 超过有效期后仍可先用旧结果的时长
+    private static final long LAST_KNOWN_MAX_MILLIS = 24 * 60 * 60 * 1000L;// 解析失败时旧结果的最长可用时间
+    private static final long REFRESH_CHECK_INTERVAL_MILLIS = 60 * 1000L;
+    private static final int POPULAR_MIN_HITS = 3;// 一个检查周期内被使用这么多次的主机会被提前刷新
+    private static final int STATS_LOG_INTERVAL = 100;
+
+    private static final CachingDns INSTANCE = new CachingDns(Dns.SYSTEM);
+
+    private final Dns delegate;
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+    private final ExecutorService refreshExecutor = Executors.newFixedThreadPool(2);
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+    // 命中统计
+    private final AtomicInteger lookupCount = new AtomicInteger();
+    private final AtomicInteger freshHitCount = new AtomicInteger();
+    private final AtomicInteger staleHitCount = new AtomicInteger();
+    private final AtomicInteger missCount = new AtomicInteger();
+    private final AtomicInteger fallbackCount = new AtomicInteger();
+    private final AtomicInteger refreshCount = new AtomicInteger();
+
+    public static CachingDns getInstance() {
+        return INSTANCE;
+    }
+
+    private CachingDns(Dns delegate) {
+        this.delegate = delegate;
+        timer.scheduleWithFixedDelay(this::refreshPopularHosts,
+                REFRESH_CHECK_INTERVAL_MILLIS, REFRESH_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @NonNull
+    @Override
+    public List<InetAddress> lookup(@NonNull String hostname) throws UnknownHostException {
+        if (isIpLiteral(hostname)) {
+            return delegate.lookup(hostname);
+        }
+        String host = hostname.toLowerCase(Locale.US);
+        if (lookupCount.incrementAndGet() % STATS_LOG_INTERVAL == 0) {
+            LogUtil.d(TAG, dumpStats());
+        }
+        Entry entry = cache.get(host);
+        long now = System.currentTimeMillis();
+        if (entry != null) {
+            entry.recentHits.incrementAndGet();
+            long age = now - entry.resolvedAt;
+            if (age < FRESH_MILLIS) {
+                freshHitCount.incrementAndGet();
+                return entry.addresses;
+            }
+            if (age < MAX_STALE_MILLIS) {
+                staleHitCount.incrementAndGet();
+                refreshAsync(host, entry);
+                return entry.addresses;
+            }
+        }
+        missCount.incrementAndGet();
+        try {
+            return resolve(host).addresses;
+        } catch (UnknownHostException e) {
+            Entry lastKnown = cache.get(host);
+            if (lastKnown != null && now - lastKnown.resolvedAt < LAST_KNOWN_MAX_MILLIS) {
+                fallbackCount.incrementAndGet();
+                LogUtil.w(TAG, "解析 " + host + " 失败，使用上次的结果: " + e.getMessage());
+                return lastKnown.addresses;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 网络切换后调用：保留所有结果以便继续使用，但下次访问时会在后台重新解析
+     */
+    public void markAllStale() {
+        for (Map.Entry<String, Entry> item : cache.entrySet()) {
+            Entry entry = item.getValue();
+            cache.replace(item.getKey(), entry, new Entry(entry.addresses,
+                    Math.min(entry.resolvedAt, System.currentTimeMillis() - FRESH_MILLIS)));
+        }
+    }
+
+    /**
+     * 命中统计，便于调试
+     */
+    public String dumpStats() {
+        int lookups = freshHitCount.get() + staleHitCount.get() + missCount.get();
+        double hitRate = lookups > 0 ? (freshHitCount.get() + staleHitCount.get()) * 100.0 / lookups : 0;
+        return String.format(Locale.US, "DNS缓存: 主机=%d 命中=%d 过期命中=%d 未命中=%d 命中率=%.1f%% 失败回退=%d 后台刷新=%d",
+                cache.size(), freshHitCount.get(), staleHitCount.get(), missCount.get(), hitRate,
+                fallbackCount.get(), refreshCount.get());
+    }
+
+    private Entry resolve(String host) throws UnknownHostException {
+        List<InetAddress> addresses = delegate.lookup(host);
+        Entry entry = new Entry(Collections.unmodifiableList(addresses), System.currentTimeMillis());
+        cache.put(host, entry);
+        return entry;
+    }
+
+    private void refreshAsync(String host, Entry entry) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        refreshExecutor.execute(() -> {
+            try {
+                refreshCount.incrementAndGet();
+                resolve(host).recentHits.set(entry.recentHits.get());
+            } catch (UnknownHostException e) {
+                // 保留旧结果，下次访问再试
+                LogUtil.w(TAG, "后台刷新 " + host + " 失败: " + e.getMessage());
+                entry.refreshing.set(false);
+            }
+        });
+    }
+
+    /**
+     * 定期检查：最近常用且即将过期的主机提前刷新，长期不用的旧结果清除
+     */
+    private void refreshPopularHosts() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Entry> item : cache.entrySet()) {
+            Entry entry = item.getValue();
+            long age = now - entry.resolvedAt;
+            int hits = entry.recentHits.getAndSet(0);
+            if (age >= LAST_KNOWN_MAX_MILLIS) {
+                cache.remove(item.getKey(), entry);
+            } else if (hits >= POPULAR_MIN_HITS && age >= FRESH_MILLIS - REFRESH_CHECK_INTERVAL_MILLIS) {
+                refreshAsync(item.getKey(), entry);
+            }
+        }
+    }
+
+    private static boolean isIpLiteral(String host) {
+        if (host.indexOf(':') >= 0) {
+            return true;
+        }
+        for (int i = 0; i < host.length(); i++) {
+            char c = host.charAt(i);
+            if ((c < '0' || c > '9') && c != '.') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Entry {
+        final List<InetAddress> addresses;
+        final long resolvedAt;
+        final AtomicInteger recentHits = new AtomicInteger();
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(List<InetAddress> addresses, long resolvedAt) {
+            this.addresses = addresses;
+            this.resolvedAt = resolvedAt;
+        }
+    }
+}
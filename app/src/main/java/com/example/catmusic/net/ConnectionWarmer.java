@@ -0,0 +1,218 @@
+package com.example.catmusic.net;
+
+import androidx.annotation.NonNull;
+
+import com.example.catmusic.Config;
+import com.example.catmusic.utils.LogUtil;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 启动阶段的连接预热。
+ * 在欢迎页展示期间向 Node 服务和图片 CDN 各发一个 HEAD 请求，让 DNS 解析、TCP/TLS 握手提前完成，
+ * 建好的 keep-alive 连接留在共享连接池中，首页的第一个真实请求直接复用。
+ * 通过 {@link #interceptor()} 检查每个主机的第一个真实请求是否用上了预热的连接，并统计节省的时间。
+ */
+public final class ConnectionWarmer {
+    private static final String TAG = "ConnectionWarmer";
+    // 推荐页和歌单封面所在的图片主机
+    private static final List<String> CDN_URLS = Arrays.asList(
+            "https://y.gtimg.cn/",
+            "http://qpic.y.qq.com/");
+
+    private static final ConnectionWarmer INSTANCE = new ConnectionWarmer();
+
+    // 主机 -> 预热结果，每个主机的第一个真实请求到达后移除
+    private final Map<String, WarmResult> warmedHosts = new ConcurrentHashMap<>();
+    private final AtomicLong totalSavedMillis = new AtomicLong();
+    private volatile OkHttpClient warmClient;
+
+    public static ConnectionWarmer getInstance() {
+        return INSTANCE;
+    }
+
+    private ConnectionWarmer() {
+    }
+
+    /**
+     * 预热服务器地址和图片 CDN 的连接，异步执行，立即返回
+     */
+    public void warmUp() {
+        warmUp(Config.getBaseUrl());
+        for (String url : CDN_URLS) {
+            warmUp(url);
+        }
+    }
+
+    /**
+     * 预热单个地址所在主机的连接，如服务器地址切换后预热新地址
+     */
+    public void warmUp(String url) {
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        if (httpUrl == null) {
+            return;
+        }
+        String host = hostKey(httpUrl);
+        WarmResult result = new WarmResult();
+        if (warmedHosts.putIfAbsent(host, result) != null) {
+            // 已经预热过且还没有真实请求用掉
+            return;
+        }
+        Request request = new Request.Builder()
+                .url(httpUrl.newBuilder().encodedPath("/").query(null).build())
+                .head()
+                .tag(WarmTag.class, new WarmTag(result))
+                .build();
+        getWarmClient().newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                warmedHosts.remove(host, result);
+                LogUtil.w(TAG, "预热 " + host + " 失败: " + e.getMessage());
+            }
+
+            @Override
+            public void onResponse(@NonNull Call call, @NonNull Response response) {
+                // 只需要连接，关闭响应后连接回到连接池
+                response.close();
+                LogUtil.d(TAG, "预热 " + host + " 完成: DNS " + result.dnsMillis + "ms，建连 "
+                        + result.connectMillis + "ms，" + result.protocol);
+            }
+        });
+    }
+
+    /**
+     * 安装在共享客户端上的网络拦截器，记录每个预热主机的第一个真实请求是否复用了预热连接
+     */
+    public Interceptor interceptor() {
+        return chain -> {
+            Request request = chain.request();
+            if (request.tag(WarmTag.class) == null) {
+                onFirstRequest(hostKey(request.url()), chain.connection());
+            }
+            return chain.proceed(request);
+        };
+    }
+
+    /**
+     * 所有主机的第一个请求通过预热累计节省的时间
+     */
+    public long getTotalSavedMillis() {
+        return totalSavedMillis.get();
+    }
+
+    private void onFirstRequest(String host, Connection connection) {
+        WarmResult result = warmedHosts.get(host);
+        if (result == null || result.connection == null || !warmedHosts.remove(host, result)) {
+            // 未预热、预热尚未建好连接或已统计过
+            return;
+        }
+        if (connection == result.connection) {
+            long saved = result.dnsMillis + result.connectMillis;
+            totalSavedMillis.addAndGet(saved);
+            LogUtil.d(TAG, host + " 首个请求复用了预热连接，节省约 " + saved + "ms（累计 " + totalSavedMillis.get() + "ms）");
+        } else {
+            LogUtil.d(TAG, host + " 首个请求未复用预热连接（连接已被关闭或被其他请求占用）");
+        }
+    }
+
+    private OkHttpClient getWarmClient() {
+        OkHttpClient client = warmClient;
+        if (client != null) {
+            return client;
+        }
+        synchronized (this) {
+            if (warmClient == null) {
+                // 与共享客户端共用连接池，预热建立的连接才能被后续请求复用
+                warmClient = Config.getMediaHttpClient().newBuilder()
+                        .eventListenerFactory(call -> {
+                            WarmTag tag = call.request().tag(WarmTag.class);
+                            return tag != null ? new WarmListener(tag.result) : EventListener.NONE;
+                        })
+                        .build();
+            }
+            return warmClient;
+        }
+    }
+
+    private static String hostKey(HttpUrl url) {
+        return url.scheme() + "://" + url.host() + ":" + url.port();
+    }
+
+    /**
+     * 记录一次预热请求的 DNS 和建连耗时，以及建好的连接
+     */
+    private static final class WarmListener extends EventListener {
+        private final WarmResult result;
+        private long dnsStart;
+        private long connectStart;
+
+        WarmListener(WarmResult result) {
+            this.result = result;
+        }
+
+        @Override
+        public void dnsStart(@NonNull Call call, @NonNull String domainName) {
+            dnsStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(@NonNull Call call, @NonNull String domainName, @NonNull List<InetAddress> inetAddressList) {
+            result.dnsMillis = (System.nanoTime() - dnsStart) / 1_000_000;
+        }
+
+        @Override
+        public void connectStart(@NonNull Call call, @NonNull InetSocketAddress inetSocketAddress, @NonNull Proxy proxy) {
+            connectStart = System.nanoTime();
+        }
+
+        @Override
+        public void connectEnd(@NonNull Call call, @NonNull InetSocketAddress inetSocketAddress, @NonNull Proxy proxy,
+                               Protocol protocol) {
+            // 包含 TLS 握手
+            result.connectMillis = (System.nanoTime() - connectStart) / 1_000_000;
+            result.protocol = protocol;
+        }
+
+        @Override
+        public void connectionAcquired(@NonNull Call call, @NonNull Connection connection) {
+            result.connection = connection;
+        }
+    }
+
+    private static final class WarmResult {
+        volatile long dnsMillis;
+        volatile long connectMillis;
+        volatile Protocol protocol;
+        volatile Connection connection;
+    }
+
+    /**
+     * 标记预热请求，拦截器不统计带有该标记的请求
+     */
+    private static final class WarmTag {
+        final WarmResult result;
+
+        WarmTag(WarmResult result) {
+            this.result = result;
+        }
+    }
+}
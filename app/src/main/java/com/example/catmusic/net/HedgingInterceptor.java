@@ -0,0 +1,269 @@
+package com.example.catmusic.net;
+
+import androidx.annotation.NonNull;
+
+import com.example.catmusic.utils.LogUtil;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 对冲请求拦截器。
+ * 请求在该接口最近的 p95 延迟内仍未收到响应头时，再发出一个相同的请求，两者谁先收到响应头就用谁的结果，
+ * 另一个立即取消，以此削掉偶发的慢响应。延迟的统计口径与 {@link RetryInterceptor} 一致，都以收到响应头为准，
+ * 响应体照常以流的方式交给调用方解析。
+ * 主请求和对冲请求是两个独立的 {@link Call}：主请求在调用线程上执行，带有 {@link RaceTag}，
+ * 对冲请求胜出后 {@link RetryInterceptor} 不再重试；对冲请求由 Dispatcher 异步执行，带有 {@link HedgeTag}，
+ * 不会再次触发重试或对冲。
+ */
+public class HedgingInterceptor implements Interceptor {
+    private static final String TAG = "HedgingInterceptor";
+    private static final long CANCEL_CHECK_INTERVAL_MILLIS = 100;
+
+    private final RequestPolicy policy;
+    // 只负责按时发出对冲请求和检查调用是否被取消，请求本身不占用这里的线程
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "api-hedge");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile OkHttpClient client;
+
+    public HedgingInterceptor(RequestPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * 指定发送主请求和对冲请求的客户端，通常就是安装了本拦截器的客户端
+     */
+    public void setClient(OkHttpClient client) {
+        this.client = client;
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request request = chain.request();
+        // 主请求再次经过本拦截器时直接放行，由内层的重试拦截器处理
+        RequestPolicy.Endpoint endpoint = request.tag(RaceTag.class) == null ? policy.match(request) : null;
+        OkHttpClient raceClient = client;
+        long delay = endpoint != null && endpoint.hedge ? endpoint.hedgeDelayMillis() : -1;
+        if (delay < 0 || raceClient == null) {
+            return chain.proceed(request);
+        }
+
+        Race race = new Race(raceClient.newCall(request.newBuilder().tag(RaceTag.class, new RaceTag()).build()));
+        ScheduledFuture<?> hedgeTimer = scheduler.schedule(
+                () -> launchHedge(race, raceClient, request, endpoint, delay), delay, TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> cancelCheck = scheduler.scheduleWithFixedDelay(() -> {
+            if (chain.call().isCanceled()) {
+                race.cancel();
+            }
+        }, CANCEL_CHECK_INTERVAL_MILLIS, CANCEL_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        try {
+            Response response;
+            try {
+                response = race.primary.execute();
+            } catch (IOException e) {
+                return race.onPrimaryFailed(e, chain, endpoint);
+            }
+            return race.onPrimaryResponse(response, endpoint);
+        } finally {
+            hedgeTimer.cancel(false);
+            cancelCheck.cancel(false);
+        }
+    }
+
+    /**
+     * 主请求超过 p95 仍未收到响应头，在预算内发出对冲请求
+     */
+    private void launchHedge(Race race, OkHttpClient raceClient, Request request, RequestPolicy.Endpoint endpoint, long delay) {
+        if (!race.isOpen() || !policy.tryAcquireHedge(endpoint)) {
+            return;
+        }
+        Call hedge = raceClient.newCall(request.newBuilder().tag(HedgeTag.class, HedgeTag.INSTANCE).build());
+        if (!race.setHedge(hedge)) {
+            policy.releaseHedgeSlot();
+            return;
+        }
+        hedge.enqueue(new Callback() {
+            @Override
+            public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                policy.releaseHedgeSlot();
+                race.onHedgeFailed(e);
+            }
+
+            @Override
+            public void onResponse(@NonNull Call call, @NonNull Response response) {
+                policy.releaseHedgeSlot();
+                if (response.code() >= 500) {
+                    response.close();
+                    race.onHedgeFailed(new IOException("对冲请求响应 " + response.code()));
+                    return;
+                }
+                race.onHedgeResponse(response);
+            }
+        });
+        LogUtil.d(TAG, endpoint.apiPath + " 超过 " + delay + "ms 未返回，发送对冲请求");
+    }
+
+    /**
+     * 一次主请求与对冲请求的竞争，先收到响应头的一方胜出，另一方被取消，之后到达的结果直接关闭
+     */
+    private static final class Race {
+        final Call primary;
+        private Call hedge;
+        private boolean primaryDone;// 主请求已返回或失败，不再发出对冲请求
+        private boolean hedgeRunning;
+        private boolean settled;
+        private Response hedgeResponse;
+
+        Race(Call primary) {
+            this.primary = primary;
+        }
+
+        synchronized boolean isOpen() {
+            return !settled && !primaryDone;
+        }
+
+        synchronized boolean setHedge(Call call) {
+            if (!isOpen()) {
+                return false;
+            }
+            hedge = call;
+            hedgeRunning = true;
+            return true;
+        }
+
+        void onHedgeResponse(Response response) {
+            synchronized (this) {
+                hedgeRunning = false;
+                if (!settled) {
+                    hedgeResponse = response;
+                    settle();
+                    notifyAll();
+                    response = null;
+                }
+            }
+            if (response != null) {
+                response.close();
+            } else {
+                // 对冲请求胜出，主请求不再需要
+                primary.cancel();
+            }
+        }
+
+        synchronized void onHedgeFailed(IOException e) {
+            hedgeRunning = false;
+            LogUtil.w(TAG, "对冲请求失败: " + e.getMessage());
+            notifyAll();
+        }
+
+        /**
+         * 主请求收到响应头；对冲请求已经胜出时（取消之前主请求恰好返回）仍采用对冲请求的结果
+         */
+        Response onPrimaryResponse(Response response, RequestPolicy.Endpoint endpoint) {
+            Call loser;
+            synchronized (this) {
+                primaryDone = true;
+                if (hedgeResponse != null) {
+                    response.close();
+                    endpoint.hedgeWinCount.incrementAndGet();
+                    return hedgeResponse;
+                }
+                settle();
+                loser = hedge;
+            }
+            if (loser != null) {
+                loser.cancel();
+            }
+            return response;
+        }
+
+        /**
+         * 主请求失败（包括被胜出的对冲请求取消），等待仍在进行的对冲请求
+         */
+        Response onPrimaryFailed(IOException error, Chain chain, RequestPolicy.Endpoint endpoint) throws IOException {
+            synchronized (this) {
+                primaryDone = true;
+                while (hedgeResponse == null && hedgeRunning && !settled) {
+                    try {
+                        wait(CANCEL_CHECK_INTERVAL_MILLIS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        cancel();
+                        throw new InterruptedIOException("等待响应被中断");
+                    }
+                }
+                if (hedgeResponse != null) {
+                    endpoint.hedgeWinCount.incrementAndGet();
+                    return hedgeResponse;
+                }
+                settle();
+            }
+            if (chain.call().isCanceled()) {
+                throw new IOException("Canceled");
+            }
+            throw error;
+        }
+
+        /**
+         * 调用方取消了请求，两个请求都取消
+         */
+        void cancel() {
+            Call running;
+            synchronized (this) {
+                settle();
+                notifyAll();
+                running = hedge;
+            }
+            primary.cancel();
+            if (running != null) {
+                running.cancel();
+            }
+        }
+
+        private void settle() {
+            settled = true;
+            RaceTag tag = primary.request().tag(RaceTag.class);
+            if (tag != null) {
+                tag.settled = true;
+            }
+        }
+    }
+
+    /**
+     * 标记参与对冲竞争的主请求；竞争结束后主请求的结果已不再需要，重试拦截器据此停止重试
+     */
+    public static final class RaceTag {
+        private volatile boolean settled;
+
+        RaceTag() {
+        }
+
+        public boolean isSettled() {
+            return settled;
+        }
+    }
+
+    /**
+     * 标记对冲请求，{@link RequestPolicy} 会跳过带有该标记的请求
+     */
+    public static final class HedgeTag {
+        static final HedgeTag INSTANCE = new HedgeTag();
+
+        private HedgeTag() {
+        }
+    }
+}
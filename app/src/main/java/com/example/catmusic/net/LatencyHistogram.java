@@ -0,0 +1,114 @@
+package com.example.catmusic.net;
+
+import java.util.Arrays;
+
+/**
+ * 滚动窗口的对数-线性延迟直方图（HDR 风格），单位微秒。
+ * 每个 2 的幂区间再均分为 {@link #SUB_BUCKETS} 个桶，相对误差约 12%，占用固定内存，记录为 O(1)。
+ * 保留当前和上一个时间窗口，统计时合并两者，旧数据随窗口轮换自然淘汰。
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;// 小于该值的样本每个值一个桶
+    private static final int MAX_EXPONENT = 36;// 约 19 小时，超出的样本计入最后一个桶
+    private static final int BUCKET_COUNT = LINEAR_LIMIT
+            + (MAX_EXPONENT - Integer.numberOfTrailingZeros(LINEAR_LIMIT) + 1) * SUB_BUCKETS;
+
+    private final long windowMillis;
+    private long[] current = new long[BUCKET_COUNT];
+    private long[] previous = new long[BUCKET_COUNT];
+    private long windowStart;
+    // 最大值也按窗口分别保存，随窗口一起轮换
+    private long currentMax;
+    private long previousMax;
+
+    LatencyHistogram(long windowMillis) {
+        this.windowMillis = windowMillis;
+        this.windowStart = System.currentTimeMillis();
+    }
+
+    synchronized void record(long micros) {
+        rotate();
+        long value = Math.max(0, micros);
+        current[indexOf(value)]++;
+        currentMax = Math.max(currentMax, value);
+    }
+
+    /**
+     * 当前和上一个窗口合计的样本数
+     */
+    synchronized long count() {
+        rotate();
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += current[i] + previous[i];
+        }
+        return count;
+    }
+
+    /**
+     * @param p 0~1 之间的分位
+     * @return 分位所在桶的上界（微秒），没有样本时返回 -1
+     */
+    synchronized long percentile(double p) {
+        long total = count();
+        if (total == 0) {
+            return -1;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p * total));
+        long maxMicros = Math.max(currentMax, previousMax);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += current[i] + previous[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), maxMicros);
+            }
+        }
+        return maxMicros;
+    }
+
+    private void rotate() {
+        long now = System.currentTimeMillis();
+        if (now - windowStart < windowMillis) {
+            return;
+        }
+        long[] recycled = previous;
+        Arrays.fill(recycled, 0);
+        if (now - windowStart < windowMillis * 2) {
+            previous = current;
+            previousMax = currentMax;
+        } else {
+            // 已空闲超过两个窗口，上一个窗口的数据也过期了
+            Arrays.fill(current, 0);
+            previous = current;
+            previousMax = 0;
+        }
+        currentMax = 0;
+        current = recycled;
+        windowStart = now;
+    }
+
+    static int indexOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - Integer.numberOfTrailingZeros(LINEAR_LIMIT)) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBoundOf(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int offset = index - LINEAR_LIMIT;
+        int exponent = offset / SUB_BUCKETS + Integer.numberOfTrailingZeros(LINEAR_LIMIT);
+        int sub = offset % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + (sub + 1) * width - 1;
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.catmusic.net;
+
+import com.example.catmusic.Config;
+import com.example.catmusic.utils.LogUtil;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Request;
+
+/**
+ * API 请求策略：按接口配置重试与对冲（hedging），并统计各接口的延迟分布和策略效果。
+ * 由 {@link HedgingInterceptor} 和 {@link RetryInterceptor} 共同使用，只作用于已注册的幂等 GET 接口。
+ * 重试与对冲都有预算上限，避免服务器变慢时请求量被成倍放大。
+ */
+public final class RequestPolicy {
+    private static final String TAG = "RequestPolicy";
+    private static final int LATENCY_WINDOW = 128;// 每个接口保留的最近延迟样本数
+    private static final int MIN_SAMPLES_FOR_HEDGE = 20;// 样本不足时不对冲
+    private static final long MIN_HEDGE_DELAY_MILLIS = 50;
+    private static final long MAX_HEDGE_DELAY_MILLIS = 3000;
+    private static final double RETRY_BUDGET_RATIO = 0.2;// 重试次数不超过请求数的 20%
+    private static final int RETRY_BUDGET_BURST = 5;
+    private static final double HEDGE_BUDGET_RATIO = 0.1;// 对冲请求不超过请求数的 10%
+    private static final int HEDGE_BUDGET_BURST = 3;
+    private static final int MAX_CONCURRENT_HEDGES = 4;
+    private static final int STATS_LOG_INTERVAL = 20;
+
+    private static final RequestPolicy INSTANCE = new RequestPolicy();
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final AtomicInteger concurrentHedges = new AtomicInteger();
+
+    public static RequestPolicy getInstance() {
+        return INSTANCE;
+    }
+
+    private RequestPolicy() {
+        setEndpoint(Config.API_GET_RECOMMEND, 2, 300, 2000, true);
+        setEndpoint(Config.API_GET_ALBUM, 2, 300, 2000, true);
+        setEndpoint(Config.API_GET_SONGS_URL, 3, 200, 2000, true);
+        setEndpoint(Config.API_GET_LYRIC, 2, 300, 2000, true);
+    }
+
+    /**
+     * 配置某个接口的策略，只应用于幂等的 GET 接口
+     * @param maxRetries 最多重试次数，0 表示不重试
+     * @param baseBackoffMillis 第一次重试的退避上限，之后每次翻倍
+     * @param maxBackoffMillis 单次退避的上限
+     * @param hedge 是否在延迟超过 p95 时发送对冲请求
+     */
+    public void setEndpoint(String apiPath, int maxRetries, long baseBackoffMillis, long maxBackoffMillis, boolean hedge) {
+        Endpoint previous = endpoints.get(apiPath);
+        Endpoint endpoint = new Endpoint(apiPath, maxRetries, baseBackoffMillis, maxBackoffMillis, hedge);
+        if (previous != null) {
+            endpoint.copyStatsFrom(previous);
+        }
+        endpoints.put(apiPath, endpoint);
+    }
+
+    /**
+     * 查找请求对应的接口策略；对冲请求本身和未注册的接口返回 null
+     */
+    Endpoint match(Request request) {
+        if (!"GET".equals(request.method()) || request.tag(HedgingInterceptor.HedgeTag.class) != null) {
+            return null;
+        }
+        String path = request.url().encodedPath();
+        return endpoints.get(path.startsWith("/") ? path.substring(1) : path);
+    }
+
+    /**
+     * 同时占用接口的对冲预算和全局并发名额，任一不足时都不占用；成功后在对冲请求结束时调用 {@link #releaseHedgeSlot()}
+     */
+    boolean tryAcquireHedge(Endpoint endpoint) {
+        if (!tryAcquireHedgeSlot()) {
+            return false;
+        }
+        if (!endpoint.tryAcquireHedge()) {
+            releaseHedgeSlot();
+            return false;
+        }
+        return true;
+    }
+
+    private boolean tryAcquireHedgeSlot() {
+        while (true) {
+            int current = concurrentHedges.get();
+            if (current >= MAX_CONCURRENT_HEDGES) {
+                return false;
+            }
+            if (concurrentHedges.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void releaseHedgeSlot() {
+        concurrentHedges.decrementAndGet();
+    }
+
+    /**
+     * 各接口的统计信息，便于调试时对比开启策略前后的尾延迟
+     */
+    public String dumpStats() {
+        StringBuilder sb = new StringBuilder();
+        for (Endpoint endpoint : endpoints.values()) {
+            sb.append(endpoint.describe()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 单个接口的策略配置和统计
+     */
+    static final class Endpoint {
+        final String apiPath;
+        final int maxRetries;
+        final long baseBackoffMillis;
+        final long maxBackoffMillis;
+        final boolean hedge;
+
+        final AtomicInteger requestCount = new AtomicInteger();
+        final AtomicInteger retryCount = new AtomicInteger();
+        final AtomicInteger hedgeCount = new AtomicInteger();
+        final AtomicInteger hedgeWinCount = new AtomicInteger();
+        final AtomicInteger failureCount = new AtomicInteger();
+        private final long[] latencies = new long[LATENCY_WINDOW];
+        private int latencyCount;
+        private int latencyNext;
+
+        Endpoint(String apiPath, int maxRetries, long baseBackoffMillis, long maxBackoffMillis, boolean hedge) {
+            this.apiPath = apiPath;
+            this.maxRetries = Math.max(0, maxRetries);
+            this.baseBackoffMillis = Math.max(1, baseBackoffMillis);
+            this.maxBackoffMillis = Math.max(this.baseBackoffMillis, maxBackoffMillis);
+            this.hedge = hedge;
+        }
+
+        void onRequest() {
+            if (requestCount.incrementAndGet() % STATS_LOG_INTERVAL == 0) {
+                LogUtil.d(TAG, describe());
+            }
+        }
+
+        /**
+         * 记录一次成功尝试的延迟，以收到响应头为准，与对冲竞争的判定口径一致
+         */
+        synchronized void recordLatency(long millis) {
+            latencies[latencyNext] = millis;
+            latencyNext = (latencyNext + 1) % LATENCY_WINDOW;
+            latencyCount = Math.min(latencyCount + 1, LATENCY_WINDOW);
+        }
+
+        synchronized long percentile(double p) {
+            if (latencyCount == 0) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(latencies, latencyCount);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(p * latencyCount) - 1;
+            return sorted[Math.max(0, Math.min(latencyCount - 1, index))];
+        }
+
+        /**
+         * 对冲延迟取最近样本的 p95，样本不足时返回 -1 表示暂不对冲
+         */
+        long hedgeDelayMillis() {
+            synchronized (this) {
+                if (latencyCount < MIN_SAMPLES_FOR_HEDGE) {
+                    return -1;
+                }
+            }
+            long p95 = percentile(0.95);
+            return Math.max(MIN_HEDGE_DELAY_MILLIS, Math.min(MAX_HEDGE_DELAY_MILLIS, p95));
+        }
+
+        /**
+         * 第 attempt 次重试前的退避时间：指数退避 + 全抖动
+         */
+        long backoffMillis(int attempt) {
+            long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt, 16));
+            return (long) (Math.random() * ceiling);
+        }
+
+        boolean tryAcquireRetry() {
+            return tryAcquireBudget(retryCount, RETRY_BUDGET_RATIO, RETRY_BUDGET_BURST);
+        }
+
+        /**
+         * 占用一次对冲预算，成功时已计入 {@link #hedgeCount}
+         */
+        boolean tryAcquireHedge() {
+            return tryAcquireBudget(hedgeCount, HEDGE_BUDGET_RATIO, HEDGE_BUDGET_BURST);
+        }
+
+        /**
+         * 检查与计数用 CAS 一起完成，并发调用也不会超出预算
+         */
+        private boolean tryAcquireBudget(AtomicInteger used, double ratio, int burst) {
+            while (true) {
+                int current = used.get();
+                if (current >= requestCount.get() * ratio + burst) {
+                    return false;
+                }
+                if (used.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void copyStatsFrom(Endpoint other) {
+            requestCount.set(other.requestCount.get());
+            retryCount.set(other.retryCount.get());
+            hedgeCount.set(other.hedgeCount.get());
+            hedgeWinCount.set(other.hedgeWinCount.get());
+            failureCount.set(other.failureCount.get());
+            synchronized (other) {
+                System.arraycopy(other.latencies, 0, latencies, 0, LATENCY_WINDOW);
+                latencyCount = other.latencyCount;
+                latencyNext = other.latencyNext;
+            }
+        }
+
+        String describe() {
+            return String.format(Locale.US, "%s 请求=%d 重试=%d 对冲=%d 对冲胜出=%d 失败=%d p50=%dms p95=%dms p99=%dms",
+                    apiPath, requestCount.get(), retryCount.get(), hedgeCount.get(), hedgeWinCount.get(),
+                    failureCount.get(), percentile(0.5), percentile(0.95), percentile(0.99));
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package com.example.catmusic.net;
+
+import androidx.annotation.NonNull;
+
+import com.example.catmusic.utils.LogUtil;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 发往 Node 服务的请求调度器。
+ * 请求按 {@link Priority} 分级排队，每级有各自的并发上限，整体受令牌桶限速，避免预加载把服务器和连接占满。
+ * 有前台请求排队或在途时，后台请求一律推迟；并发已满时前台请求会抢占最近启动的后台请求，
+ * 被抢占的请求重新排到后台队列最前面，稍后重发，调用方无感知。
+ * 优先级通过 {@code request.tag(Priority.class)} 指定，缺省为 {@link Priority#VISIBLE}；
+ * {@link #cancelAll(Object)} 按 {@code request.tag()} 批量取消。
+ */
+public final class RequestScheduler {
+    private static final String TAG = "RequestScheduler";
+    private static final int MAX_RUNNING = 6;// 与 OkHttp 单主机并发数一致
+    private static final double RATE_PER_SECOND = 8;// 令牌桶每秒补充的请求数
+    private static final double RATE_BURST = 8;// 令牌桶容量
+    private static final int STATS_LOG_INTERVAL = 50;
+
+    private static final RequestScheduler INSTANCE = new RequestScheduler();
+
+    /**
+     * 请求优先级，声明顺序即调度顺序
+     */
+    public enum Priority {
+        /** 用户正在等待的请求，如刚点开的歌曲的播放地址和歌词；不受限速等待 */
+        FOREGROUND(4),
+        /** 当前页面展示的数据 */
+        VISIBLE(3),
+        /** 预加载、缓存刷新等后台工作，可被推迟和抢占 */
+        BACKGROUND(2);
+
+        final int maxRunning;
+
+        Priority(int maxRunning) {
+            this.maxRunning = maxRunning;
+        }
+    }
+
+    private final Object lock = new Object();
+    private final Map<Priority, ArrayDeque<Task>> queues = new EnumMap<>(Priority.class);
+    private final Map<Priority, List<Task>> running = new EnumMap<>(Priority.class);
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private ScheduledFuture<?> pendingPump;
+    private double tokens = RATE_BURST;
+    private long lastRefillNanos = System.nanoTime();
+
+    private final AtomicInteger startedCount = new AtomicInteger();
+    private final AtomicInteger preemptedCount = new AtomicInteger();
+    private final AtomicInteger rateLimitedCount = new AtomicInteger();
+    private final AtomicInteger canceledCount = new AtomicInteger();
+
+    public static RequestScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    private RequestScheduler() {
+        for (Priority priority : Priority.values()) {
+            queues.put(priority, new ArrayDeque<>());
+            running.put(priority, new ArrayList<>());
+        }
+    }
+
+    /**
+     * 排队发起请求，回调语义与 {@link Call#enqueue(Callback)} 相同
+     * @return 可用于取消或提升优先级的句柄
+     */
+    public Task enqueue(OkHttpClient client, Request request, Callback callback) {
+        Priority priority = request.tag(Priority.class);
+        Task task = new Task(client.newCall(request), priority != null ? priority : Priority.VISIBLE, callback);
+        synchronized (lock) {
+            queues.get(task.priority).add(task);
+        }
+        pump();
+        return task;
+    }
+
+    /**
+     * 取消所有 {@code request.tag()} 等于 tag 的请求，排队中的请求以 "Canceled" 失败回调
+     */
+    public void cancelAll(Object tag) {
+        if (tag == null) {
+            return;
+        }
+        List<Task> matched = new ArrayList<>();
+        synchronized (lock) {
+            for (Priority priority : Priority.values()) {
+                for (Task task : queues.get(priority)) {
+                    if (tag.equals(task.call.request().tag())) {
+                        matched.add(task);
+                    }
+                }
+                for (Task task : running.get(priority)) {
+                    if (tag.equals(task.call.request().tag())) {
+                        matched.add(task);
+                    }
+                }
+            }
+        }
+        for (Task task : matched) {
+            task.cancel();
+        }
+    }
+
+    /**
+     * 当前各级排队和在途数量及累计统计，便于调试
+     */
+    public String dumpStats() {
+        StringBuilder sb = new StringBuilder();
+        synchronized (lock) {
+            for (Priority priority : Priority.values()) {
+                sb.append(String.format(Locale.US, "%s 排队=%d 在途=%d ", priority,
+                        queues.get(priority).size(), running.get(priority).size()));
+            }
+        }
+        sb.append(String.format(Locale.US, "已发出=%d 抢占=%d 限速等待=%d 取消=%d",
+                startedCount.get(), preemptedCount.get(), rateLimitedCount.get(), canceledCount.get()));
+        return sb.toString();
+    }
+
+    /**
+     * 在并发和限速允许的范围内启动排队中的请求
+     */
+    private void pump() {
+        List<Task> toStart = new ArrayList<>();
+        List<Call> toCancel = new ArrayList<>();
+        long waitNanos = 0;
+        synchronized (lock) {
+            refillTokens();
+            loop:
+            for (Priority priority : Priority.values()) {
+                ArrayDeque<Task> queue = queues.get(priority);
+                while (!queue.isEmpty()) {
+                    if (priority == Priority.BACKGROUND && hasForegroundWork()) {
+                        // 前台请求结束前推迟后台工作
+                        break loop;
+                    }
+                    if (running.get(priority).size() >= priority.maxRunning) {
+                        break;
+                    }
+                    if (runningCount() >= MAX_RUNNING) {
+                        Task victim = priority == Priority.FOREGROUND ? preemptBackground() : null;
+                        if (victim == null) {
+                            break loop;
+                        }
+                        toCancel.add(victim.call);
+                        victim.call = victim.call.clone();
+                    }
+                    if (tokens < 1 && priority != Priority.FOREGROUND) {
+                        rateLimitedCount.incrementAndGet();
+                        waitNanos = (long) ((1 - tokens) / RATE_PER_SECOND * 1_000_000_000L);
+                        break loop;
+                    }
+                    // 前台请求可以透支令牌，透支的部分由之后的请求等待补回
+                    tokens -= 1;
+                    Task task = queue.poll();
+                    task.state = Task.RUNNING;
+                    running.get(priority).add(task);
+                    toStart.add(task);
+                }
+            }
+            if (waitNanos > 0 && pendingPump == null) {
+                pendingPump = timer.schedule(() -> {
+                    synchronized (lock) {
+                        pendingPump = null;
+                    }
+                    pump();
+                }, waitNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        for (Call call : toCancel) {
+            call.cancel();
+        }
+        for (Task task : toStart) {
+            start(task);
+        }
+    }
+
+    /**
+     * 选出最近启动的后台请求让出并发，并把它放回后台队列最前面。调用方需持有 {@link #lock}
+     */
+    private Task preemptBackground() {
+        List<Task> background = running.get(Priority.BACKGROUND);
+        if (background.isEmpty()) {
+            return null;
+        }
+        Task victim = background.remove(background.size() - 1);
+        victim.state = Task.QUEUED;
+        queues.get(Priority.BACKGROUND).addFirst(victim);
+        preemptedCount.incrementAndGet();
+        LogUtil.d(TAG, "前台请求抢占后台请求: " + victim.call.request().url().encodedPath());
+        return victim;
+    }
+
+    private void start(Task task) {
+        Call call;
+        synchronized (lock) {
+            call = task.call;
+        }
+        if (startedCount.incrementAndGet() % STATS_LOG_INTERVAL == 0) {
+            LogUtil.d(TAG, dumpStats());
+        }
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                if (finish(task, call, false)) {
+                    task.callback.onFailure(call, e);
+                }
+                pump();
+            }
+
+            @Override
+            public void onResponse(@NonNull Call call, @NonNull Response response) throws IOException {
+                if (finish(task, call, true)) {
+                    try {
+                        task.callback.onResponse(call, response);
+                    } finally {
+                        pump();
+                    }
+                    return;
+                }
+                response.close();
+                pump();
+            }
+        });
+    }
+
+    /**
+     * 某次 Call 结束时更新状态
+     * @return 是否应把结果交给调用方
+     */
+    private boolean finish(Task task, Call call, boolean succeeded) {
+        synchronized (lock) {
+            if (task.state == Task.DONE) {
+                return false;
+            }
+            if (task.call != call) {
+                // 被抢占的旧 Call：取消引起的失败直接忽略；若赶在取消前已经成功，就用这个结果并撤回重发
+                if (!succeeded || !queues.get(task.priority).remove(task)) {
+                    return false;
+                }
+            } else {
+                running.get(task.priority).remove(task);
+            }
+            task.state = Task.DONE;
+            return true;
+        }
+    }
+
+    private boolean hasForegroundWork() {
+        return !queues.get(Priority.FOREGROUND).isEmpty() || !running.get(Priority.FOREGROUND).isEmpty();
+    }
+
+    private int runningCount() {
+        int count = 0;
+        for (List<Task> tasks : running.values()) {
+            count += tasks.size();
+        }
+        return count;
+    }
+
+    private void refillTokens() {
+        long now = System.nanoTime();
+        tokens = Math.min(RATE_BURST, tokens + (now - lastRefillNanos) / 1_000_000_000.0 * RATE_PER_SECOND);
+        lastRefillNanos = now;
+    }
+
+    /**
+     * 一个排队或在途的请求
+     */
+    public final class Task {
+        static final int QUEUED = 0;
+        static final int RUNNING = 1;
+        static final int DONE = 2;
+
+        private final Callback callback;
+        private Call call;
+        private Priority priority;
+        private int state = QUEUED;
+
+        private Task(Call call, Priority priority, Callback callback) {
+            this.call = call;
+            this.priority = priority;
+            this.callback = callback;
+        }
+
+        /**
+         * 是否还在排队，尚未发出
+         */
+        public boolean isQueued() {
+            synchronized (lock) {
+                return state == QUEUED;
+            }
+        }
+
+        /**
+         * 取消请求：排队中的直接移出队列并以 "Canceled" 失败回调，在途的取消底层 Call
+         */
+        public void cancel() {
+            Call current;
+            boolean wasQueued;
+            synchronized (lock) {
+                if (state == DONE) {
+                    return;
+                }
+                current = call;
+                wasQueued = state == QUEUED && queues.get(priority).remove(this);
+                if (wasQueued) {
+                    state = DONE;
+                }
+            }
+            canceledCount.incrementAndGet();
+            current.cancel();
+            if (wasQueued) {
+                callback.onFailure(current, new IOException("Canceled"));
+            }
+        }
+
+        /**
+         * 提升优先级，如后台预加载的歌曲被用户点开；只升不降
+         */
+        public void promote(Priority newPriority) {
+            synchronized (lock) {
+                if (state == DONE || newPriority.ordinal() >= priority.ordinal()) {
+                    return;
+                }
+                if (state == QUEUED) {
+                    queues.get(priority).remove(this);
+                    queues.get(newPriority).add(this);
+                } else {
+                    running.get(priority).remove(this);
+                    running.get(newPriority).add(this);
+                }
+                priority = newPriority;
+            }
+            pump();
+        }
+    }
+}
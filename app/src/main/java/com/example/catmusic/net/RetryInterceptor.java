@@ -0,0 +1,87 @@
+package com.example.catmusic.net;
+
+import androidx.annotation.NonNull;
+
+import com.example.catmusic.utils.LogUtil;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 幂等 GET 接口的重试拦截器。
+ * 网络异常或 5xx 响应时按 {@link RequestPolicy} 中的配置以指数退避 + 抖动重试，
+ * 受重试预算限制；同时记录每次成功尝试到收到响应头为止的耗时，作为对冲延迟的依据。
+ */
+public class RetryInterceptor implements Interceptor {
+    private static final String TAG = "RetryInterceptor";
+
+    private final RequestPolicy policy;
+
+    public RetryInterceptor(RequestPolicy policy) {
+        this.policy = policy;
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request request = chain.request();
+        RequestPolicy.Endpoint endpoint = policy.match(request);
+        if (endpoint == null) {
+            return chain.proceed(request);
+        }
+        endpoint.onRequest();
+        for (int attempt = 0; ; attempt++) {
+            long start = System.nanoTime();
+            try {
+                Response response = chain.proceed(request);
+                if (response.code() < 500) {
+                    endpoint.recordLatency((System.nanoTime() - start) / 1_000_000);
+                    return response;
+                }
+                if (!canRetry(chain, endpoint, attempt)) {
+                    endpoint.failureCount.incrementAndGet();
+                    return response;
+                }
+                response.close();
+                LogUtil.w(TAG, endpoint.apiPath + " 响应 " + response.code() + "，第 " + (attempt + 1) + " 次重试");
+            } catch (IOException e) {
+                if (!canRetry(chain, endpoint, attempt)) {
+                    endpoint.failureCount.incrementAndGet();
+                    throw e;
+                }
+                LogUtil.w(TAG, endpoint.apiPath + " 请求失败: " + e.getMessage() + "，第 " + (attempt + 1) + " 次重试");
+            }
+            sleep(endpoint.backoffMillis(attempt));
+            if (isRaceSettled(request)) {
+                // 退避期间对冲请求已经胜出
+                throw new IOException("Canceled");
+            }
+        }
+    }
+
+    private boolean canRetry(Chain chain, RequestPolicy.Endpoint endpoint, int attempt) {
+        return attempt < endpoint.maxRetries && !chain.call().isCanceled() && !isRaceSettled(chain.request())
+                && endpoint.tryAcquireRetry();
+    }
+
+    /**
+     * 作为对冲竞争中的主请求时，竞争已经结束（对冲请求胜出或调用方放弃）则不必再重试
+     */
+    private static boolean isRaceSettled(Request request) {
+        HedgingInterceptor.RaceTag tag = request.tag(HedgingInterceptor.RaceTag.class);
+        return tag != null && tag.isSettled();
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("重试等待被中断");
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.catmusic.service;
+
+import android.media.MediaPlayer;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+import com.example.catmusic.utils.LogUtil;
+
+/**
+ * 交叉淡入淡出的音量控制。
+ * 淡出的上一首和淡入的下一首同时播放，在独立的音频控制线程上按等功率曲线（cos/sin）调整两者音量，
+ * 两首歌的总响度在过渡期间保持不变，也不会因为主线程繁忙而卡顿。
+ * 进度取自淡入播放器的播放位置，暂停时过渡随之停住（不再定时更新），拖动进度越过重叠区间时立即完成。
+ * 播放器的创建、启动和释放都由 {@link MusicService} 负责（在它的播放线程上执行），这里只调整音量；
+ * 结束过渡时的音量恢复也提交到播放线程，保证排在随后的释放之前。
+ */
+final class CrossfadeEngine {
+    private static final String TAG = "CrossfadeEngine";
+    private static final long STEP_MILLIS = 25;// 音量更新间隔
+
+    /**
+     * 过渡完成时在主线程回调
+     */
+    interface Callback {
+        void onCrossfadeComplete(MediaPlayer outgoing);
+    }
+
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final Handler mainHandler;
+    private final Handler playbackHandler;
+    private final Callback callback;
+    private final Runnable stepRunnable = this::step;
+
+    // 以下字段在 lock 内访问，主线程提交释放播放器前先调用 stop 清空引用
+    private final Object lock = new Object();
+    private MediaPlayer outgoing;
+    private MediaPlayer incoming;
+    private int overlapMillis;
+    private float volumeScale = 1.0f;
+    private boolean paused;
+
+    CrossfadeEngine(Handler mainHandler, Handler playbackHandler, Callback callback) {
+        this.mainHandler = mainHandler;
+        this.playbackHandler = playbackHandler;
+        this.callback = callback;
+        thread = new HandlerThread("AudioControl", Process.THREAD_PRIORITY_AUDIO);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * 开始过渡，incoming 应已开始播放且音量为 0
+     */
+    void start(MediaPlayer outgoing, MediaPlayer incoming, int overlapMillis) {
+        synchronized (lock) {
+            this.outgoing = outgoing;
+            this.incoming = incoming;
+            this.overlapMillis = Math.max(1, overlapMillis);
+            paused = false;
+        }
+        LogUtil.d(TAG, "开始交叉淡入淡出，时长: " + overlapMillis + "ms");
+        handler.removeCallbacks(stepRunnable);
+        handler.post(stepRunnable);
+    }
+
+    boolean isFading() {
+        synchronized (lock) {
+            return incoming != null;
+        }
+    }
+
+    /**
+     * 播放暂停，停止定时更新音量，过渡停在当前位置
+     */
+    void pause() {
+        synchronized (lock) {
+            paused = true;
+        }
+        handler.removeCallbacks(stepRunnable);
+    }
+
+    /**
+     * 播放恢复，从淡入播放器的当前位置继续过渡
+     */
+    void resume() {
+        synchronized (lock) {
+            paused = false;
+            if (incoming == null) {
+                return;
+            }
+        }
+        handler.removeCallbacks(stepRunnable);
+        handler.post(stepRunnable);
+    }
+
+    /**
+     * 立即结束过渡：淡出的一首静音，淡入的一首恢复正常音量。
+     * 音量在播放线程上恢复，调用后在播放线程上提交的释放会排在它之后
+     */
+    void stop() {
+        handler.removeCallbacks(stepRunnable);
+        MediaPlayer outgoingPlayer;
+        MediaPlayer incomingPlayer;
+        float scale;
+        synchronized (lock) {
+            if (incoming == null) {
+                return;
+            }
+            outgoingPlayer = outgoing;
+            incomingPlayer = incoming;
+            scale = volumeScale;
+            outgoing = null;
+            incoming = null;
+            paused = false;
+        }
+        playbackHandler.post(() -> {
+            setVolume(outgoingPlayer, 0f);
+            setVolume(incomingPlayer, scale);
+        });
+    }
+
+    /**
+     * 音频焦点要求降低音量时整体缩放，过渡中的两首同时生效
+     */
+    void setVolumeScale(float scale) {
+        synchronized (lock) {
+            volumeScale = scale;
+        }
+        if (isFading()) {
+            handler.removeCallbacks(stepRunnable);
+            handler.post(stepRunnable);
+        }
+    }
+
+    void release() {
+        stop();
+        thread.quitSafely();
+    }
+
+    private void step() {
+        MediaPlayer finished = null;
+        boolean reschedule;
+        synchronized (lock) {
+            if (incoming == null) {
+                return;
+            }
+            float progress;
+            try {
+                progress = incoming.getCurrentPosition() / (float) overlapMillis;
+            } catch (IllegalStateException e) {
+                progress = 1f;
+            }
+            if (progress >= 1f) {
+                setVolume(outgoing, 0f);
+                setVolume(incoming, volumeScale);
+                finished = outgoing;
+                outgoing = null;
+                incoming = null;
+            } else {
+                double angle = Math.max(0f, progress) * Math.PI / 2;
+                setVolume(outgoing, (float) Math.cos(angle) * volumeScale);
+                setVolume(incoming, (float) Math.sin(angle) * volumeScale);
+            }
+            // 暂停时只应用一次音量（如音频焦点要求降低音量），恢复播放后再继续定时更新
+            reschedule = finished == null && !paused;
+        }
+        if (finished != null) {
+            MediaPlayer outgoingPlayer = finished;
+            mainHandler.post(() -> callback.onCrossfadeComplete(outgoingPlayer));
+        } else if (reschedule) {
+            handler.postDelayed(stepRunnable, STEP_MILLIS);
+        }
+    }
+
+    private static void setVolume(MediaPlayer player, float volume) {
+        if (player == null) {
+            return;
+        }
+        try {
+            player.setVolume(volume, volume);
+        } catch (IllegalStateException e) {
+            LogUtil.w(TAG, "调整音量失败: " + e.getMessage());
+        }
+    }
+}
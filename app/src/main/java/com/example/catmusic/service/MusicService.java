@@ -11,7 +11,12 @@ import android.media.MediaPlayer;
 import android.net.Uri;
 import android.os.Binder;
 import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
 import com.example.catmusic.utils.LogUtil;
 import android.widget.RemoteViews;
 
@@ -19,19 +24,31 @@ import androidx.core.app.NotificationCompat;
 
 import com.example.catmusic.R;
 import com.example.catmusic.bean.SongsList;
+import com.example.catmusic.biz.LyricRepository;
+import com.example.catmusic.biz.OfflineDownloadManager;
+import com.example.catmusic.biz.SongUrlBiz;
+import com.example.catmusic.net.AudioProxy;
+import com.example.catmusic.net.RequestScheduler;
 import com.example.catmusic.service.PlaybackState;
 import com.example.catmusic.ui.activity.PlayerActivity;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class MusicService extends Service implements MediaPlayer.OnPreparedListener, MediaPlayer.OnCompletionListener, MediaPlayer.OnErrorListener {
     private static final String TAG = "MusicService";
     private static final int NOTIFICATION_ID = 1;
     private static final String CHANNEL_ID = "music_channel";
+    private static final long PREBUFFER_DELAY_MILLIS = 3000;// 当前歌曲开始播放后稍等再预缓冲，避免与它的首次缓冲争抢带宽
+    private static final float DUCK_VOLUME = 0.2f;// 其他应用短暂占用音频焦点时的音量
+    private static final int CROSSFADE_START_TOLERANCE_MILLIS = 50;// 定时触发时距离过渡起点的允许误差
 
     // 播放模式常量
     public static final int MODE_LOOP_ALL = 0;  // 列表循环
@@ -40,14 +57,122 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
 
     private final IBinder binder = new MusicBinder();
     private MediaPlayer mediaPlayer;
-    private List<SongsList.ResultBean.SongsBean> songsList = new ArrayList<>();//播放列表
+    private final PlayQueue playQueue = new PlayQueue();//播放列表，与播放列表对话框共用
     private int currentPosition = 0;// 当前播放歌曲的索引
     private int playMode = MODE_LOOP_ALL;//播放模式
     private boolean isPaused = false;
-    
+    // 队列修改后把当前位置、已准备的下一首的位置和随机顺序换算到新位置；只有算出的下一首变化时才重新准备
+    private final PlayQueue.Listener queueListener = new PlayQueue.Listener() {
+        @Override
+        public void onInserted(int position, int count) {
+            if (playQueue.size() == count) {
+                currentPosition = 0;
+            } else if (position <= currentPosition) {
+                currentPosition += count;
+            }
+            if (nextPlayerPosition >= position) {
+                nextPlayerPosition += count;
+            }
+            shuffleEngine.onInserted(position, count);
+            onQueueEdited();
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            if (currentPosition >= position + count) {
+                currentPosition -= count;
+            } else if (currentPosition >= position) {
+                // 当前歌曲被删除，由后面的歌曲补位
+                currentPosition = Math.max(0, Math.min(position, playQueue.size() - 1));
+            }
+            if (nextPlayerPosition >= position + count) {
+                nextPlayerPosition -= count;
+            } else if (nextPlayerPosition >= position) {
+                nextPlayerPosition = -1;
+            }
+            shuffleEngine.onRemoved(position, count);
+            onQueueEdited();
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            currentPosition = movedPosition(currentPosition, fromPosition, toPosition);
+            if (nextPlayerPosition >= 0) {
+                nextPlayerPosition = movedPosition(nextPlayerPosition, fromPosition, toPosition);
+            }
+            shuffleEngine.onMoved(fromPosition, toPosition);
+            onQueueEdited();
+        }
+
+        @Override
+        public void onRemovedBatch(int[] positions) {
+            int index = Arrays.binarySearch(positions, currentPosition);
+            // 当前歌曲被删除时由后面的歌曲补位
+            int removedBefore = index >= 0 ? index : -index - 1;
+            currentPosition = Math.max(0, Math.min(currentPosition - removedBefore, playQueue.size() - 1));
+            if (nextPlayerPosition >= 0) {
+                index = Arrays.binarySearch(positions, nextPlayerPosition);
+                nextPlayerPosition = index >= 0 ? -1 : nextPlayerPosition + index + 1;
+            }
+            shuffleEngine.onRemoved(positions);
+            onQueueEdited();
+        }
+
+        @Override
+        public void onReset() {
+            shuffleEngine.invalidate();
+            onQueueEdited();
+        }
+    };
+
+    // 随机模式的播放顺序和历史，预加载、playNext 和 playPrev 使用同一个顺序
+    private final ShuffleEngine shuffleEngine = new ShuffleEngine(new Random());
+
+    // 下一首预加载：当前歌曲播放到一定进度后，提前准备后续歌曲的歌词和播放地址
+    private final Handler prefetchHandler = new Handler(Looper.getMainLooper());
+    private final Runnable prefetchUpcomingRunnable = this::prefetchUpcoming;
+    private final Runnable prebufferUpcomingRunnable = this::prebufferUpcoming;
+    private int prefetchThresholdPercent;
+    private int prefetchTrackCount;
+    private int prebufferSeconds;
+
+    // 无缝播放：提前准备好下一首的 MediaPlayer，通过 setNextMediaPlayer 衔接，避免切歌时重新缓冲
+    private boolean gaplessEnabled;
+    private MediaPlayer nextMediaPlayer;
+    private int nextPlayerPosition = -1;
+    private String nextPlayerSource;// 下一首准备时使用的地址，地址变化后需重新准备
+    private boolean nextPlayerPrepared;
+    private boolean nextPlayerChained;// 已通过 setNextMediaPlayer 挂到当前播放器上，当前歌曲结束时由系统自动开始
+
+    // 交叉淡入淡出：当前歌曲结束前 crossfadeMillis 开始播放已准备好的下一首，由 CrossfadeEngine 调整两首的音量
+    private int crossfadeMillis;
+    private CrossfadeEngine crossfadeEngine;
+    private MediaPlayer fadingOutPlayer;// 正在淡出的上一首，过渡完成后释放
+    // 到点后先采样一次当前进度，再按准确的剩余时长开始过渡
+    private final Runnable crossfadeStartRunnable = () -> sampleProgress(mediaPlayer, this::startCrossfade);
+    private float volumeScale = 1.0f;// 音频焦点要求降低音量时小于 1
+
+    // 播放线程：MediaPlayer 的调用都按提交顺序在这里执行，队列、播放模式和状态仍在主线程维护。
+    // 播放器在主线程创建，准备完成、播放完成和出错回调在主线程收到，按播放器对象判断是否仍然有效
+    private HandlerThread playbackThread;
+    private Handler playbackHandler;
+    // 待执行的加载和跳转只保留最新一个，连续切歌、拖动进度时被取代的命令不再执行
+    private final AtomicReference<LoadCommand> pendingLoad = new AtomicReference<>();
+    private final AtomicReference<SeekCommand> pendingSeek = new AtomicReference<>();
+    private final Runnable loadRunnable = this::runPendingLoad;
+    private final Runnable seekRunnable = this::runPendingSeek;
+    private int trackGeneration;// 每次换歌加一，用于丢弃旧歌曲迟到的采样和回调
+    // 最近的播放状态快照，界面读取进度、时长不再访问 MediaPlayer
+    private final AtomicReference<PlaybackSnapshot> snapshot = new AtomicReference<>(PlaybackSnapshot.IDLE);
+    // 向界面推送快照，播放中且有订阅者时才定时采样
+    private PlaybackClock playbackClock;
+
+    private AudioProxy audioProxy;
+    private OfflineDownloadManager offlineDownloads;
+
     // 添加播放状态变量
     private PlaybackState playbackState = PlaybackState.IDLE;
-    
+
     // 音频焦点管理
     private AudioManager audioManager;
     private AudioManager.OnAudioFocusChangeListener audioFocusChangeListener;
@@ -56,10 +181,10 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
     private OnPlaybackStateChange onPlaybackStateChange;
 
     public SongsList.ResultBean.SongsBean getCurrentSong() {
-        if (songsList == null || songsList.isEmpty() || currentPosition < 0 || currentPosition >= songsList.size()) {
+        if (playQueue.isEmpty() || currentPosition < 0 || currentPosition >= playQueue.size()) {
             return null;
         }
-        return songsList.get(currentPosition);
+        return playQueue.get(currentPosition);
     }
 
     public class MusicBinder extends Binder {
@@ -73,7 +198,37 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
         super.onCreate();
         LogUtil.d(TAG, "MusicService onCreate");
         createNotificationChannel();
-        initializeMediaPlayer();
+        prefetchThresholdPercent = getResources().getInteger(R.integer.next_track_prefetch_percent);
+        prefetchTrackCount = getResources().getInteger(R.integer.next_track_prefetch_count);
+        prebufferSeconds = getResources().getInteger(R.integer.next_track_prebuffer_seconds);
+        gaplessEnabled = getResources().getBoolean(R.bool.gapless_playback);
+        crossfadeMillis = getResources().getInteger(R.integer.crossfade_millis);
+        // 提前启动本地音频缓存代理
+        audioProxy = AudioProxy.getInstance(this);
+        offlineDownloads = OfflineDownloadManager.getInstance(this);
+        playQueue.addListener(queueListener);
+        playbackThread = new HandlerThread("Playback", Process.THREAD_PRIORITY_AUDIO);
+        playbackThread.start();
+        playbackHandler = new Handler(playbackThread.getLooper());
+        crossfadeEngine = new CrossfadeEngine(prefetchHandler, playbackHandler, new CrossfadeEngine.Callback() {
+            @Override
+            public void onCrossfadeComplete(MediaPlayer outgoing) {
+                if (outgoing == fadingOutPlayer) {
+                    finishCrossfade();
+                }
+            }
+        });
+        playbackClock = new PlaybackClock(prefetchHandler, new PlaybackClock.Source() {
+            @Override
+            public PlaybackSnapshot getSnapshot() {
+                return snapshot.get();
+            }
+
+            @Override
+            public void requestSample() {
+                sampleProgress(mediaPlayer, null);
+            }
+        });
         initializeAudioFocus();
     }
 
@@ -123,14 +278,23 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
     public void onDestroy() {
         LogUtil.d(TAG, "MusicService onDestroy");
         stopForeground(true);
+        prefetchHandler.removeCallbacks(prefetchUpcomingRunnable);
+        prefetchHandler.removeCallbacks(prebufferUpcomingRunnable);
+        audioProxy.cancelPrebuffer();
+        finishCrossfade();
+        crossfadeEngine.release();
+        releaseNextPlayer();
+        playbackClock.release();
         
         // 放弃音频焦点
         abandonAudioFocus();
         
-        if (mediaPlayer != null) {
-            mediaPlayer.release();
-            mediaPlayer = null;
-        }
+        pendingLoad.set(null);
+        pendingSeek.set(null);
+        releasePlayer(mediaPlayer);
+        mediaPlayer = null;
+        // 已提交的释放命令执行完后线程退出
+        playbackThread.quitSafely();
         super.onDestroy();
     }
 
@@ -182,8 +346,8 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
             RemoteViews notificationLayout = new RemoteViews(getPackageName(), R.layout.notification_small);
             
             // 设置通知内容
-            if (!songsList.isEmpty() && currentPosition < songsList.size()) {
-                SongsList.ResultBean.SongsBean currentSong = songsList.get(currentPosition);
+            if (!playQueue.isEmpty() && currentPosition < playQueue.size()) {
+                SongsList.ResultBean.SongsBean currentSong = playQueue.get(currentPosition);
                 notificationLayout.setTextViewText(R.id.notification_song_title, 
                     currentSong.getName() != null ? currentSong.getName() : "未知歌曲");
                 notificationLayout.setTextViewText(R.id.notification_song_artist, 
@@ -236,36 +400,36 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
                 switch (focusChange) {
                     case AudioManager.AUDIOFOCUS_GAIN:
                         // 重新获得音频焦点，恢复播放
-                        if (mediaPlayer != null) {
-                            mediaPlayer.setVolume(1.0f, 1.0f);
-                        }
-                        if (mediaPlayer != null && !mediaPlayer.isPlaying() && isPaused) {
-                            mediaPlayer.start();
+                        setVolumeScale(1.0f);
+                        if (mediaPlayer != null && isPaused) {
+                            runOnPlaybackThread(mediaPlayer, mediaPlayer::start);
+                            startFadingOutPlayer();
                             isPaused = false;
-                            playbackState = PlaybackState.PLAYING;
+                            setPlaybackState(PlaybackState.PLAYING);
+                            scheduleCrossfade();
                         }
                         break;
                     case AudioManager.AUDIOFOCUS_LOSS:
                         // 永久失去音频焦点，停止播放
-                        if (mediaPlayer != null && mediaPlayer.isPlaying()) {
-                            mediaPlayer.pause();
+                        if (mediaPlayer != null && playbackState == PlaybackState.PLAYING) {
+                            pausePlayer(mediaPlayer);
+                            pauseFadingOutPlayer();
                             isPaused = true;
-                            playbackState = PlaybackState.PAUSED;
+                            setPlaybackState(PlaybackState.PAUSED);
                         }
                         break;
                     case AudioManager.AUDIOFOCUS_LOSS_TRANSIENT:
                         // 暂时失去音频焦点，暂停播放
-                        if (mediaPlayer != null && mediaPlayer.isPlaying()) {
-                            mediaPlayer.pause();
+                        if (mediaPlayer != null && playbackState == PlaybackState.PLAYING) {
+                            pausePlayer(mediaPlayer);
+                            pauseFadingOutPlayer();
                             isPaused = true;
-                            playbackState = PlaybackState.PAUSED;
+                            setPlaybackState(PlaybackState.PAUSED);
                         }
                         break;
                     case AudioManager.AUDIOFOCUS_LOSS_TRANSIENT_CAN_DUCK:
                         // 暂时失去音频焦点，可以降低音量
-                        if (mediaPlayer != null) {
-                            mediaPlayer.setVolume(0.2f, 0.2f);
-                        }
+                        setVolumeScale(DUCK_VOLUME);
                         break;
                 }
             }
@@ -297,37 +461,70 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
     }
 
     /**
-     * 初始化MediaPlayer
+     * 在主线程创建播放器，回调都会回到主线程；设置数据源等操作交给播放线程
      */
-    private void initializeMediaPlayer() {
-        if (mediaPlayer == null) {
-            mediaPlayer = new MediaPlayer();
-            
-            // 设置音频流类型为音乐
-            mediaPlayer.setAudioStreamType(AudioManager.STREAM_MUSIC);
-            
-            // 设置音频属性
-            mediaPlayer.setVolume(1.0f, 1.0f);
-            
-            mediaPlayer.setOnPreparedListener(this);
-            mediaPlayer.setOnCompletionListener(this);
-            mediaPlayer.setOnErrorListener(this);
+    private MediaPlayer createMediaPlayer() {
+        MediaPlayer player = new MediaPlayer();
+        player.setOnPreparedListener(this);
+        player.setOnCompletionListener(this);
+        player.setOnErrorListener(this);
+        return player;
+    }
+
+    /**
+     * 在播放线程上设置数据源并开始异步准备
+     * @param contentUri source 是否为导入的本地歌曲 Uri，否则为文件路径或网络地址
+     */
+    private void prepareSource(MediaPlayer player, String source, boolean contentUri) throws IOException {
+        // 设置音频流类型为音乐
+        player.setAudioStreamType(AudioManager.STREAM_MUSIC);
+        if (contentUri) {
+            player.setDataSource(this, Uri.parse(source));
+        } else {
+            player.setDataSource(source);
         }
+        player.prepareAsync();
     }
 
     /**
      * 设置歌曲列表
      */
     public void setSongsList(List<SongsList.ResultBean.SongsBean> songsList) {
-        this.songsList = songsList != null ? songsList : new ArrayList<>();
-        LogUtil.d(TAG, "设置歌曲列表，共 " + this.songsList.size() + " 首歌曲");
+        playQueue.setAll(songsList);
+        LogUtil.d(TAG, "设置歌曲列表，共 " + playQueue.size() + " 首歌曲");
+    }
+
+    /**
+     * 已准备了下一首时按修改后的队列重新计算；prepareNextPlayer 在位置和地址都没变时保留原播放器，
+     * 尚未准备时等到预加载时机再准备
+     */
+    private void onQueueEdited() {
+        if (nextMediaPlayer != null) {
+            prepareNextPlayer();
+        }
+    }
+
+    /**
+     * 把 fromPosition 移到 toPosition 后，原来在 position 的条目的新位置
+     */
+    private static int movedPosition(int position, int fromPosition, int toPosition) {
+        if (position == fromPosition) {
+            return toPosition;
+        }
+        if (fromPosition < position && toPosition >= position) {
+            return position - 1;
+        }
+        if (fromPosition > position && toPosition <= position) {
+            return position + 1;
+        }
+        return position;
     }
 
     /**
      * 设置当前播放位置
      */
     public void setCurrentPosition(int position) {
-        if (position >= 0 && position < songsList.size()) {
+        if (position >= 0 && position < playQueue.size()) {
             this.currentPosition = position;
             LogUtil.d(TAG, "设置当前播放位置: " + position);
         }
@@ -337,89 +534,103 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
      * 播放音乐
      */
     public void playMusic() {
-        playbackState = PlaybackState.IDLE;
+        setPlaybackState(PlaybackState.IDLE);
+        prefetchHandler.removeCallbacks(prefetchUpcomingRunnable);
+        prefetchHandler.removeCallbacks(prebufferUpcomingRunnable);
+        // 后续歌曲可能已经变化，正在播放的歌曲由代理按需下载
+        audioProxy.cancelPrebuffer();
+        // 手动切歌时直接结束正在进行的淡入淡出
+        finishCrossfade();
         
-        if (songsList.isEmpty()) {
+        if (playQueue.isEmpty()) {
             LogUtil.e(TAG, "歌曲列表为空，无法播放");
-            playbackState = PlaybackState.ERROR;
+            setPlaybackState(PlaybackState.ERROR);
             if (onPlaybackStateChange != null) {
                 onPlaybackStateChange.onError("歌曲列表为空，无法播放");
             }
             return;
         }
 
-        if (currentPosition < 0 || currentPosition >= songsList.size()) {
+        if (currentPosition < 0 || currentPosition >= playQueue.size()) {
             LogUtil.e(TAG, "当前播放位置无效: " + currentPosition);
-            playbackState = PlaybackState.ERROR;
+            setPlaybackState(PlaybackState.ERROR);
             if (onPlaybackStateChange != null) {
                 onPlaybackStateChange.onError("当前播放位置无效: " + currentPosition);
             }
             return;
         }
 
-        SongsList.ResultBean.SongsBean song = songsList.get(currentPosition);
+        SongsList.ResultBean.SongsBean song = playQueue.get(currentPosition);
         String url = song.getUrl();
         String localAudioUri = song.getLocalAudioUri();
         boolean isLocalSong = song.isLocal() && localAudioUri != null && !localAudioUri.isEmpty();
+        // 已离线下载的歌曲优先播放本地文件，没有网络和播放地址时也能播放
+        File offlineFile = song.isLocal() ? null : offlineDownloads.getAudioFile(song.getMid());
 
-        if (!isLocalSong && (url == null || url.isEmpty())) {
+        if (!isLocalSong && offlineFile == null && (url == null || url.isEmpty())) {
             LogUtil.e(TAG, "歌曲URL为空，无法播放");
-            playbackState = PlaybackState.ERROR;
+            setPlaybackState(PlaybackState.ERROR);
             if (onPlaybackStateChange != null) {
                 onPlaybackStateChange.onError("歌曲URL为空，无法播放");
             }
             return;
         }
 
+        if (startPreparedNextPlayer()) {
+            return;
+        }
+        releaseNextPlayer();
+
+        LogUtil.d(TAG, "开始准备播放歌曲: " + song.getName());
+
+        // 请求音频焦点
+        if (!requestAudioFocus()) {
+            LogUtil.w(TAG, "无法获取音频焦点");
+        }
+
+        if (isLocalSong) {
+            loadSource(localAudioUri, true);
+        } else if (offlineFile != null) {
+            LogUtil.d(TAG, "播放离线下载的文件: " + offlineFile.getName());
+            loadSource(offlineFile.getPath(), false);
+        } else {
+            // 经本地代理播放，已缓存的部分不再重复下载
+            loadSource(audioProxy.proxyUrl(song.getMid(), url), false);
+        }
+
+        // 更新通知
+        updateNotification();
+
+        // 通知Activity播放状态变化
+        if (onPlaybackStateChange != null) {
+            onPlaybackStateChange.onSongChanged(song, currentPosition);
+        }
+    }
+
+    /**
+     * 换用新的播放器加载歌曲，旧播放器交给播放线程释放，它迟到的回调因对象不同而被忽略。
+     * 播放线程还没处理上一个加载命令时直接替换它：连续切歌只有最后一首会 setDataSource/prepareAsync
+     */
+    private void loadSource(String source, boolean contentUri) {
+        releasePlayer(mediaPlayer);
+        mediaPlayer = createMediaPlayer();
+        startNewTrack();
+        if (pendingLoad.getAndSet(new LoadCommand(mediaPlayer, source, contentUri)) == null) {
+            playbackHandler.post(loadRunnable);
+        }
+    }
+
+    // 在播放线程执行
+    private void runPendingLoad() {
+        LoadCommand command = pendingLoad.getAndSet(null);
+        if (command == null) {
+            // 已被 stopMusic 取消
+            return;
+        }
         try {
-            LogUtil.d(TAG, "开始准备播放歌曲: " + song.getName());
-            
-            // 请求音频焦点
-            if (!requestAudioFocus()) {
-                LogUtil.w(TAG, "无法获取音频焦点");
-            }
-            
-            // 重置MediaPlayer
-            if (mediaPlayer == null) {
-                initializeMediaPlayer();
-            }
-            
-            mediaPlayer.reset();
-            
-            if (isLocalSong) {
-                mediaPlayer.setDataSource(this, Uri.parse(localAudioUri));
-            } else {
-                mediaPlayer.setDataSource(url);
-            }
-            
-            // 异步准备
-            mediaPlayer.prepareAsync();
-            
-            // 更新通知
-            updateNotification();
-            
-            // 通知Activity播放状态变化
-            if (onPlaybackStateChange != null) {
-                onPlaybackStateChange.onSongChanged(song, currentPosition);
-            }
-        } catch (IOException e) {
-            LogUtil.e(TAG, "播放音乐时出错: " + e.getMessage());
-            playbackState = PlaybackState.ERROR;
-            if (onPlaybackStateChange != null) {
-                onPlaybackStateChange.onError("播放音乐时出错: " + e.getMessage());
-            }
-        } catch (IllegalStateException e) {
-            LogUtil.e(TAG, "MediaPlayer状态错误: " + e.getMessage());
-            playbackState = PlaybackState.ERROR;
-            if (onPlaybackStateChange != null) {
-                onPlaybackStateChange.onError("MediaPlayer状态错误: " + e.getMessage());
-            }
-        } catch (Exception e) {
-            LogUtil.e(TAG, "未知错误: " + e.getMessage());
-            playbackState = PlaybackState.ERROR;
-            if (onPlaybackStateChange != null) {
-                onPlaybackStateChange.onError("未知错误: " + e.getMessage());
-            }
+            prepareSource(command.player, command.source, command.contentUri);
+        } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+            reportPlayerFailure(command.player, e);
         }
     }
 
@@ -427,27 +638,23 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
      * 暂停音乐
      */
     public void pauseMusic() {
-        try {
-            if (mediaPlayer != null && mediaPlayer.isPlaying()) {
-                mediaPlayer.pause();
-                isPaused = true;
-                playbackState = PlaybackState.PAUSED;
-                LogUtil.d(TAG, "音乐已暂停");
-                
-                // 更新通知
-                updateNotification();
-                
-                // 通知Activity播放状态变化
+        if (mediaPlayer != null && playbackState == PlaybackState.PLAYING) {
+            pausePlayer(mediaPlayer);
+            pauseFadingOutPlayer();
+            isPaused = true;
+            setPlaybackState(PlaybackState.PAUSED);
+            prefetchHandler.removeCallbacks(prefetchUpcomingRunnable);
+            prefetchHandler.removeCallbacks(prebufferUpcomingRunnable);
+            prefetchHandler.removeCallbacks(crossfadeStartRunnable);
+            LogUtil.d(TAG, "音乐已暂停");
+            
+            // 更新通知
+            updateNotification();
+            
+            // 通知Activity播放状态变化
             if (onPlaybackStateChange != null) {
                 onPlaybackStateChange.onPlaybackPause();
             }
-            }
-        } catch (IllegalStateException e) {
-            LogUtil.e(TAG, "暂停音乐时出错: " + e.getMessage());
-            playbackState = PlaybackState.ERROR;
-            if (onPlaybackStateChange != null) {
-                onPlaybackStateChange.onError("暂停音乐时出错: " + e.getMessage());
-            }
         }
     }
 
@@ -455,26 +662,21 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
      * 继续播放音乐
      */
     public void resumeMusic() {
-        try {
-            if (mediaPlayer != null && !mediaPlayer.isPlaying()) {
-                mediaPlayer.start();
-                isPaused = false;
-                playbackState = PlaybackState.PLAYING;
-                LogUtil.d(TAG, "音乐继续播放");
-                
-                // 更新通知
-                updateNotification();
-                
-                // 通知Activity播放状态变化
-                if (onPlaybackStateChange != null) {
-                    onPlaybackStateChange.onPlay();
-                }
-            }
-        } catch (IllegalStateException e) {
-            LogUtil.e(TAG, "继续播放音乐时出错: " + e.getMessage());
-            playbackState = PlaybackState.ERROR;
+        if (mediaPlayer != null && playbackState == PlaybackState.PAUSED) {
+            runOnPlaybackThread(mediaPlayer, mediaPlayer::start);
+            startFadingOutPlayer();
+            isPaused = false;
+            setPlaybackState(PlaybackState.PLAYING);
+            scheduleUpcomingPrefetch();
+            scheduleCrossfade();
+            LogUtil.d(TAG, "音乐继续播放");
+            
+            // 更新通知
+            updateNotification();
+            
+            // 通知Activity播放状态变化
             if (onPlaybackStateChange != null) {
-                onPlaybackStateChange.onError("继续播放音乐时出错: " + e.getMessage());
+                onPlaybackStateChange.onPlay();
             }
         }
     }
@@ -483,27 +685,26 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
      * 停止音乐
      */
     public void stopMusic() {
-        try {
-            if (mediaPlayer != null) {
-                mediaPlayer.stop();
-                mediaPlayer.reset();
-                isPaused = false;
-                playbackState = PlaybackState.STOPPED;
-                LogUtil.d(TAG, "音乐已停止");
-                
-                // 更新通知
-                updateNotification();
-                
-                // 通知Activity播放状态变化
-                if (onPlaybackStateChange != null) {
-                    onPlaybackStateChange.onStop();
-                }
-            }
-        } catch (IllegalStateException e) {
-            LogUtil.e(TAG, "停止音乐时出错: " + e.getMessage());
-            playbackState = PlaybackState.ERROR;
+        if (mediaPlayer != null) {
+            prefetchHandler.removeCallbacks(prefetchUpcomingRunnable);
+            prefetchHandler.removeCallbacks(prebufferUpcomingRunnable);
+            finishCrossfade();
+            releaseNextPlayer();
+            // 还没开始的加载不再执行，停止后的播放器直接释放，下次播放时重新创建
+            pendingLoad.set(null);
+            pendingSeek.set(null);
+            releasePlayer(mediaPlayer);
+            mediaPlayer = null;
+            isPaused = false;
+            setPlaybackState(PlaybackState.STOPPED);
+            LogUtil.d(TAG, "音乐已停止");
+            
+            // 更新通知
+            updateNotification();
+            
+            // 通知Activity播放状态变化
             if (onPlaybackStateChange != null) {
-                onPlaybackStateChange.onError("停止音乐时出错: " + e.getMessage());
+                onPlaybackStateChange.onStop();
             }
         }
     }
@@ -512,7 +713,7 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
      * 播放下一首
      */
     public void playNext() {
-        if (songsList.isEmpty()) {
+        if (playQueue.isEmpty()) {
             LogUtil.w(TAG, "歌曲列表为空，无法播放下一首");
             if (onPlaybackStateChange != null) {
                 onPlaybackStateChange.onError("歌曲列表为空，无法播放下一首");
@@ -525,7 +726,7 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
             
             switch (playMode) {
                 case MODE_LOOP_ALL:
-                    currentPosition = (currentPosition + 1) % songsList.size();
+                    currentPosition = (currentPosition + 1) % playQueue.size();
                     LogUtil.d(TAG, "列表循环模式，下一首位置: " + currentPosition);
                     break;
                 case MODE_LOOP_ONE:
@@ -533,12 +734,11 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
                     LogUtil.d(TAG, "单曲循环模式，保持当前位置: " + currentPosition);
                     break;
                 case MODE_RANDOM:
-                    int newPosition = new Random().nextInt(songsList.size());
-                    currentPosition = newPosition;
-                    LogUtil.d(TAG, "随机播放模式，随机位置: " + currentPosition);
+                    currentPosition = shuffleEngine.next(playQueue.size(), currentPosition);
+                    LogUtil.d(TAG, "随机播放模式，下一首位置: " + currentPosition);
                     break;
                 default:
-                    currentPosition = (currentPosition + 1) % songsList.size();
+                    currentPosition = (currentPosition + 1) % playQueue.size();
                     LogUtil.d(TAG, "默认列表循环模式，下一首位置: " + currentPosition);
                     break;
             }
@@ -551,7 +751,7 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
             } else {
                 // 位置未改变，仍然需要通知界面更新
                 if (onPlaybackStateChange != null) {
-                    onPlaybackStateChange.onSongChanged(songsList.get(currentPosition), currentPosition);
+                    onPlaybackStateChange.onSongChanged(playQueue.get(currentPosition), currentPosition);
                 }
             }
         } catch (Exception e) {
@@ -566,7 +766,7 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
      * 播放上一首
      */
     public void playPrev() {
-        if (songsList.isEmpty()) {
+        if (playQueue.isEmpty()) {
             LogUtil.w(TAG, "歌曲列表为空，无法播放上一首");
             if (onPlaybackStateChange != null) {
                 onPlaybackStateChange.onError("歌曲列表为空，无法播放上一首");
@@ -579,7 +779,7 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
             
             switch (playMode) {
                 case MODE_LOOP_ALL:
-                    currentPosition = (currentPosition - 1 + songsList.size()) % songsList.size();
+                    currentPosition = (currentPosition - 1 + playQueue.size()) % playQueue.size();
                     LogUtil.d(TAG, "列表循环模式，上一首位置: " + currentPosition);
                     break;
                 case MODE_LOOP_ONE:
@@ -587,12 +787,19 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
                     LogUtil.d(TAG, "单曲循环模式，保持当前位置: " + currentPosition);
                     break;
                 case MODE_RANDOM:
-                    int newPosition = new Random().nextInt(songsList.size());
-                    currentPosition = newPosition;
-                    LogUtil.d(TAG, "随机播放模式，随机位置: " + currentPosition);
+                    int newPosition = shuffleEngine.previous(playQueue.size(), currentPosition);
+                    if (newPosition >= 0) {
+                        currentPosition = newPosition;
+                        LogUtil.d(TAG, "随机播放模式，回到上一首: " + currentPosition);
+                    } else {
+                        // 没有更早的播放记录，从头播放当前歌曲
+                        LogUtil.d(TAG, "随机播放模式，没有更早的播放记录，重新播放当前歌曲");
+                        playMusic();
+                        return;
+                    }
                     break;
                 default:
-                    currentPosition = (currentPosition - 1 + songsList.size()) % songsList.size();
+                    currentPosition = (currentPosition - 1 + playQueue.size()) % playQueue.size();
                     LogUtil.d(TAG, "默认列表循环模式，上一首位置: " + currentPosition);
                     break;
             }
@@ -605,7 +812,7 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
             } else {
                 // 位置未改变，仍然需要通知界面更新
                 if (onPlaybackStateChange != null) {
-                    onPlaybackStateChange.onSongChanged(songsList.get(currentPosition), currentPosition);
+                    onPlaybackStateChange.onSongChanged(playQueue.get(currentPosition), currentPosition);
                 }
             }
         } catch (Exception e) {
@@ -620,12 +827,32 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
      * 跳转到指定位置播放
      */
     public void seekTo(int position) {
-        if (mediaPlayer != null) {
-            try {
-                mediaPlayer.seekTo(position);
-            } catch (IllegalStateException e) {
-                LogUtil.w(TAG, "跳转播放位置失败: " + e.getMessage());
-            }
+        if (mediaPlayer == null) {
+            return;
+        }
+        // 快照先按目标位置更新，界面立即跟上；拖动过程中连续的跳转只执行最后一个
+        long now = SystemClock.elapsedRealtime();
+        snapshot.updateAndGet(s -> s.withProgress(position, s.getDuration(), now));
+        playbackClock.onSnapshotChanged();
+        if (pendingSeek.getAndSet(new SeekCommand(mediaPlayer, position)) == null) {
+            playbackHandler.post(seekRunnable);
+        }
+        if (isPlaying()) {
+            scheduleUpcomingPrefetch();
+            scheduleCrossfade();
+        }
+    }
+
+    // 在播放线程执行
+    private void runPendingSeek() {
+        SeekCommand command = pendingSeek.getAndSet(null);
+        if (command == null) {
+            return;
+        }
+        try {
+            command.player.seekTo(command.position);
+        } catch (IllegalStateException e) {
+            LogUtil.w(TAG, "跳转播放位置失败: " + e.getMessage());
         }
     }
 
@@ -635,6 +862,13 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
     public void setPlayMode(int mode) {
         if (mode >= MODE_LOOP_ALL && mode <= MODE_RANDOM) {
             this.playMode = mode;
+            // 以当前歌曲为起点重新洗牌
+            shuffleEngine.invalidate();
+            // 下一首随模式改变，到预加载时机再按新模式准备
+            releaseNextPlayer();
+            if (isPlaying()) {
+                scheduleUpcomingPrefetch();
+            }
             LogUtil.d(TAG, "设置播放模式: " + mode);
         }
     }
@@ -650,34 +884,35 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
      * 获取当前播放进度
      */
     public int getCurrentProgress() {
-        if (mediaPlayer != null) {
-            return mediaPlayer.getCurrentPosition();
-        }
-        return 0;
+        return snapshot.get().getProgress();
     }
 
     /**
-     * 获取歌曲总时长
+     * 获取歌曲总时长，未知时为 0
      */
     public int getDuration() {
-        if (mediaPlayer != null) {
-            try {
-                int duration = mediaPlayer.getDuration();
-                if (duration > 0) {
-                    return duration;
-                }
-            } catch (IllegalStateException e) {
-                LogUtil.w(TAG, "获取播放时长失败: " + e.getMessage());
-            }
-        }
-        return 0;
+        return snapshot.get().getDuration();
     }
 
     /**
      * 判断是否正在播放
      */
     public boolean isPlaying() {
-        return mediaPlayer != null && mediaPlayer.isPlaying();
+        return playbackState == PlaybackState.PLAYING;
+    }
+
+    /**
+     * 当前播放状态的快照，可在任意线程读取
+     */
+    public PlaybackSnapshot getPlaybackSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * 播放进度时钟，界面按需要的间隔订阅快照，代替自己轮询 {@link #getCurrentProgress()}
+     */
+    public PlaybackClock getPlaybackClock() {
+        return playbackClock;
     }
 
     /**
@@ -688,10 +923,17 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
     }
 
     /**
-     * 获取歌曲列表
+     * 获取歌曲列表的副本，需要跟随修改时使用 {@link #getPlayQueue()}
      */
     public List<SongsList.ResultBean.SongsBean> getSongsList() {
-        return songsList;
+        return playQueue.toList();
+    }
+
+    /**
+     * 播放队列，界面可以注册 {@link PlayQueue.Listener} 跟随变化；修改请通过本服务的方法进行
+     */
+    public PlayQueue getPlayQueue() {
+        return playQueue;
     }
 
     /**
@@ -707,33 +949,84 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
      * @return 是否移除成功；若移除后列表为空会停止播放
      */
     public boolean removeSongAt(int index) {
-        if (songsList.isEmpty() || index < 0 || index >= songsList.size()) {
+        if (index < 0 || index >= playQueue.size()) {
             return false;
         }
-        songsList.remove(index);
-        if (songsList.isEmpty()) {
+        boolean removingCurrent = index == currentPosition;
+        // 当前位置由 queueListener 调整
+        playQueue.removeAt(index);
+        if (playQueue.isEmpty()) {
             stopMusic();
             if (onPlaybackStateChange != null) {
                 onPlaybackStateChange.onError("播放列表已清空");
             }
             return true;
         }
-        if (currentPosition >= songsList.size()) {
-            currentPosition = songsList.size() - 1;
-        } else if (index < currentPosition) {
-            currentPosition--;
-        }
-        if (index == currentPosition) {
+        if (removingCurrent) {
             playMusic();
         }
         return true;
     }
 
+    /**
+     * 把歌曲插到当前歌曲之后；队列中已有这首歌时移动过去，不重复加入
+     */
+    public void insertNext(SongsList.ResultBean.SongsBean song) {
+        if (song == null) {
+            return;
+        }
+        if (playQueue.isEmpty()) {
+            playQueue.add(song);
+            return;
+        }
+        PlayQueue.Entry existing = playQueue.findFirstByMid(song.getMid());
+        if (existing == null) {
+            playQueue.insert(currentPosition + 1, song);
+            return;
+        }
+        int from = playQueue.indexOf(existing);
+        if (from == currentPosition) {
+            return;
+        }
+        // 从当前歌曲之前移出时当前位置会前移一位
+        playQueue.move(from, from < currentPosition ? currentPosition : currentPosition + 1);
+    }
+
+    /**
+     * 调整歌曲在播放列表中的位置
+     */
+    public void moveSong(int fromPosition, int toPosition) {
+        int size = playQueue.size();
+        if (fromPosition < 0 || fromPosition >= size || toPosition < 0 || toPosition >= size) {
+            return;
+        }
+        playQueue.move(fromPosition, toPosition);
+    }
+
+    /**
+     * 去掉播放列表中重复的歌曲，每首保留最靠前的一个；正在播放的歌曲被去掉时继续播放保留的那一个
+     * @return 去掉的歌曲数
+     */
+    public int removeDuplicateSongs() {
+        SongsList.ResultBean.SongsBean current = getCurrentSong();
+        PlayQueue.Entry currentEntry = playQueue.isEmpty() ? null : playQueue.getEntry(currentPosition);
+        int removed = playQueue.removeDuplicates();
+        if (removed > 0 && currentEntry != null && playQueue.indexOf(currentEntry) < 0) {
+            // 当前位置已由 queueListener 调整到补位的歌曲，改为指向保留的同一首歌，不打断播放
+            PlayQueue.Entry kept = playQueue.findFirstByMid(current.getMid());
+            if (kept != null) {
+                currentPosition = playQueue.indexOf(kept);
+                onQueueEdited();
+            }
+        }
+        return removed;
+    }
+
     /**
      * 清空播放列表并停止播放
      */
     public void clearPlaylist() {
-        songsList.clear();
+        playQueue.clear();
         currentPosition = 0;
         stopMusic();
         if (onPlaybackStateChange != null) {
@@ -746,7 +1039,7 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
      * @param index 目标索引
      */
     public void playAt(int index) {
-        if (songsList.isEmpty() || index < 0 || index >= songsList.size()) {
+        if (playQueue.isEmpty() || index < 0 || index >= playQueue.size()) {
             return;
         }
         currentPosition = index;
@@ -772,14 +1065,521 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
         }
     }
 
+    /**
+     * 获取接下来将要播放的歌曲位置，按播放模式计算：
+     * 列表循环为后续若干首，单曲循环为当前歌曲，随机模式为洗牌顺序中的后续若干首
+     * @param count 最多返回的数量
+     */
+    public List<Integer> getUpcomingPositions(int count) {
+        List<Integer> positions = new ArrayList<>();
+        int size = playQueue.size();
+        if (size == 0 || count <= 0 || currentPosition < 0 || currentPosition >= size) {
+            return positions;
+        }
+        switch (playMode) {
+            case MODE_LOOP_ONE:
+                positions.add(currentPosition);
+                break;
+            case MODE_RANDOM:
+                positions.addAll(shuffleEngine.peekUpcoming(size, currentPosition, count));
+                break;
+            case MODE_LOOP_ALL:
+            default:
+                for (int i = 1; i <= Math.min(count, size); i++) {
+                    positions.add((currentPosition + i) % size);
+                }
+                break;
+        }
+        return positions;
+    }
+
+    /**
+     * 在当前歌曲播放到 {@link #prefetchThresholdPercent}% 时触发预加载，已过阈值则立即触发；
+     * 后续歌曲开头的预缓冲在开始播放后不久就进行，提前切歌也能用上
+     */
+    private void scheduleUpcomingPrefetch() {
+        prefetchHandler.removeCallbacks(prefetchUpcomingRunnable);
+        prefetchHandler.removeCallbacks(prebufferUpcomingRunnable);
+        prefetchHandler.postDelayed(prebufferUpcomingRunnable, PREBUFFER_DELAY_MILLIS);
+        int duration = getDuration();
+        if (duration <= 0) {
+            return;
+        }
+        long thresholdMillis = (long) duration * prefetchThresholdPercent / 100;
+        long delay = Math.max(0, thresholdMillis - getCurrentProgress());
+        prefetchHandler.postDelayed(prefetchUpcomingRunnable, delay);
+    }
+
+    /**
+     * 预加载后续歌曲的歌词，并刷新它们的播放地址（缓存有效时不会发起请求），均以后台优先级发出
+     */
+    private void prefetchUpcoming() {
+        List<String> mids = new ArrayList<>();
+        LyricRepository lyricRepository = LyricRepository.getInstance(this);
+        for (int position : getUpcomingPositions(prefetchTrackCount)) {
+            SongsList.ResultBean.SongsBean song = playQueue.get(position);
+            if (song == null || song.isLocal() || song.getMid() == null || song.getMid().isEmpty()) {
+                continue;
+            }
+            lyricRepository.prefetch(song.getMid());
+            mids.add(song.getMid());
+        }
+        // 下一首的地址已在缓存中时现在就可以准备，否则等地址刷新后再准备
+        prepareNextPlayer();
+        if (mids.isEmpty()) {
+            return;
+        }
+        LogUtil.d(TAG, "预加载后续歌曲 " + mids.size() + " 首");
+        SongUrlBiz.getInstance(this).resolve(mids, RequestScheduler.Priority.BACKGROUND, new SongUrlBiz.SongUrlCallback() {
+            @Override
+            public void onUrlsResolved(Map<String, String> urlMap) {
+                // 播放列表与界面共享，统一在主线程修改
+                prefetchHandler.post(() -> applyPrefetchedUrls(urlMap));
+            }
+
+            @Override
+            public void onComplete(Exception error) {
+                if (error != null) {
+                    LogUtil.w(TAG, "预加载歌曲URL失败: " + error.getMessage());
+                }
+            }
+        });
+    }
+
+    private void applyPrefetchedUrls(Map<String, String> urlMap) {
+        for (Map.Entry<String, String> item : urlMap.entrySet()) {
+            for (PlayQueue.Entry entry : playQueue.findAllByMid(item.getKey())) {
+                SongsList.ResultBean.SongsBean song = entry.getSong();
+                if (item.getValue() != null && !item.getValue().equals(song.getUrl())) {
+                    song.setUrl(item.getValue());
+                }
+            }
+        }
+        prepareNextPlayer();
+        prebufferUpcoming();
+    }
+
+    /**
+     * 把后续一两首在线歌曲开头约 {@link #prebufferSeconds} 秒的数据预先下载到音频缓存，
+     * 切歌后经代理播放时开头直接从本地读取。没有有效地址的歌曲等预加载刷新地址后再处理。
+     */
+    private void prebufferUpcoming() {
+        for (int position : getUpcomingPositions(prefetchTrackCount)) {
+            if (position == currentPosition) {
+                continue;
+            }
+            SongsList.ResultBean.SongsBean song = playQueue.get(position);
+            if (song == null || song.isLocal() || offlineDownloads.isDownloaded(song.getMid())) {
+                continue;
+            }
+            String url = SongUrlBiz.getInstance(this).getCachedUrl(song.getMid());
+            if (url != null) {
+                audioProxy.prebuffer(song.getMid(), url, song.getDuration(), prebufferSeconds);
+            }
+        }
+    }
+
+    /**
+     * 开启或关闭无缝播放，默认值见 {@code R.bool.gapless_playback}
+     */
+    public void setGaplessEnabled(boolean enabled) {
+        gaplessEnabled = enabled;
+        if (!enabled) {
+            releaseNextPlayer();
+        } else if (isPlaying()) {
+            prepareNextPlayer();
+        }
+    }
+
+    /**
+     * 为即将播放的歌曲准备第二个 MediaPlayer，准备好后挂到当前播放器的 setNextMediaPlayer 上。
+     * 列表循环为下一首，随机模式为洗牌顺序中的下一首；单曲循环不需要准备。
+     * 下一首没有有效地址（缺失或已过期）时不准备，播放完成后按原流程加载。
+     */
+    private void prepareNextPlayer() {
+        if ((!gaplessEnabled && crossfadeMillis <= 0) || mediaPlayer == null
+                || (playbackState != PlaybackState.PLAYING && playbackState != PlaybackState.PAUSED)) {
+            return;
+        }
+        List<Integer> upcoming = playMode == MODE_LOOP_ONE ? Collections.emptyList() : getUpcomingPositions(1);
+        int position = upcoming.isEmpty() ? -1 : upcoming.get(0);
+        if (position < 0 || position == currentPosition) {
+            releaseNextPlayer();
+            return;
+        }
+        SongsList.ResultBean.SongsBean song = playQueue.get(position);
+        String source = getPlayableSource(song);
+        if (source == null) {
+            LogUtil.d(TAG, "下一首没有有效的播放地址，暂不准备: " + (song != null ? song.getName() : null));
+            releaseNextPlayer();
+            return;
+        }
+        if (nextMediaPlayer != null && position == nextPlayerPosition && source.equals(nextPlayerSource)) {
+            return;
+        }
+        releaseNextPlayer();
+        MediaPlayer player = createMediaPlayer();
+        nextMediaPlayer = player;
+        nextPlayerPosition = position;
+        nextPlayerSource = source;
+        boolean contentUri = song.isLocal();
+        String dataSource = contentUri ? source : audioProxy.proxyUrl(song.getMid(), source);
+        runOnPlaybackThread(player, () -> prepareSource(player, dataSource, contentUri));
+        LogUtil.d(TAG, "开始准备下一首: " + song.getName());
+    }
+
+    /**
+     * 可直接交给 MediaPlayer 的地址：本地歌曲为导入的 Uri，已离线下载的歌曲为本地文件路径，其余为缓存中仍然有效的播放地址
+     */
+    private String getPlayableSource(SongsList.ResultBean.SongsBean song) {
+        if (song == null) {
+            return null;
+        }
+        if (song.isLocal()) {
+            String localAudioUri = song.getLocalAudioUri();
+            return localAudioUri != null && !localAudioUri.isEmpty() ? localAudioUri : null;
+        }
+        File offlineFile = offlineDownloads.getAudioFile(song.getMid());
+        if (offlineFile != null) {
+            return offlineFile.getPath();
+        }
+        return SongUrlBiz.getInstance(this).getCachedUrl(song.getMid());
+    }
+
+    /**
+     * 下一首准备完成，与当前播放器衔接
+     */
+    private void chainNextPlayer() {
+        if (isCrossfadeApplicable()) {
+            scheduleCrossfade();
+            return;
+        }
+        MediaPlayer current = mediaPlayer;
+        MediaPlayer next = nextMediaPlayer;
+        // 衔接失败按下一首出错处理
+        runOnPlaybackThread(next, () -> current.setNextMediaPlayer(next));
+        nextPlayerChained = true;
+        LogUtil.d(TAG, "下一首已就绪，位置: " + nextPlayerPosition);
+    }
+
+    /**
+     * 用户切到的正是已准备好的下一首时直接切换播放器，不再重新缓冲
+     * @return 是否已切换
+     */
+    private boolean startPreparedNextPlayer() {
+        if (nextMediaPlayer == null || !nextPlayerPrepared || currentPosition != nextPlayerPosition
+                || !nextPlayerSource.equals(getPlayableSource(playQueue.get(currentPosition)))) {
+            return false;
+        }
+        if (!requestAudioFocus()) {
+            LogUtil.w(TAG, "无法获取音频焦点");
+        }
+        runOnPlaybackThread(nextMediaPlayer, nextMediaPlayer::start);
+        rotateToNextPlayer();
+        return true;
+    }
+
+    /**
+     * 把已经开始播放的下一首播放器换为当前播放器，释放旧播放器
+     */
+    private void rotateToNextPlayer() {
+        MediaPlayer finished = mediaPlayer;
+        mediaPlayer = nextMediaPlayer;
+        currentPosition = nextPlayerPosition;
+        nextMediaPlayer = null;
+        nextPlayerPosition = -1;
+        nextPlayerSource = null;
+        nextPlayerPrepared = false;
+        nextPlayerChained = false;
+        if (finished != fadingOutPlayer) {
+            releasePlayer(finished);
+        }
+        isPaused = false;
+        startNewTrack();
+        setPlaybackState(PlaybackState.PLAYING);
+        LogUtil.d(TAG, "无缝切换到下一首，位置: " + currentPosition);
+        updateNotification();
+        // 新歌曲的时长采样后再安排预加载
+        int generation = trackGeneration;
+        sampleProgress(mediaPlayer, () -> onTrackStarted(generation));
+        if (onPlaybackStateChange != null) {
+            onPlaybackStateChange.onSongChanged(playQueue.get(currentPosition), currentPosition);
+            onPlaybackStateChange.onPlay();
+        }
+    }
+
+    /**
+     * 设置交叉淡入淡出的重叠时长，0 表示关闭，默认值见 {@code R.integer.crossfade_millis}
+     */
+    public void setCrossfadeMillis(int millis) {
+        crossfadeMillis = Math.max(0, millis);
+        // 衔接方式改变，下一首按新方式重新准备
+        releaseNextPlayer();
+        if (isPlaying()) {
+            prepareNextPlayer();
+        }
+    }
+
+    /**
+     * 单曲循环不淡入淡出；歌曲短于两倍重叠时长时也不淡入淡出，按无缝方式衔接
+     */
+    private boolean isCrossfadeApplicable() {
+        return crossfadeMillis > 0 && playMode != MODE_LOOP_ONE && getDuration() > crossfadeMillis * 2;
+    }
+
+    /**
+     * 在当前歌曲结束前 {@link #crossfadeMillis} 开始交叉淡入淡出，暂停、拖动进度后按新的位置重新计算
+     */
+    private void scheduleCrossfade() {
+        prefetchHandler.removeCallbacks(crossfadeStartRunnable);
+        if (nextMediaPlayer == null || !nextPlayerPrepared || fadingOutPlayer != null
+                || playbackState != PlaybackState.PLAYING || !isCrossfadeApplicable()) {
+            return;
+        }
+        long delay = Math.max(0, getDuration() - crossfadeMillis - getCurrentProgress());
+        prefetchHandler.postDelayed(crossfadeStartRunnable, delay);
+    }
+
+    /**
+     * 以 0 音量启动下一首并立即把它换为当前播放器，原播放器在淡出完成后释放
+     */
+    private void startCrossfade() {
+        if (nextMediaPlayer == null || !nextPlayerPrepared || fadingOutPlayer != null
+                || playbackState != PlaybackState.PLAYING || !isCrossfadeApplicable()) {
+            return;
+        }
+        int remaining = getDuration() - getCurrentProgress();
+        if (remaining > crossfadeMillis + CROSSFADE_START_TOLERANCE_MILLIS) {
+            // 缓冲卡顿等导致定时提前，按当前进度重新计算
+            scheduleCrossfade();
+            return;
+        }
+        MediaPlayer outgoing = mediaPlayer;
+        MediaPlayer incoming = nextMediaPlayer;
+        runOnPlaybackThread(incoming, () -> {
+            incoming.setVolume(0f, 0f);
+            incoming.start();
+        });
+        fadingOutPlayer = outgoing;
+        // 上一首剩余不足重叠时长时按剩余时长过渡，保证它在结束前降到静音
+        crossfadeEngine.start(outgoing, incoming, Math.max(1, Math.min(crossfadeMillis, remaining)));
+        rotateToNextPlayer();
+    }
+
+    /**
+     * 立即结束交叉淡入淡出：当前歌曲恢复正常音量，释放淡出的上一首
+     */
+    private void finishCrossfade() {
+        prefetchHandler.removeCallbacks(crossfadeStartRunnable);
+        if (fadingOutPlayer == null) {
+            return;
+        }
+        crossfadeEngine.stop();
+        releasePlayer(fadingOutPlayer);
+        fadingOutPlayer = null;
+        LogUtil.d(TAG, "交叉淡入淡出结束");
+    }
+
+    private void pauseFadingOutPlayer() {
+        if (fadingOutPlayer == null) {
+            return;
+        }
+        crossfadeEngine.pause();
+        // 出错时由 onPlayerCommandFailed 结束过渡
+        runOnPlaybackThread(fadingOutPlayer, fadingOutPlayer::pause);
+    }
+
+    private void startFadingOutPlayer() {
+        if (fadingOutPlayer == null) {
+            return;
+        }
+        runOnPlaybackThread(fadingOutPlayer, fadingOutPlayer::start);
+        crossfadeEngine.resume();
+    }
+
+    /**
+     * 音频焦点要求降低音量或恢复时调用，淡入淡出过程中由 CrossfadeEngine 同时作用于两首
+     */
+    private void setVolumeScale(float scale) {
+        volumeScale = scale;
+        crossfadeEngine.setVolumeScale(scale);
+        if (fadingOutPlayer == null && mediaPlayer != null) {
+            setPlayerVolume(mediaPlayer, scale);
+        }
+        if (nextMediaPlayer != null && nextPlayerPrepared) {
+            setPlayerVolume(nextMediaPlayer, scale);
+        }
+    }
+
+    /**
+     * 放弃已准备的下一首，如播放列表、播放模式变化或切到了其他歌曲
+     */
+    private void releaseNextPlayer() {
+        prefetchHandler.removeCallbacks(crossfadeStartRunnable);
+        if (nextMediaPlayer == null) {
+            return;
+        }
+        MediaPlayer current = mediaPlayer;
+        MediaPlayer next = nextMediaPlayer;
+        playbackHandler.post(() -> {
+            if (current != null) {
+                try {
+                    current.setNextMediaPlayer(null);
+                } catch (IllegalStateException ignored) {
+                    // 当前播放器未处于可设置的状态，稍后会被释放
+                }
+            }
+            next.release();
+        });
+        nextMediaPlayer = null;
+        nextPlayerPosition = -1;
+        nextPlayerSource = null;
+        nextPlayerPrepared = false;
+        nextPlayerChained = false;
+    }
+
+    /**
+     * 在播放线程上按提交顺序执行对 player 的操作，出错时回到主线程交给 {@link #onPlayerCommandFailed}
+     */
+    private void runOnPlaybackThread(MediaPlayer player, PlayerCommand command) {
+        playbackHandler.post(() -> {
+            try {
+                command.run();
+            } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+                reportPlayerFailure(player, e);
+            }
+        });
+    }
+
+    private void reportPlayerFailure(MediaPlayer player, Exception e) {
+        String message = e.getMessage();
+        prefetchHandler.post(() -> onPlayerCommandFailed(player, message));
+    }
+
+    /**
+     * 播放线程上的操作失败；播放器已被替换或释放时不再处理
+     */
+    private void onPlayerCommandFailed(MediaPlayer player, String message) {
+        if (player == null) {
+            return;
+        }
+        if (player == fadingOutPlayer) {
+            LogUtil.w(TAG, "淡出的上一首操作失败: " + message);
+            finishCrossfade();
+        } else if (player == nextMediaPlayer) {
+            LogUtil.w(TAG, "准备下一首失败: " + message);
+            releaseNextPlayer();
+        } else if (player == mediaPlayer) {
+            LogUtil.e(TAG, "播放音乐时出错: " + message);
+            setPlaybackState(PlaybackState.ERROR);
+            if (onPlaybackStateChange != null) {
+                onPlaybackStateChange.onError("播放音乐时出错: " + message);
+            }
+        }
+    }
+
+    private void pausePlayer(MediaPlayer player) {
+        runOnPlaybackThread(player, player::pause);
+        // 暂停后的进度以播放器为准，采样后再推送一次
+        sampleProgress(player, playbackClock::onSnapshotChanged);
+    }
+
+    private void setPlayerVolume(MediaPlayer player, float volume) {
+        runOnPlaybackThread(player, () -> player.setVolume(volume, volume));
+    }
+
+    private void releasePlayer(MediaPlayer player) {
+        if (player != null) {
+            playbackHandler.post(player::release);
+        }
+    }
+
+    /**
+     * 更新播放状态并发布新的快照，播放进度时钟随之启动或停止
+     */
+    private void setPlaybackState(PlaybackState state) {
+        playbackState = state;
+        snapshot.updateAndGet(s -> s.withState(state));
+        playbackClock.onSnapshotChanged();
+    }
+
+    /**
+     * 换到新歌曲（重新加载或切换到已准备的下一首），进度和时长清零，旧歌曲还没完成的采样作废
+     */
+    private void startNewTrack() {
+        trackGeneration++;
+        snapshot.set(PlaybackSnapshot.newTrack(trackGeneration, playbackState));
+        pendingSeek.set(null);
+        playbackClock.onSnapshotChanged();
+    }
+
+    /**
+     * 在播放线程读取 player 的进度和时长写入快照，完成后在主线程执行 then（可为 null）。
+     * 期间换了歌或主线程又更新过快照（暂停、拖动进度）时丢弃这次结果
+     */
+    private void sampleProgress(MediaPlayer player, Runnable then) {
+        if (player == null) {
+            if (then != null) {
+                prefetchHandler.post(then);
+            }
+            return;
+        }
+        int generation = trackGeneration;
+        long requestedAt = SystemClock.elapsedRealtime();
+        playbackHandler.post(() -> {
+            try {
+                int progress = player.getCurrentPosition();
+                int duration = player.getDuration();
+                long now = SystemClock.elapsedRealtime();
+                snapshot.updateAndGet(s -> s.getGeneration() == generation && s.getSampledAt() <= requestedAt
+                        ? s.withProgress(progress, duration, now) : s);
+            } catch (IllegalStateException e) {
+                LogUtil.w(TAG, "读取播放进度失败: " + e.getMessage());
+            }
+            if (then != null) {
+                prefetchHandler.post(then);
+            }
+        });
+    }
+
+    /**
+     * 新歌曲开始播放且时长已采样，安排预加载和交叉淡入淡出
+     */
+    private void onTrackStarted(int generation) {
+        if (generation != trackGeneration || playbackState != PlaybackState.PLAYING) {
+            return;
+        }
+        // 时长已知，推送给订阅者
+        playbackClock.onSnapshotChanged();
+        scheduleUpcomingPrefetch();
+        scheduleCrossfade();
+    }
+
     // MediaPlayer.OnPreparedListener 实现
     @Override
     public void onPrepared(MediaPlayer mp) {
+        if (mp == nextMediaPlayer) {
+            nextPlayerPrepared = true;
+            setPlayerVolume(mp, volumeScale);
+            chainNextPlayer();
+            return;
+        }
+        if (mp != mediaPlayer) {
+            // 已被后来的切歌取代
+            return;
+        }
         LogUtil.d(TAG, "MediaPlayer准备完成，开始播放");
-        mediaPlayer.start();
+        float volume = volumeScale;
+        runOnPlaybackThread(mp, () -> {
+            mp.setVolume(volume, volume);
+            mp.start();
+        });
         isPaused = false;
-        playbackState = PlaybackState.PLAYING;
+        setPlaybackState(PlaybackState.PLAYING);
         updateNotification();
+        // 时长采样后再安排预加载和淡入淡出
+        int generation = trackGeneration;
+        sampleProgress(mp, () -> onTrackStarted(generation));
         
         // 通知Activity播放状态变化
         if (onPlaybackStateChange != null) {
@@ -790,14 +1590,33 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
     // MediaPlayer.OnCompletionListener 实现
     @Override
     public void onCompletion(MediaPlayer mp) {
+        if (mp == fadingOutPlayer) {
+            // 淡出的上一首已播完，过渡提前结束
+            finishCrossfade();
+            return;
+        }
+        if (mp != mediaPlayer) {
+            return;
+        }
         LogUtil.d(TAG, "歌曲播放完成");
-        playbackState = PlaybackState.IDLE;
+        setPlaybackState(PlaybackState.IDLE);
 
         // 通知Activity播放完成
         if (onPlaybackStateChange != null) {
             onPlaybackStateChange.onCompletion();
         }
 
+        if (nextMediaPlayer != null && nextPlayerPrepared && playMode != MODE_LOOP_ONE) {
+            if (!nextPlayerChained) {
+                // 按淡入淡出方式准备的下一首没有衔接到当前播放器，歌曲在过渡开始前就结束了（如拖动到结尾），需手动启动
+                prefetchHandler.removeCallbacks(crossfadeStartRunnable);
+                runOnPlaybackThread(nextMediaPlayer, nextMediaPlayer::start);
+            }
+            // 通过 setNextMediaPlayer 衔接的下一首已由系统自动开始播放，只需切换播放器
+            rotateToNextPlayer();
+            return;
+        }
+
         switch (playMode) {
             case MODE_LOOP_ONE:
                 playMusic();
@@ -814,8 +1633,19 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
     // MediaPlayer.OnErrorListener 实现
     @Override
     public boolean onError(MediaPlayer mp, int what, int extra) {
+        if (mp == fadingOutPlayer) {
+            LogUtil.w(TAG, "淡出的上一首出错 - what: " + what + ", extra: " + extra);
+            finishCrossfade();
+            return true;
+        }
+        if (mp == nextMediaPlayer) {
+            // 下一首准备失败不影响当前播放，切歌时按原流程加载
+            LogUtil.w(TAG, "准备下一首出错 - what: " + what + ", extra: " + extra);
+            releaseNextPlayer();
+            return true;
+        }
         LogUtil.e(TAG, "MediaPlayer错误 - what: " + what + ", extra: " + extra);
-        playbackState = PlaybackState.ERROR;
+        setPlaybackState(PlaybackState.ERROR);
         
         // 通知Activity发生错误
         if (onPlaybackStateChange != null) {
@@ -832,6 +1662,41 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
         return playbackState;
     }
 
+    /**
+     * 在播放线程上执行的播放器操作
+     */
+    private interface PlayerCommand {
+        void run() throws IOException;
+    }
+
+    /**
+     * 待执行的加载：为 player 设置数据源并开始准备
+     */
+    private static final class LoadCommand {
+        final MediaPlayer player;
+        final String source;
+        final boolean contentUri;
+
+        LoadCommand(MediaPlayer player, String source, boolean contentUri) {
+            this.player = player;
+            this.source = source;
+            this.contentUri = contentUri;
+        }
+    }
+
+    /**
+     * 待执行的跳转
+     */
+    private static final class SeekCommand {
+        final MediaPlayer player;
+        final int position;
+
+        SeekCommand(MediaPlayer player, int position) {
+            this.player = player;
+            this.position = position;
+        }
+    }
+
     /**
      * 播放状态变化回调接口
      */
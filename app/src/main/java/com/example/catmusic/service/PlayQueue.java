@@ -0,0 +1,479 @@
+package com.example.catmusic.service;
+
+import com.example.catmusic.bean.SongsList;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * 播放队列。
+ * 每个条目有稳定的 id，插入、移动其他条目后不变，界面可以据此保持选中状态和动画；
+ * 条目按位置组织在以子树大小为索引的隐式 treap 中，按位置读取、插入、移动、删除以及查询条目的位置都是 O(log n)，
+ * 另有 id→条目 和 mid→条目 的索引，用于快速定位和去重。
+ * 每次修改后按位置通知 {@link Listener}，播放列表界面据此局部刷新，上万首的队列也不需要整体重绑。
+ * {@link MusicService} 和播放列表对话框共用同一个实例，只在主线程访问。
+ */
+public final class PlayQueue {
+
+    /**
+     * 队列变化通知，位置均为修改后的位置（删除为修改前的位置）
+     */
+    public interface Listener {
+        void onInserted(int position, int count);
+
+        void onRemoved(int position, int count);
+
+        void onMoved(int fromPosition, int toPosition);
+
+        /**
+         * 一次删除了多个不连续的条目，如去重
+         *
+         * @param positions 删除前的位置，升序
+         */
+        void onRemovedBatch(int[] positions);
+
+        /**
+         * 整个队列被替换
+         */
+        void onReset();
+    }
+
+    /**
+     * 队列中的一项，同一首歌多次加入队列时是不同的条目
+     */
+    public static final class Entry {
+        private final long id;
+        private final SongsList.ResultBean.SongsBean song;
+
+        // treap 节点信息
+        private final int priority;
+        private Entry left;
+        private Entry right;
+        private Entry parent;
+        private int size = 1;
+        private boolean attached;
+
+        private Entry(long id, SongsList.ResultBean.SongsBean song, int priority) {
+            this.id = id;
+            this.song = song;
+            this.priority = priority;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public SongsList.ResultBean.SongsBean getSong() {
+            return song;
+        }
+    }
+
+    private final Random random = new Random();
+    private final Map<Long, Entry> entriesById = new HashMap<>();
+    private final Map<String, List<Entry>> entriesByMid = new HashMap<>();
+    private final List<Listener> listeners = new ArrayList<>();
+    private final List<SongsList.ResultBean.SongsBean> songsView = new AbstractList<SongsList.ResultBean.SongsBean>() {
+        @Override
+        public SongsList.ResultBean.SongsBean get(int index) {
+            return PlayQueue.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return PlayQueue.this.size();
+        }
+    };
+    private Entry root;
+    private long nextId = 1;
+
+    public void addListener(Listener listener) {
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * @throws IndexOutOfBoundsException position 越界时
+     */
+    public Entry getEntry(int position) {
+        checkIndex(position, size());
+        Entry node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (position < leftSize) {
+                node = node.left;
+            } else if (position == leftSize) {
+                return node;
+            } else {
+                position -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    public SongsList.ResultBean.SongsBean get(int position) {
+        return getEntry(position).song;
+    }
+
+    /**
+     * @return 条目当前的位置，已不在队列中时返回 -1
+     */
+    public int indexOf(Entry entry) {
+        if (entry == null || !entry.attached) {
+            return -1;
+        }
+        int position = size(entry.left);
+        Entry node = entry;
+        while (node.parent != null) {
+            if (node == node.parent.right) {
+                position += size(node.parent.left) + 1;
+            }
+            node = node.parent;
+        }
+        return position;
+    }
+
+    public Entry findById(long id) {
+        return entriesById.get(id);
+    }
+
+    /**
+     * @return mid 对应的第一个条目，队列中没有这首歌时返回 null
+     */
+    public Entry findFirstByMid(String mid) {
+        List<Entry> entries = mid != null ? entriesByMid.get(mid) : null;
+        if (entries == null) {
+            return null;
+        }
+        Entry first = null;
+        int firstPosition = Integer.MAX_VALUE;
+        for (Entry entry : entries) {
+            int position = indexOf(entry);
+            if (position < firstPosition) {
+                first = entry;
+                firstPosition = position;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * @return mid 对应的全部条目，顺序不保证与队列一致
+     */
+    public List<Entry> findAllByMid(String mid) {
+        List<Entry> entries = mid != null ? entriesByMid.get(mid) : null;
+        return entries != null ? new ArrayList<>(entries) : Collections.emptyList();
+    }
+
+    public boolean containsMid(String mid) {
+        return mid != null && entriesByMid.containsKey(mid);
+    }
+
+    /**
+     * 替换整个队列
+     */
+    public void setAll(List<SongsList.ResultBean.SongsBean> songs) {
+        detachAll();
+        root = songs != null ? build(songs) : null;
+        if (root != null) {
+            root.parent = null;
+        }
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onReset();
+        }
+    }
+
+    public Entry add(SongsList.ResultBean.SongsBean song) {
+        return insert(size(), song);
+    }
+
+    public Entry insert(int position, SongsList.ResultBean.SongsBean song) {
+        return insertAll(position, Collections.singletonList(song), false).get(0);
+    }
+
+    /**
+     * 在 position 处依次插入多首歌曲
+     *
+     * @param skipQueued 为 true 时跳过队列中已有（按 mid）的歌曲和本次重复的歌曲
+     * @return 新插入的条目
+     */
+    public List<Entry> insertAll(int position, List<SongsList.ResultBean.SongsBean> songs, boolean skipQueued) {
+        checkIndex(position, size() + 1);
+        List<Entry> inserted = new ArrayList<>(songs.size());
+        Set<String> seen = skipQueued ? new HashSet<>() : null;
+        Entry middle = null;
+        for (SongsList.ResultBean.SongsBean song : songs) {
+            String mid = song != null ? song.getMid() : null;
+            if (skipQueued && mid != null && (containsMid(mid) || !seen.add(mid))) {
+                continue;
+            }
+            Entry entry = attach(song);
+            inserted.add(entry);
+            middle = merge(middle, entry);
+        }
+        if (inserted.isEmpty()) {
+            return inserted;
+        }
+        Entry[] parts = split(root, position);
+        setRoot(merge(merge(parts[0], middle), parts[1]));
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onInserted(position, inserted.size());
+        }
+        return inserted;
+    }
+
+    public SongsList.ResultBean.SongsBean removeAt(int position) {
+        Entry entry = detachAt(position);
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onRemoved(position, 1);
+        }
+        return entry.song;
+    }
+
+    public boolean remove(Entry entry) {
+        int position = indexOf(entry);
+        if (position < 0) {
+            return false;
+        }
+        removeAt(position);
+        return true;
+    }
+
+    /**
+     * 移动条目，条目 id 不变
+     */
+    public void move(int fromPosition, int toPosition) {
+        int size = size();
+        checkIndex(fromPosition, size);
+        checkIndex(toPosition, size);
+        if (fromPosition == toPosition) {
+            return;
+        }
+        Entry[] parts = split(root, fromPosition);
+        Entry[] rest = split(parts[1], 1);
+        Entry entry = rest[0];
+        Entry remaining = merge(parts[0], rest[1]);
+        Entry[] target = split(remaining, toPosition);
+        setRoot(merge(merge(target[0], entry), target[1]));
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onMoved(fromPosition, toPosition);
+        }
+    }
+
+    /**
+     * 删除 mid 重复的条目，每首歌保留最靠前的一个；全部删除后只通知一次
+     *
+     * @return 删除的条目数
+     */
+    public int removeDuplicates() {
+        List<Integer> duplicates = new ArrayList<>();
+        for (List<Entry> entries : entriesByMid.values()) {
+            if (entries.size() < 2) {
+                continue;
+            }
+            List<Integer> positions = new ArrayList<>(entries.size());
+            for (Entry entry : entries) {
+                positions.add(indexOf(entry));
+            }
+            Collections.sort(positions);
+            duplicates.addAll(positions.subList(1, positions.size()));
+        }
+        if (duplicates.isEmpty()) {
+            return 0;
+        }
+        Collections.sort(duplicates);
+        int[] positions = new int[duplicates.size()];
+        // 从后往前删，前面的位置不受影响
+        for (int i = positions.length - 1; i >= 0; i--) {
+            positions[i] = duplicates.get(i);
+            detachAt(positions[i]);
+        }
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onRemovedBatch(positions);
+        }
+        return positions.length;
+    }
+
+    public void clear() {
+        int size = size();
+        if (size == 0) {
+            return;
+        }
+        detachAll();
+        root = null;
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onRemoved(0, size);
+        }
+    }
+
+    /**
+     * 按位置只读访问的视图，get 为 O(log n)
+     */
+    public List<SongsList.ResultBean.SongsBean> asList() {
+        return songsView;
+    }
+
+    /**
+     * 按顺序复制出全部歌曲，O(n)
+     */
+    public List<SongsList.ResultBean.SongsBean> toList() {
+        List<SongsList.ResultBean.SongsBean> songs = new ArrayList<>(size());
+        Deque<Entry> stack = new ArrayDeque<>();
+        Entry node = root;
+        while (node != null || !stack.isEmpty()) {
+            while (node != null) {
+                stack.push(node);
+                node = node.left;
+            }
+            node = stack.pop();
+            songs.add(node.song);
+            node = node.right;
+        }
+        return songs;
+    }
+
+    private Entry attach(SongsList.ResultBean.SongsBean song) {
+        Entry entry = new Entry(nextId++, song, random.nextInt());
+        entry.attached = true;
+        entriesById.put(entry.id, entry);
+        String mid = song != null ? song.getMid() : null;
+        if (mid != null) {
+            List<Entry> entries = entriesByMid.get(mid);
+            if (entries == null) {
+                entries = new ArrayList<>(1);
+                entriesByMid.put(mid, entries);
+            }
+            entries.add(entry);
+        }
+        return entry;
+    }
+
+    private Entry detachAt(int position) {
+        checkIndex(position, size());
+        Entry[] parts = split(root, position);
+        Entry[] rest = split(parts[1], 1);
+        setRoot(merge(parts[0], rest[1]));
+        Entry entry = rest[0];
+        entry.attached = false;
+        entry.parent = null;
+        entriesById.remove(entry.id);
+        String mid = entry.song != null ? entry.song.getMid() : null;
+        List<Entry> entries = mid != null ? entriesByMid.get(mid) : null;
+        if (entries != null) {
+            entries.remove(entry);
+            if (entries.isEmpty()) {
+                entriesByMid.remove(mid);
+            }
+        }
+        return entry;
+    }
+
+    private void detachAll() {
+        for (Entry entry : entriesById.values()) {
+            entry.attached = false;
+        }
+        entriesById.clear();
+        entriesByMid.clear();
+    }
+
+    /**
+     * 按顺序依次合并，期望 O(n log n)
+     */
+    private Entry build(List<SongsList.ResultBean.SongsBean> songs) {
+        Entry tree = null;
+        for (SongsList.ResultBean.SongsBean song : songs) {
+            tree = merge(tree, attach(song));
+        }
+        return tree;
+    }
+
+    private void setRoot(Entry node) {
+        root = node;
+        if (root != null) {
+            root.parent = null;
+        }
+    }
+
+    /**
+     * 拆分为前 count 个和其余部分
+     */
+    private static Entry[] split(Entry node, int count) {
+        if (node == null) {
+            return new Entry[]{null, null};
+        }
+        if (size(node.left) >= count) {
+            Entry[] parts = split(node.left, count);
+            node.left = parts[1];
+            update(node);
+            if (parts[0] != null) {
+                parts[0].parent = null;
+            }
+            return new Entry[]{parts[0], node};
+        }
+        Entry[] parts = split(node.right, count - size(node.left) - 1);
+        node.right = parts[0];
+        update(node);
+        if (parts[1] != null) {
+            parts[1].parent = null;
+        }
+        return new Entry[]{node, parts[1]};
+    }
+
+    private static Entry merge(Entry left, Entry right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    private static void update(Entry node) {
+        node.size = 1 + size(node.left) + size(node.right);
+        if (node.left != null) {
+            node.left.parent = node;
+        }
+        if (node.right != null) {
+            node.right.parent = node;
+        }
+    }
+
+    private static int size(Entry node) {
+        return node != null ? node.size : 0;
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
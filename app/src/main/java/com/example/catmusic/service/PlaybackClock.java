@@ -0,0 +1,161 @@
+package com.example.catmusic.service;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 播放进度时钟：按各订阅者要求的间隔向它们推送 {@link PlaybackSnapshot}。
+ * 所有订阅共用一个定时器，每秒请求播放线程采样一次进度，两次采样之间由快照按时间推算，
+ * 订阅者不需要自己轮询服务。播放状态变化、拖动进度时立即推送一次；
+ * 没有订阅者或不在播放时定时器完全停止。
+ * 只在主线程使用，订阅者也在主线程收到回调。
+ */
+public final class PlaybackClock {
+    private static final long SAMPLE_INTERVAL_MILLIS = 1000;// 向播放器采样进度的间隔
+    private static final long MIN_INTERVAL_MILLIS = 16;// 订阅者可以要求的最短推送间隔，约一帧
+
+    /**
+     * 播放进度订阅者
+     */
+    public interface Subscriber {
+        void onPlaybackSnapshot(PlaybackSnapshot snapshot);
+    }
+
+    /**
+     * 快照的来源，由 {@link MusicService} 实现
+     */
+    interface Source {
+        PlaybackSnapshot getSnapshot();
+
+        /**
+         * 请求在播放线程采样一次进度，结果写入快照
+         */
+        void requestSample();
+    }
+
+    private static final class Subscription {
+        final Subscriber subscriber;
+        final long intervalMillis;
+        long deliveredAt;
+
+        Subscription(Subscriber subscriber, long intervalMillis) {
+            this.subscriber = subscriber;
+            this.intervalMillis = intervalMillis;
+        }
+    }
+
+    private final Handler handler;
+    private final Source source;
+    private final Map<Subscriber, Subscription> subscriptions = new LinkedHashMap<>();
+    private final Runnable tickRunnable = this::tick;
+    private boolean running;
+    private long sampledAt;
+
+    PlaybackClock(Handler handler, Source source) {
+        this.handler = handler;
+        this.source = source;
+    }
+
+    /**
+     * 订阅播放进度，立即收到一次当前快照；已订阅时按新的间隔推送
+     *
+     * @param intervalMillis 推送间隔，如进度条 1000、歌词 100
+     */
+    public void subscribe(Subscriber subscriber, long intervalMillis) {
+        if (subscriber == null) {
+            return;
+        }
+        Subscription subscription = new Subscription(subscriber, Math.max(MIN_INTERVAL_MILLIS, intervalMillis));
+        subscriptions.put(subscriber, subscription);
+        subscription.deliveredAt = SystemClock.elapsedRealtime();
+        subscriber.onPlaybackSnapshot(source.getSnapshot());
+        updateRunning(true);
+    }
+
+    public void unsubscribe(Subscriber subscriber) {
+        if (subscriptions.remove(subscriber) != null) {
+            updateRunning(false);
+        }
+    }
+
+    /**
+     * 播放状态或进度在定时之外发生了变化，立即向所有订阅者推送，并按需启动或停止定时器
+     */
+    void onSnapshotChanged() {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        PlaybackSnapshot snapshot = source.getSnapshot();
+        long now = SystemClock.elapsedRealtime();
+        for (Subscription subscription : new ArrayList<>(subscriptions.values())) {
+            // 回调中可能取消了其他订阅
+            if (subscriptions.get(subscription.subscriber) == subscription) {
+                subscription.deliveredAt = now;
+                subscription.subscriber.onPlaybackSnapshot(snapshot);
+            }
+        }
+        updateRunning(true);
+    }
+
+    void release() {
+        subscriptions.clear();
+        updateRunning(false);
+    }
+
+    /**
+     * @param reschedule 订阅的间隔可能变短，正在运行时也按新的间隔重新安排
+     */
+    private void updateRunning(boolean reschedule) {
+        boolean shouldRun = !subscriptions.isEmpty() && source.getSnapshot().isPlaying();
+        if (shouldRun == running && !(shouldRun && reschedule)) {
+            return;
+        }
+        handler.removeCallbacks(tickRunnable);
+        if (shouldRun && !running) {
+            // 重新开始时先采样一次，暂停、切歌期间的推算误差立即得到修正
+            sampledAt = 0;
+        }
+        running = shouldRun;
+        if (running) {
+            handler.post(tickRunnable);
+        }
+    }
+
+    private void tick() {
+        if (!running) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+        if (now - sampledAt >= SAMPLE_INTERVAL_MILLIS) {
+            sampledAt = now;
+            source.requestSample();
+        }
+        PlaybackSnapshot snapshot = source.getSnapshot();
+        List<Subscription> due = new ArrayList<>();
+        for (Subscription subscription : subscriptions.values()) {
+            if (now - subscription.deliveredAt >= subscription.intervalMillis) {
+                subscription.deliveredAt = now;
+                due.add(subscription);
+            }
+        }
+        for (Subscription subscription : due) {
+            if (subscriptions.get(subscription.subscriber) == subscription) {
+                subscription.subscriber.onPlaybackSnapshot(snapshot);
+            }
+        }
+        // 回调中可能增减了订阅或改变了播放状态，按回调之后的订阅安排下一次
+        if (running) {
+            long nextDelay = sampledAt + SAMPLE_INTERVAL_MILLIS - now;
+            for (Subscription subscription : subscriptions.values()) {
+                nextDelay = Math.min(nextDelay, subscription.deliveredAt + subscription.intervalMillis - now);
+            }
+            handler.removeCallbacks(tickRunnable);
+            handler.postDelayed(tickRunnable, Math.max(1, nextDelay));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.catmusic.service;
+
+import android.os.SystemClock;
+
+/**
+ * 某一时刻的播放状态，不可变，可以在任意线程读取。
+ * 播放进度来自播放线程对 MediaPlayer 的采样，两次采样之间按播放时长推算，
+ * 界面读取进度和时长不需要访问 MediaPlayer。
+ */
+public final class PlaybackSnapshot {
+    static final PlaybackSnapshot IDLE = new PlaybackSnapshot(0, MusicService.PlaybackState.IDLE, 0, 0, 0);
+
+    private final int generation;// 每次换歌加一，旧歌曲的采样结果不会写到新歌曲上
+    private final MusicService.PlaybackState state;
+    private final int progress;// 采样时的播放进度（毫秒）
+    private final int duration;// 歌曲总时长（毫秒），未知时为 0
+    private final long sampledAt;// 采样时间，SystemClock.elapsedRealtime()
+
+    private PlaybackSnapshot(int generation, MusicService.PlaybackState state, int progress, int duration, long sampledAt) {
+        this.generation = generation;
+        this.state = state;
+        this.progress = progress;
+        this.duration = duration;
+        this.sampledAt = sampledAt;
+    }
+
+    /**
+     * 换到新歌曲，进度和时长从 0 开始
+     */
+    static PlaybackSnapshot newTrack(int generation, MusicService.PlaybackState state) {
+        return new PlaybackSnapshot(generation, state, 0, 0, SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * 播放状态改变，进度停在当前推算的位置
+     */
+    PlaybackSnapshot withState(MusicService.PlaybackState newState) {
+        long now = SystemClock.elapsedRealtime();
+        return new PlaybackSnapshot(generation, newState, getProgressAt(now), duration, now);
+    }
+
+    /**
+     * 采样或拖动进度得到新的进度；时长未知（如部分流媒体）时保留原来的时长
+     */
+    PlaybackSnapshot withProgress(int newProgress, int newDuration, long time) {
+        return new PlaybackSnapshot(generation, state, Math.max(0, newProgress),
+                newDuration > 0 ? newDuration : duration, time);
+    }
+
+    int getGeneration() {
+        return generation;
+    }
+
+    long getSampledAt() {
+        return sampledAt;
+    }
+
+    public MusicService.PlaybackState getState() {
+        return state;
+    }
+
+    public boolean isPlaying() {
+        return state == MusicService.PlaybackState.PLAYING;
+    }
+
+    public int getDuration() {
+        return duration;
+    }
+
+    /**
+     * 当前的播放进度，播放中按采样后经过的时间推算
+     */
+    public int getProgress() {
+        return getProgressAt(SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * 指定时刻（SystemClock.elapsedRealtime()）的播放进度，不超过歌曲总时长
+     */
+    public int getProgressAt(long time) {
+        if (!isPlaying() || time <= sampledAt) {
+            return progress;
+        }
+        long estimated = progress + (time - sampledAt);
+        if (duration > 0) {
+            estimated = Math.min(estimated, duration);
+        }
+        return (int) Math.min(estimated, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public String toString() {
+        return "PlaybackSnapshot{state=" + state + ", progress=" + progress + ", duration=" + duration + "}";
+    }
+}
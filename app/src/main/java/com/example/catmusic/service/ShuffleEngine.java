@@ -0,0 +1,262 @@
+package com.example.catmusic.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * 随机播放的顺序。
+ * 用 Fisher-Yates 洗牌预先生成整个播放列表的排列，一轮内每首只播放一次，播完后再接上新的一轮；
+ * 已播放的部分作为历史保留，上一首沿历史往回走，下一首沿排列往前走，二者都是 O(1) 且结果确定，
+ * 预加载可以通过 {@link #peekUpcoming(int, int, int)} 提前知道后面几首。
+ * 播放列表增删、移动后通过 onInserted/onRemoved/onMoved 把顺序和历史中的位置换算到新位置，
+ * 已排好的顺序保持不变；整个列表被替换时调用 {@link #invalidate()}，下次访问时以当前歌曲为起点重新洗牌。
+ * 只在主线程使用。
+ */
+final class ShuffleEngine {
+    private static final int MIN_HISTORY = 100;// 至少保留的历史条数，超出一轮列表长度后再裁剪
+
+    private final Random random;
+    // 历史 + 当前 + 已排好的后续歌曲的位置，sequence[cursor] 为当前歌曲
+    private final List<Integer> sequence = new ArrayList<>();
+    private int cursor;
+    private int size = -1;
+    private boolean dirty = true;
+
+    ShuffleEngine(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * 播放列表已改变，原有顺序和历史作废，下次访问时重新洗牌
+     */
+    void invalidate() {
+        dirty = true;
+    }
+
+    /**
+     * 在 position 处插入了 count 首：之后的位置顺延，新歌曲随机插入尚未播放的部分
+     */
+    void onInserted(int position, int count) {
+        if (!remap(p -> p >= position ? p + count : p)) {
+            return;
+        }
+        size += count;
+        for (int i = 0; i < count; i++) {
+            sequence.add(cursor + 1 + random.nextInt(sequence.size() - cursor), position + i);
+        }
+    }
+
+    /**
+     * 删除了 [position, position + count)：顺序和历史中去掉这些歌曲，之后的位置前移
+     */
+    void onRemoved(int position, int count) {
+        if (remap(p -> p >= position + count ? p - count : p >= position ? -1 : p)) {
+            onSizeChanged(size - count);
+        }
+    }
+
+    /**
+     * 删除了多个不连续的位置
+     *
+     * @param positions 删除前的位置，升序
+     */
+    void onRemoved(int[] positions) {
+        if (remap(p -> {
+            int index = Arrays.binarySearch(positions, p);
+            return index >= 0 ? -1 : p + index + 1;
+        })) {
+            onSizeChanged(size - positions.length);
+        }
+    }
+
+    void onMoved(int fromPosition, int toPosition) {
+        remap(p -> {
+            if (p == fromPosition) {
+                return toPosition;
+            }
+            if (fromPosition < toPosition && p > fromPosition && p <= toPosition) {
+                return p - 1;
+            }
+            if (fromPosition > toPosition && p >= toPosition && p < fromPosition) {
+                return p + 1;
+            }
+            return p;
+        });
+    }
+
+    /**
+     * 把顺序中的每个位置换算为修改后的位置，映射为 -1 的歌曲已被删除。
+     * 当前歌曲被删除时停在它之前的一项，之后由 {@link #sync(int, int)} 接入补位的歌曲
+     *
+     * @return 是否已换算；尚未生成顺序或已作废时返回 false，下次访问时重新洗牌
+     */
+    private boolean remap(IntUnaryOperator mapping) {
+        if (dirty || size < 0) {
+            return false;
+        }
+        int newCursor = -1;
+        int kept = 0;
+        for (int i = 0; i < sequence.size(); i++) {
+            int position = mapping.applyAsInt(sequence.get(i));
+            if (position >= 0) {
+                sequence.set(kept++, position);
+            }
+            if (i == cursor) {
+                newCursor = kept - 1;
+            }
+        }
+        sequence.subList(kept, sequence.size()).clear();
+        if (newCursor < 0) {
+            // 当前歌曲和它之前的历史都已删除
+            dirty = true;
+            return false;
+        }
+        cursor = newCursor;
+        return true;
+    }
+
+    private void onSizeChanged(int newSize) {
+        size = newSize;
+        if (size <= 0) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * 前进到下一首
+     *
+     * @param size    播放列表长度
+     * @param current 当前播放位置
+     * @return 下一首的位置
+     */
+    int next(int size, int current) {
+        sync(size, current);
+        extend(1);
+        cursor++;
+        trimHistory();
+        return sequence.get(cursor);
+    }
+
+    /**
+     * 沿历史回到上一首
+     *
+     * @return 上一首的位置，没有更早的记录时返回 -1
+     */
+    int previous(int size, int current) {
+        sync(size, current);
+        if (cursor == 0) {
+            return -1;
+        }
+        cursor--;
+        return sequence.get(cursor);
+    }
+
+    /**
+     * 后面 count 首的位置，不改变当前进度；之后调用 {@link #next(int, int)} 会按同样的顺序播放
+     */
+    List<Integer> peekUpcoming(int size, int current, int count) {
+        sync(size, current);
+        if (size <= 1) {
+            count = Math.min(count, 1);
+        }
+        extend(count);
+        return new ArrayList<>(sequence.subList(cursor + 1, cursor + 1 + count));
+    }
+
+    /**
+     * 确保顺序与播放列表和当前歌曲一致：列表变化时重新洗牌；
+     * 当前歌曲不是顺序中的当前项（如用户直接点选了某首、无缝切换到了下一首）时把它接入顺序
+     */
+    private void sync(int size, int current) {
+        if (dirty || size != this.size || cursor >= sequence.size()) {
+            reshuffle(size, current);
+            return;
+        }
+        if (sequence.get(cursor) == current) {
+            return;
+        }
+        if (cursor + 1 < sequence.size() && sequence.get(cursor + 1) == current) {
+            cursor++;
+        } else if (cursor > 0 && sequence.get(cursor - 1) == current) {
+            cursor--;
+        } else {
+            // 用户选中的歌曲记入历史，并从本轮剩余部分中去掉，避免很快又播一次
+            int index = sequence.subList(cursor + 1, sequence.size()).indexOf(current);
+            if (index >= 0) {
+                sequence.remove(cursor + 1 + index);
+            }
+            sequence.add(cursor + 1, current);
+            cursor++;
+        }
+        trimHistory();
+    }
+
+    private void reshuffle(int size, int current) {
+        this.size = size;
+        dirty = false;
+        sequence.clear();
+        cursor = 0;
+        if (size <= 0) {
+            return;
+        }
+        int start = current >= 0 && current < size ? current : random.nextInt(size);
+        sequence.add(start);
+        int[] order = permutation(size);
+        for (int position : order) {
+            if (position != start) {
+                sequence.add(position);
+            }
+        }
+    }
+
+    /**
+     * 后续歌曲不足 count 首时接上新的一轮，新一轮的第一首不与上一轮最后一首相同
+     */
+    private void extend(int count) {
+        if (size <= 0) {
+            return;
+        }
+        while (sequence.size() - 1 - cursor < count) {
+            int[] order = permutation(size);
+            int last = sequence.get(sequence.size() - 1);
+            if (size > 1 && order[0] == last) {
+                int swap = 1 + random.nextInt(size - 1);
+                order[0] = order[swap];
+                order[swap] = last;
+            }
+            for (int position : order) {
+                sequence.add(position);
+            }
+        }
+    }
+
+    private int[] permutation(int size) {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        // Fisher-Yates
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+        return order;
+    }
+
+    /**
+     * 历史超过两轮时裁掉最早的部分，长时间播放不会无限增长
+     */
+    private void trimHistory() {
+        int keep = Math.max(size, MIN_HISTORY);
+        if (cursor > keep * 2) {
+            int remove = cursor - keep;
+            sequence.subList(0, remove).clear();
+            cursor -= remove;
+        }
+    }
+}
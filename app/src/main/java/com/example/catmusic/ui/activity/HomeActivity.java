@@ -5,7 +5,6 @@ import android.os.Bundle;
 import android.view.View;
 import android.widget.Toast;
 
-import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -15,30 +14,28 @@ import com.example.catmusic.Config;
 import com.example.catmusic.R;
 import com.example.catmusic.adapter.AlbumsRecyclerViewAdapter;
 import com.example.catmusic.bean.Recommend;
+import com.example.catmusic.net.ApiCache;
+import com.example.catmusic.net.ApiJson;
+import com.example.catmusic.net.ApiMetrics;
 import com.example.catmusic.utils.LocalMusicManager;
+import com.example.catmusic.utils.LogUtil;
 import com.google.gson.Gson;
 import com.youth.banner.Banner;
 import com.youth.banner.adapter.BannerImageAdapter;
 import com.youth.banner.holder.BannerImageHolder;
 import com.youth.banner.indicator.CircleIndicator;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-import okhttp3.Call;
-import okhttp3.Callback;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
-
 /**
  * 首页Activity，用于展示推荐内容，包括轮播图等
  * 通过网络请求获取推荐数据并展示在界面上
  */
 public class HomeActivity extends BaseActivity
 {
-    private OkHttpClient okHttpClient;//用于发起网络请求
+    private static final String TAG = "HomeActivity";
+    private ApiCache apiCache;//带磁盘缓存的接口请求
     private Gson gson;//用于JSON数据解析
     private Banner banner;//轮播图控件
     private RecyclerView albumsList; // 添加RecyclerView引用
@@ -90,72 +87,80 @@ public class HomeActivity extends BaseActivity
 
     /**
      * 初始化网络请求相关的组件
-     * 创建一个 OkHttpClient 对象，它是OkHttp库的核心类，用于执行网络请求
-     * 创建一个 Gson 对象，用于JSON数据的序列化和反序列化
+     * 获取 {@link ApiCache}，它使用 {@link Config#getHttpClient()} 提供的进程内共享 OkHttpClient 发起请求
+     * 获取共享的 Gson 对象，它为接口实体注册了流式解码器（见 {@link ApiJson}）
      */
     private void initOkHttp()
     {
-        //1.创建一个OkHttpClient对象
-        okHttpClient = new OkHttpClient.Builder().build();
-        //2.创建一个Gson对象
-        gson = new Gson();
+        //1.获取带磁盘缓存的接口请求对象
+        apiCache = ApiCache.getInstance(this);
+        //2.获取共享的Gson对象
+        gson = ApiJson.gson();
         localMusicManager = new LocalMusicManager(this);
     }
     
     /**
-     * 从服务器获取推荐数据
-     * 创建一个 Request 对象，指定请求的 URL 为 {@link Config#getApiUrl(String)} 拼接的 getRecommend 接口
-     * 通过 okHttpClient.newCall(request).enqueue() 发起异步网络请求
-     * 在 onFailure 回调中处理请求失败的情况，使用 runOnUiThread 在主线程中显示错误提示
-     * 在 onResponse 回调中处理请求成功的情况：
-     * 检查响应是否成功且响应体不为空
-     * 获取响应体的JSON字符串
-     * 使用 Gson 将JSON字符串解析为 Recommend 对象
-     * 使用 runOnUiThread 在主线程中调用 handlerRecomendData 方法处理数据
+     * 获取推荐数据
+     * 通过 {@link ApiCache} 读取 {@link Config#API_GET_RECOMMEND} 接口：
+     * 有磁盘缓存时立即用缓存数据完成首屏展示，不等待网络
+     * 缓存过期时在后台向服务器校验，只有数据变化才会再次回调并刷新界面
+     * 在 onData 回调中使用 Gson 将JSON字符串解析为 Recommend 对象，并通过 runOnUiThread 在主线程中处理数据
+     * 在 onFailure 回调中仅当没有任何缓存可展示时才提示错误
      */
     private void getRecommend()
     {
-        //2.定义我们的请求
-        Request request = new Request.Builder()
-                .url(Config.getApiUrl(Config.API_GET_RECOMMEND))
-                .build();
-
-        //3.通过异步的方式发送请求
-        okHttpClient.newCall(request).enqueue(new Callback()
+        apiCache.get(Config.API_GET_RECOMMEND, null, new ApiCache.Listener()
         {
             @Override
-            public void onFailure(@NonNull Call call, @NonNull IOException e)
+            public void onData(String jsonData, boolean fromCache)
             {
+                //将jsonData（json字符串）转换成Recommend对象
+                Recommend recommend;
+                try
+                {
+                    long decodeStart = System.nanoTime();
+                    recommend = gson.fromJson(jsonData, Recommend.class);
+                    ApiMetrics.getInstance().record(Config.API_GET_RECOMMEND, ApiMetrics.Phase.DECODE, decodeStart);
+                }
+                catch (Exception e)
+                {
+                    LogUtil.e(TAG, "解析推荐数据失败: " + e.getMessage());
+                    return;
+                }
+                if (recommend == null || recommend.getResult() == null)
+                {
+                    return;
+                }
+
+                long dispatchStart = System.nanoTime();
                 runOnUiThread(new Runnable()
                 {
                     @Override
                     public void run()
                     {
-                        showSafeToast("网络请求失败: " + e.getMessage(), Toast.LENGTH_SHORT);
+                        handlerRecomendData(recommend);
+                        handlerAlbumsData(recommend);
+                        // 从投递到主线程处理完成，包含主线程排队时间
+                        ApiMetrics.getInstance().record(Config.API_GET_RECOMMEND, ApiMetrics.Phase.UI_DISPATCH, dispatchStart);
                     }
                 });
             }
 
             @Override
-            public void onResponse(@NonNull Call call, @NonNull Response response) throws IOException
+            public void onFailure(Exception e, boolean hasCachedData)
             {
-                //4.处理response相应对象 服务器返回的数据就放在这个对象上
-                if (response.isSuccessful() && response.body() != null)
+                if (hasCachedData)
                 {
-                    String jsonData = response.body().string();
-                    //5.将jsonData（json字符串）转换成Recommend对象
-                    Recommend recommend = gson.fromJson(jsonData, Recommend.class);
-
-                    runOnUiThread(new Runnable()
-                    {
-                        @Override
-                        public void run()
-                        {
-                            handlerRecomendData(recommend);
-                            handlerAlbumsData(recommend);
-                        }
-                    });
+                    return;
                 }
+                runOnUiThread(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        showSafeToast("网络请求失败: " + e.getMessage(), Toast.LENGTH_SHORT);
+                    }
+                });
             }
         });
     }
@@ -9,6 +9,11 @@ import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.catmusic.R;
 import com.example.catmusic.biz.LyricBiz;
+import com.example.catmusic.net.ApiJsonBenchmark;
+import com.example.catmusic.net.ApiMetrics;
+
+import java.io.File;
+import java.io.IOException;
 
 /**
  * 歌词功能测试Activity
@@ -18,6 +23,8 @@ public class LyricTestActivity extends AppCompatActivity {
     private static final String TAG = "LyricTestActivity";
     
     private Button testButton;
+    private Button benchmarkButton;
+    private Button metricsButton;
     private TextView resultText;
     private LyricBiz lyricBiz;
     
@@ -34,7 +41,43 @@ public class LyricTestActivity extends AppCompatActivity {
         testButton = findViewById(R.id.test_button);
         resultText = findViewById(R.id.result_text);
         
+        benchmarkButton = findViewById(R.id.benchmark_button);
+        metricsButton = findViewById(R.id.metrics_button);
+        
         testButton.setOnClickListener(v -> testLyricFetch());
+        benchmarkButton.setOnClickListener(v -> runJsonBenchmark());
+        metricsButton.setOnClickListener(v -> dumpApiMetrics());
+    }
+    
+    private void dumpApiMetrics() {
+        metricsButton.setEnabled(false);
+        new Thread(() -> {
+            String report;
+            try {
+                File file = ApiMetrics.getInstance().dumpToFile(getApplicationContext());
+                report = "已导出到: " + file.getAbsolutePath() + "\n\n" + ApiMetrics.getInstance().dumpStats();
+            } catch (IOException e) {
+                LogUtil.e(TAG, "导出接口耗时失败: " + e.getMessage());
+                report = "导出失败: " + e.getMessage();
+            }
+            String result = report;
+            runOnUiThread(() -> {
+                resultText.setText(result);
+                metricsButton.setEnabled(true);
+            });
+        }).start();
+    }
+    
+    private void runJsonBenchmark() {
+        resultText.setText("正在运行JSON解码基准测试...");
+        benchmarkButton.setEnabled(false);
+        new Thread(() -> {
+            String report = ApiJsonBenchmark.run(getApplicationContext());
+            runOnUiThread(() -> {
+                resultText.setText(report);
+                benchmarkButton.setEnabled(true);
+            });
+        }).start();
     }
     
     private void testLyricFetch() {
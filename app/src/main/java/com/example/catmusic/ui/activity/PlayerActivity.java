@@ -8,7 +8,6 @@ import android.content.ServiceConnection;
 import android.media.AudioManager;
 import android.net.Uri;
 import android.os.Bundle;
-import android.os.Handler;
 import android.os.IBinder;
 import com.example.catmusic.utils.LogUtil;
 import android.view.View;
@@ -17,7 +16,6 @@ import android.widget.SeekBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.bumptech.glide.Glide;
@@ -25,32 +23,34 @@ import com.example.catmusic.Config;
 import com.example.catmusic.R;
 import com.example.catmusic.adapter.PlaylistDialogAdapter;
 import com.example.catmusic.bean.Lyric;
-import com.example.catmusic.bean.SongUrls;
 import com.example.catmusic.bean.SongsList;
+import com.example.catmusic.biz.OfflineDownloadManager;
+import com.example.catmusic.biz.SongUrlBiz;
+import com.example.catmusic.net.RequestScheduler;
 import com.example.catmusic.service.MusicService;
+import com.example.catmusic.service.PlayQueue;
+import com.example.catmusic.service.PlaybackClock;
+import com.example.catmusic.service.PlaybackSnapshot;
 import com.example.catmusic.utils.FavoriteManager;
 import com.example.catmusic.utils.LyricParser;
-import com.google.gson.Gson;
 
 import android.app.AlertDialog;
 import android.view.LayoutInflater;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.io.IOException;
 import java.io.InputStream;
-import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
-import okhttp3.Call;
-import okhttp3.Callback;
 import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
 
 public class PlayerActivity extends BaseActivity implements MusicService.OnPlaybackStateChange {
     private static final String TAG = "PlayerActivity";
+    private static final long PROGRESS_UPDATE_INTERVAL_MILLIS = 1000;// 进度条更新间隔
+    private static final long LYRIC_SYNC_INTERVAL_MILLIS = 100;// 歌词同步间隔
 
     private ImageView albumArt;
     private TextView songTitle;
@@ -74,16 +74,14 @@ public class PlayerActivity extends BaseActivity implements MusicService.OnPlayb
     // 歌词相关
     private com.example.catmusic.lyric.LyricView lyricView;
     private TextView noLyricText;
-    private com.example.catmusic.biz.LyricBiz lyricBiz;
+    private com.example.catmusic.biz.LyricRepository lyricRepository;
     private com.example.catmusic.bean.Lyric currentLyric;
     private String currentLyricSourceKey = "";
-    private Handler lyricHandler = new Handler();
-    private Runnable updateLyricRunnable = new Runnable() {
+    private final PlaybackClock.Subscriber lyricSubscriber = new PlaybackClock.Subscriber() {
         @Override
-        public void run() {
-            if (musicService != null && musicService.isPlaying() && currentLyric != null) {
-                syncLyricWithProgress();
-                lyricHandler.postDelayed(this, 100); // 每100毫秒更新一次
+        public void onPlaybackSnapshot(PlaybackSnapshot snapshot) {
+            if (snapshot.isPlaying() && currentLyric != null && lyricView != null) {
+                lyricView.setCurrentTime(snapshot.getProgress());
             }
         }
     };
@@ -99,54 +97,24 @@ public class PlayerActivity extends BaseActivity implements MusicService.OnPlayb
     
     // 网络请求相关
     private OkHttpClient okHttpClient;
-    private Gson gson;
-
-    // 使用静态内部类和弱引用避免内存泄漏
-    private static class SeekBarUpdateHandler extends Handler {
-        private final WeakReference<PlayerActivity> activityRef;
-
-        SeekBarUpdateHandler(PlayerActivity activity) {
-            activityRef = new WeakReference<>(activity);
-        }
 
+    // 进度条和时间显示由服务的播放进度时钟推送
+    private final PlaybackClock.Subscriber progressSubscriber = new PlaybackClock.Subscriber() {
         @Override
-        public void handleMessage(android.os.Message msg) {
-            PlayerActivity activity = activityRef.get();
-            if (activity != null && activity.musicService != null && activity.musicService.isPlaying()) {
-                int currentPosition = activity.musicService.getCurrentProgress();
-                int duration = activity.musicService.getDuration();
-                activity.seekBar.setProgress(currentPosition);
-                activity.currentTime.setText(activity.formatTime(currentPosition));
-                
-                // 更新总时间显示
-                if (duration > 0 && !activity.totalTime.getText().toString().equals(activity.formatTime(duration))) {
-                    activity.totalTime.setText(activity.formatTime(duration));
-                    activity.seekBar.setMax(duration);
-                }
-                
-                // 继续更新
-                activity.handler.postDelayed(activity.updateSeekBarRunnable, 1000);
+        public void onPlaybackSnapshot(PlaybackSnapshot snapshot) {
+            if (!snapshot.isPlaying()) {
+                return;
             }
-        }
-    }
-
-    private Handler handler = new SeekBarUpdateHandler(this);
-    private Runnable updateSeekBarRunnable = new Runnable() {
-        @Override
-        public void run() {
-            if (musicService != null && musicService.isPlaying()) {
-                int currentPosition = musicService.getCurrentProgress();
-                int duration = musicService.getDuration();
-                seekBar.setProgress(currentPosition);
-                currentTime.setText(formatTime(currentPosition));
-                
-                // 更新总时间显示
-                if (duration > 0 && !totalTime.getText().toString().equals(formatTime(duration))) {
-                    totalTime.setText(formatTime(duration));
-                    seekBar.setMax(duration);
-                }
+            int currentPosition = snapshot.getProgress();
+            int duration = snapshot.getDuration();
+            seekBar.setProgress(currentPosition);
+            currentTime.setText(formatTime(currentPosition));
+
+            // 更新总时间显示
+            if (duration > 0 && !totalTime.getText().toString().equals(formatTime(duration))) {
+                totalTime.setText(formatTime(duration));
+                seekBar.setMax(duration);
             }
-            handler.postDelayed(this, 1000);
         }
     };
 
@@ -182,8 +150,7 @@ public class PlayerActivity extends BaseActivity implements MusicService.OnPlayb
 
     // 初始化网络请求相关的组件
     private void initOkHttp() {
-        okHttpClient = new OkHttpClient.Builder().build();
-        gson = new Gson();
+        okHttpClient = Config.getHttpClient();
     }
     
     // 初始化音频焦点管理
@@ -267,7 +234,7 @@ public class PlayerActivity extends BaseActivity implements MusicService.OnPlayb
     private void initLyricComponents() {
         lyricView = findViewById(R.id.lyric_view);
         noLyricText = findViewById(R.id.no_lyric_text);
-        lyricBiz = new com.example.catmusic.biz.LyricBiz();
+        lyricRepository = com.example.catmusic.biz.LyricRepository.getInstance(this);
         
         // 设置歌词视图的初始状态
         if (lyricView != null) {
@@ -308,14 +275,18 @@ public class PlayerActivity extends BaseActivity implements MusicService.OnPlayb
         String mid = song.getMid();
         LogUtil.d(TAG, "开始获取歌词，歌曲MID: " + mid);
         
-        lyricBiz.getLyric(mid, new com.example.catmusic.biz.LyricBiz.LyricCallback() {
+        // 先查内存和磁盘缓存，最近播放过的歌曲不会再请求网络
+        lyricRepository.getLyric(mid, new com.example.catmusic.biz.LyricRepository.LyricLoadCallback() {
             @Override
-            public void onSuccess(String lyricData) {
+            public void onLyricLoaded(Lyric lyric) {
                 LogUtil.d(TAG, "获取歌词成功");
                 runOnUiThread(new Runnable() {
                     @Override
                     public void run() {
-                        handleLyricData(lyricData);
+                        // 加载期间可能已经切歌
+                        if (lyricSourceKey.equals(currentLyricSourceKey)) {
+                            applyParsedLyric(lyric);
+                        }
                     }
                 });
             }
@@ -326,6 +297,9 @@ public class PlayerActivity extends BaseActivity implements MusicService.OnPlayb
                 runOnUiThread(new Runnable() {
                     @Override
                     public void run() {
+                        if (!lyricSourceKey.equals(currentLyricSourceKey)) {
+                            return;
+                        }
                         showNoLyric();
                         showSafeToast("获取歌词失败: " + e.getMessage(), Toast.LENGTH_SHORT);
                     }
@@ -334,22 +308,6 @@ public class PlayerActivity extends BaseActivity implements MusicService.OnPlayb
         });
     }
     
-    // 处理歌词数据
-    private void handleLyricData(String lyricData) {
-        if (lyricData == null || lyricData.isEmpty()) {
-            LogUtil.w(TAG, "歌词数据为空");
-            showNoLyric();
-            return;
-        }
-        
-        try {
-            applyParsedLyric(LyricParser.parseLyric(lyricData));
-        } catch (Exception e) {
-            LogUtil.e(TAG, "处理歌词数据时出错: " + e.getMessage());
-            showNoLyric();
-        }
-    }
-
     private void loadLocalLyric(SongsList.ResultBean.SongsBean song) {
         if (song == null || song.getLocalLyricUri() == null || song.getLocalLyricUri().isEmpty()) {
             showNoLyric();
@@ -430,14 +388,30 @@ public class PlayerActivity extends BaseActivity implements MusicService.OnPlayb
     
     // 开始歌词同步
     private void startLyricSync() {
-        lyricHandler.removeCallbacks(updateLyricRunnable);
-        syncLyricWithProgress();
-        lyricHandler.post(updateLyricRunnable);
+        if (musicService != null) {
+            musicService.getPlaybackClock().subscribe(lyricSubscriber, LYRIC_SYNC_INTERVAL_MILLIS);
+        }
     }
     
     // 停止歌词同步
     private void stopLyricSync() {
-        lyricHandler.removeCallbacks(updateLyricRunnable);
+        if (musicService != null) {
+            musicService.getPlaybackClock().unsubscribe(lyricSubscriber);
+        }
+    }
+
+    // 开始更新进度条
+    private void startProgressUpdate() {
+        if (musicService != null) {
+            musicService.getPlaybackClock().subscribe(progressSubscriber, PROGRESS_UPDATE_INTERVAL_MILLIS);
+        }
+    }
+
+    // 停止更新进度条
+    private void stopProgressUpdate() {
+        if (musicService != null) {
+            musicService.getPlaybackClock().unsubscribe(progressSubscriber);
+        }
     }
     
     // 开始旋转动画
@@ -508,13 +482,13 @@ public class PlayerActivity extends BaseActivity implements MusicService.OnPlayb
             @Override
             public void onStartTrackingTouch(SeekBar seekBar) {
                 // 停止自动更新
-                handler.removeCallbacks(updateSeekBarRunnable);
+                stopProgressUpdate();
             }
 
             @Override
             public void onStopTrackingTouch(SeekBar seekBar) {
                 // 恢复自动更新
-                handler.post(updateSeekBarRunnable);
+                startProgressUpdate();
             }
         });
     }
@@ -538,8 +512,10 @@ public class PlayerActivity extends BaseActivity implements MusicService.OnPlayb
     /**
      * 获取歌曲URL地址
      * <p>
-     * 根据已有的歌曲 MID 列表构建查询参数，向服务端请求对应的播放地址，
+     * 根据已有的歌曲 MID 列表通过 {@link SongUrlBiz} 请求对应的播放地址，
+     * 若歌曲列表页刚刚请求过同一批 MID，则直接复用其在途请求或结果，
      * 并在获取成功后更新本地歌曲对象中的 URL 字段。
+     * 当前歌曲以前台优先级单独请求，不会排在列表其余歌曲或预加载之后。
      * </p>
      */
     private void getSongsUrl() {
@@ -548,115 +524,92 @@ public class PlayerActivity extends BaseActivity implements MusicService.OnPlayb
             return;
         }
 
-        try {
-            StringBuilder midUrls = new StringBuilder();
-            for (SongsList.ResultBean.SongsBean song : songsList) {
-                if (song == null || song.isLocal()) {
-                    continue;
-                }
-                String mid = song.getMid();
-                if (mid != null && !mid.isEmpty()) {
-                    if (midUrls.length() > 0) {
-                        midUrls.append("&");
-                    }
-                    midUrls.append("mid[]=").append(mid);
-                }
+        // 从当前歌曲开始排列 MID，保证当前歌曲所在的分片最先返回
+        List<String> mids = new ArrayList<>();
+        int size = songsList.size();
+        int start = currentPosition >= 0 && currentPosition < size ? currentPosition : 0;
+        for (int i = 0; i < size; i++) {
+            SongsList.ResultBean.SongsBean song = songsList.get((start + i) % size);
+            if (song == null || song.isLocal()) {
+                continue;
             }
-
-            if (midUrls.length() == 0) {
-                playCurrentSongIfReady();
-                return;
+            String mid = song.getMid();
+            if (mid != null && !mid.isEmpty()) {
+                mids.add(mid);
             }
+        }
 
-			String url = Config.getBaseUrl() + Config.API_GET_SONGS_URL + "?" + midUrls;
-            LogUtil.d(TAG, "请求歌曲URL: " + url);
+        if (mids.isEmpty()) {
+            playCurrentSongIfReady();
+            return;
+        }
 
-            Request request = new Request.Builder()
-                    .url(url)
-                    .build();
+        LogUtil.d(TAG, "请求歌曲URL，共 " + mids.size() + " 首");
+        SongUrlBiz.SongUrlCallback callback = new SongUrlBiz.SongUrlCallback() {
+            @Override
+            public void onUrlsResolved(Map<String, String> urlMap) {
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        handleSongUrls(urlMap);
+                    }
+                });
+            }
 
-            okHttpClient.newCall(request).enqueue(new Callback() {
-                @Override
-                public void onFailure(@NonNull Call call, @NonNull IOException e) {
-                    LogUtil.e(TAG, "获取歌曲URL失败: " + e.getMessage());
-                    runOnUiThread(new Runnable() {
-                        @Override
-                        public void run() {
-                            showSafeToast("获取歌曲URL失败: " + e.getMessage(), Toast.LENGTH_SHORT);
-                        }
-                    });
+            @Override
+            public void onComplete(Exception error) {
+                if (error == null) {
+                    return;
                 }
-
-                @Override
-                public void onResponse(@NonNull Call call, @NonNull Response response) throws IOException {
-                    if (response.isSuccessful() && response.body() != null) {
-                        try {
-                            String jsonData = response.body().string();
-                            LogUtil.d(TAG, "获取歌曲URL响应: " + jsonData);
-                            SongUrls songUrls = gson.fromJson(jsonData, SongUrls.class);
-
-                            runOnUiThread(new Runnable() {
-                                @Override
-                                public void run() {
-                                    handleSongUrls(songUrls);
-                                }
-                            });
-                        } catch (Exception e) {
-                            LogUtil.e(TAG, "解析歌曲URL数据失败: " + e.getMessage());
-                            runOnUiThread(new Runnable() {
-                                @Override
-                                public void run() {
-                                    showSafeToast("解析歌曲URL数据失败", Toast.LENGTH_SHORT);
-                                }
-                            });
-                        }
-                    } else {
-                        LogUtil.e(TAG, "获取歌曲URL响应失败: " + response.code());
-                        runOnUiThread(new Runnable() {
-                            @Override
-                            public void run() {
-                                showSafeToast("获取歌曲URL响应失败: " + response.code(), Toast.LENGTH_SHORT);
-                            }
-                        });
+                LogUtil.e(TAG, "获取歌曲URL失败: " + error.getMessage());
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        showSafeToast("获取歌曲URL失败: " + error.getMessage(), Toast.LENGTH_SHORT);
                     }
-                }
-            });
-        } catch (Exception e) {
-            LogUtil.e(TAG, "构建歌曲URL请求时出错: " + e.getMessage());
-            showSafeToast("请求构建失败: " + e.getMessage(), Toast.LENGTH_SHORT);
+                });
+            }
+        };
+        SongUrlBiz songUrlBiz = SongUrlBiz.getInstance(this);
+        SongsList.ResultBean.SongsBean currentSong = getCurrentSong();
+        if (currentSong != null && !currentSong.isLocal() && mids.remove(currentSong.getMid())) {
+            songUrlBiz.resolve(Collections.singletonList(currentSong.getMid()),
+                    RequestScheduler.Priority.FOREGROUND, callback);
+        }
+        if (!mids.isEmpty()) {
+            songUrlBiz.resolve(mids, callback);
         }
     }
 
     /**
-     * 处理歌曲URL数据
+     * 处理歌曲URL数据，每个分片返回时都会调用一次
      *
-     * @param songUrls 包含歌曲播放地址映射的对象
+     * @param urlMap 本次解析到的歌曲 MID 到播放地址的映射
      */
-    private void handleSongUrls(SongUrls songUrls) {
-        if (songUrls != null && songUrls.getCode() == 0 && songUrls.getResult() != null) {
-            int updatedCount = 0;
-
-            // 更新每首歌曲的URL
-            for (SongsList.ResultBean.SongsBean song : songsList) {
-                if (song == null || song.isLocal()) {
-                    continue;
-                }
-                String mid = song.getMid();
-                if (mid != null && songUrls.getResult().getMap().containsKey(mid)) {
-                    String url = songUrls.getResult().getMap().get(mid);
-                    LogUtil.d(TAG, "歌曲 MID: " + mid + ", URL: " + url);
-                    if (url != null && !url.isEmpty()) {
-                        song.setUrl(url); // 确保SongsBean中有setUrl方法
-                        updatedCount++;
-                    }
+    private void handleSongUrls(Map<String, String> urlMap) {
+        SongsList.ResultBean.SongsBean currentSong = getCurrentSong();
+        boolean currentSongUpdated = false;
+
+        // 更新每首歌曲的URL
+        for (SongsList.ResultBean.SongsBean song : songsList) {
+            if (song == null || song.isLocal()) {
+                continue;
+            }
+            String mid = song.getMid();
+            String url = mid != null ? urlMap.get(mid) : null;
+            if (url != null && !url.isEmpty()) {
+                LogUtil.d(TAG, "歌曲 MID: " + mid + ", URL: " + url);
+                if (song == currentSong && !url.equals(song.getUrl())) {
+                    currentSongUpdated = true;
                 }
+                song.setUrl(url);
             }
-            
+        }
+
+        // 只有当前歌曲拿到新地址时才需要（重新）开始播放，其余分片只更新数据
+        if (currentSongUpdated) {
             updateSongInfo();
             playCurrentSongIfReady();
-        } else {
-            LogUtil.e(TAG, "未获取到有效的歌曲URL数据，songUrls对象: " + songUrls);
-            showSafeToast("未获取到有效的歌曲URL数据", Toast.LENGTH_SHORT);
         }
     }
 
@@ -781,13 +734,11 @@ public class PlayerActivity extends BaseActivity implements MusicService.OnPlayb
 
     private void showPlaylistDialog() {
         if (musicService == null) return;
-        List<SongsList.ResultBean.SongsBean> list = musicService.getSongsList();
-        if (list == null) list = new ArrayList<>();
         View dialogView = LayoutInflater.from(this).inflate(R.layout.dialog_playlist, null);
         RecyclerView recycler = dialogView.findViewById(R.id.playlist_recycler);
         recycler.setLayoutManager(new LinearLayoutManager(this));
         PlaylistDialogAdapter adapter = new PlaylistDialogAdapter();
-        adapter.setList(list);
+        adapter.setQueue(musicService.getPlayQueue());
         adapter.setCurrentIndex(musicService.getCurrentPosition());
         adapter.setOnItemPlayListener(new PlaylistDialogAdapter.OnItemPlayListener() {
             @Override
@@ -800,23 +751,30 @@ public class PlayerActivity extends BaseActivity implements MusicService.OnPlayb
         adapter.setOnItemRemoveListener(new PlaylistDialogAdapter.OnItemRemoveListener() {
             @Override
             public void onRemove(int position) {
-                musicService.removeSongAt(position);
-                songsList.clear();
-                songsList.addAll(musicService.getSongsList());
+                // 对话框列表随播放队列的删除通知局部刷新
+                if (!musicService.removeSongAt(position)) return;
                 currentPosition = musicService.getCurrentPosition();
-                adapter.setList(musicService.getSongsList());
                 adapter.setCurrentIndex(currentPosition);
-                if (musicService.getSongsList().isEmpty() && dialog != null && dialog.isShowing()) {
+                if (musicService.getPlayQueue().isEmpty() && dialog != null && dialog.isShowing()) {
                     dialog.dismiss();
                 }
             }
         });
         recycler.setAdapter(adapter);
+        dialogView.findViewById(R.id.playlist_remove_duplicates).setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                int removed = musicService.removeDuplicateSongs();
+                currentPosition = musicService.getCurrentPosition();
+                adapter.setCurrentIndex(currentPosition);
+                showSafeToast(removed > 0 ? getString(R.string.duplicates_removed, removed) : getString(R.string.no_duplicates),
+                        Toast.LENGTH_SHORT);
+            }
+        });
         dialogView.findViewById(R.id.playlist_clear).setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
                 musicService.clearPlaylist();
-                songsList.clear();
                 currentPosition = 0;
                 if (dialog != null && dialog.isShowing()) dialog.dismiss();
             }
@@ -824,6 +782,7 @@ public class PlayerActivity extends BaseActivity implements MusicService.OnPlayb
         dialog = new AlertDialog.Builder(this)
                 .setView(dialogView)
                 .create();
+        dialog.setOnDismissListener(d -> adapter.release());
         dialog.show();
     }
 
@@ -887,6 +846,9 @@ public class PlayerActivity extends BaseActivity implements MusicService.OnPlayb
         if (song.isLocal()) {
             return song.getLocalAudioUri() != null && !song.getLocalAudioUri().isEmpty();
         }
+        if (OfflineDownloadManager.getInstance(this).isDownloaded(song.getMid())) {
+            return true;
+        }
         return song.getUrl() != null && !song.getUrl().isEmpty();
     }
 
@@ -912,8 +874,7 @@ public class PlayerActivity extends BaseActivity implements MusicService.OnPlayb
         SongsList.ResultBean.SongsBean serviceSong = musicService.getCurrentSong();
         boolean serviceHasSameSong = isSameSong(song, serviceSong);
         boolean serviceIsActive = musicService.isPlaying() || musicService.isPaused();
-        musicService.setSongsList(songsList);
-        musicService.setCurrentPosition(currentPosition);
+        syncServiceQueue();
         if (canPlaySong(song)) {
             if (serviceHasSameSong && serviceIsActive) {
                 updateSongInfo();
@@ -923,6 +884,34 @@ public class PlayerActivity extends BaseActivity implements MusicService.OnPlayb
         }
     }
 
+    /**
+     * 界面的歌曲列表与服务的播放队列不同时才重置队列；相同时只切换位置，保留队列条目和随机播放记录。
+     * 同步后界面直接读取播放队列的只读视图，队列的增删不需要再复制到界面
+     */
+    private void syncServiceQueue() {
+        PlayQueue queue = musicService.getPlayQueue();
+        if (!isSameQueue(queue, songsList)) {
+            musicService.setSongsList(songsList);
+        }
+        songsList = queue.asList();
+        musicService.setCurrentPosition(currentPosition);
+    }
+
+    private boolean isSameQueue(PlayQueue queue, List<SongsList.ResultBean.SongsBean> songs) {
+        if (songs == queue.asList()) {
+            return true;
+        }
+        if (queue.size() != songs.size()) {
+            return false;
+        }
+        for (int i = 0; i < songs.size(); i++) {
+            if (!isSameSong(queue.get(i), songs.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private void updateLoopButton(int mode) {
         switch (mode) {
             case MusicService.MODE_LOOP_ALL:
@@ -962,8 +951,7 @@ public class PlayerActivity extends BaseActivity implements MusicService.OnPlayb
 
             // 设置歌曲列表和当前位置
             if (musicService != null) {
-                musicService.setSongsList(songsList);
-                musicService.setCurrentPosition(currentPosition);
+                syncServiceQueue();
                 musicService.setOnPlaybackStateChange(PlayerActivity.this);
                 playCurrentSongIfReady();
             }
@@ -1022,7 +1010,7 @@ public class PlayerActivity extends BaseActivity implements MusicService.OnPlayb
         stopLyricSync();
         
         // 停止进度条更新
-        handler.removeCallbacks(updateSeekBarRunnable);
+        stopProgressUpdate();
         
         // 解绑服务
         if (serviceBound) {
@@ -1049,8 +1037,7 @@ public class PlayerActivity extends BaseActivity implements MusicService.OnPlayb
             startRotateAnimation();
             
             // 确保进度条更新开始
-            handler.removeCallbacks(updateSeekBarRunnable);
-            handler.post(updateSeekBarRunnable);
+            startProgressUpdate();
             
             // 开始歌词同步
             startLyricSync();
@@ -1071,7 +1058,7 @@ public class PlayerActivity extends BaseActivity implements MusicService.OnPlayb
             pauseRotateAnimation();
             
             // 停止进度条更新
-            handler.removeCallbacks(updateSeekBarRunnable);
+            stopProgressUpdate();
             
             // 停止歌词同步
             stopLyricSync();
@@ -1099,7 +1086,7 @@ public class PlayerActivity extends BaseActivity implements MusicService.OnPlayb
             stopRotateAnimation();
             
             // 停止进度条更新
-            handler.removeCallbacks(updateSeekBarRunnable);
+            stopProgressUpdate();
             
             // 停止歌词同步
             stopLyricSync();
@@ -1113,7 +1100,7 @@ public class PlayerActivity extends BaseActivity implements MusicService.OnPlayb
         LogUtil.d(TAG, "收到播放完成事件");
         try {
             stopRotateAnimation();
-            handler.removeCallbacks(updateSeekBarRunnable);
+            stopProgressUpdate();
             stopLyricSync();
         } catch (Exception e) {
             LogUtil.e(TAG, "处理播放完成事件时出错: " + e.getMessage());
@@ -1129,7 +1116,7 @@ public class PlayerActivity extends BaseActivity implements MusicService.OnPlayb
             currentLyricSourceKey = "";
             updateSongInfo();
 
-            handler.removeCallbacks(updateSeekBarRunnable);
+            stopProgressUpdate();
             stopLyricSync();
             stopRotateAnimation();
         } catch (Exception e) {
@@ -1144,7 +1131,7 @@ public class PlayerActivity extends BaseActivity implements MusicService.OnPlayb
             showSafeToast("播放错误: " + error, Toast.LENGTH_SHORT);
             
             // 停止进度条更新
-            handler.removeCallbacks(updateSeekBarRunnable);
+            stopProgressUpdate();
             stopLyricSync();
         } catch (Exception e) {
             LogUtil.e(TAG, "处理错误事件时出错: " + e.getMessage());
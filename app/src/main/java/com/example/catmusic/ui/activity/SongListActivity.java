@@ -10,7 +10,6 @@ import android.widget.Toast;
 
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
-import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -18,27 +17,28 @@ import com.bumptech.glide.Glide;
 import com.example.catmusic.Config;
 import com.example.catmusic.R;
 import com.example.catmusic.adapter.SongsRecyclerViewAdapter;
-import com.example.catmusic.bean.SongUrls;
 import com.example.catmusic.bean.SongsList;
+import com.example.catmusic.biz.OfflineDownloadManager;
+import com.example.catmusic.biz.SongUrlBiz;
+import com.example.catmusic.net.ApiCache;
+import com.example.catmusic.net.RequestScheduler;
+import com.example.catmusic.net.ApiJson;
+import com.example.catmusic.net.ApiMetrics;
 import com.example.catmusic.utils.FavoriteManager;
 import com.example.catmusic.utils.LocalMusicManager;
 import com.example.catmusic.utils.LogUtil;
 import com.google.gson.Gson;
 
-import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-
-import okhttp3.Call;
-import okhttp3.Callback;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
+import java.util.Map;
 
 /**
  * 歌曲列表展示页面。
  * 同时展示远程专辑歌曲与用户长期保存的本地导入歌曲。
+ * 远程专辑可整张下载，或长按单首歌曲下载/删除离线文件；没有网络时展示已下载的歌曲。
  */
 public class SongListActivity extends BaseActivity {
     private static final String TAG = "SongListActivity";
@@ -46,15 +46,27 @@ public class SongListActivity extends BaseActivity {
     private ImageView ablumsIcon;
     private TextView ablumsTitle;
     private TextView importLocalMusicButton;
+    private TextView downloadAlbumButton;
     private RecyclerView songsListView;
-    private OkHttpClient okHttpClient;
     private Gson gson;
     private SongsRecyclerViewAdapter songsAdapter;
     private final List<SongsList.ResultBean.SongsBean> songs = new ArrayList<>();
     private final List<SongsList.ResultBean.SongsBean> remoteSongs = new ArrayList<>();
     private FavoriteManager favoriteManager;
     private LocalMusicManager localMusicManager;
+    private OfflineDownloadManager offlineDownloadManager;
+    private final OfflineDownloadManager.DownloadListener downloadListener = new OfflineDownloadManager.DownloadListener() {
+        @Override
+        public void onDownloadChanged(OfflineDownloadManager.DownloadInfo info) {
+            runOnUiThread(() -> handleDownloadChanged(info));
+        }
+    };
     private boolean isLocalLibraryPage;
+    private int urlLookaheadRows;
+    private SongUrlBiz.Ticket songUrlTicket;
+    // 上一次请求播放地址时的列表窗口，窗口不变时不重复请求
+    private int urlWindowStart = RecyclerView.NO_POSITION;
+    private int urlWindowEnd = RecyclerView.NO_POSITION;
 
     private final ActivityResultLauncher<String[]> importAudioLauncher =
             registerForActivityResult(new ActivityResultContracts.OpenMultipleDocuments(), this::handleImportedAudioUris);
@@ -71,6 +83,7 @@ public class SongListActivity extends BaseActivity {
         setAlbumData();
         initSongsRecyclerAdapter();
         bindImportAction();
+        bindDownloadAction();
         rebuildSongsDisplay();
         if (isLocalLibraryPage) {
             showSafeToast("已进入本地导入曲库", Toast.LENGTH_SHORT);
@@ -84,12 +97,14 @@ public class SongListActivity extends BaseActivity {
         ablumsTitle = fd(R.id.ablums_title);
         songsListView = fd(R.id.albums_list);
         importLocalMusicButton = fd(R.id.btn_import_local_music);
+        downloadAlbumButton = fd(R.id.btn_download_album);
     }
 
     private void initOkHttp() {
-        okHttpClient = new OkHttpClient.Builder().build();
-        gson = new Gson();
+        gson = ApiJson.gson();
         localMusicManager = new LocalMusicManager(this);
+        offlineDownloadManager = OfflineDownloadManager.getInstance(this);
+        urlLookaheadRows = getResources().getInteger(R.integer.song_url_lookahead_rows);
     }
 
     private void initSongsRecyclerAdapter() {
@@ -97,7 +112,15 @@ public class SongListActivity extends BaseActivity {
         favoriteManager = new FavoriteManager(this);
         songsAdapter = new SongsRecyclerViewAdapter(this, songs);
         songsAdapter.setFavoriteManager(favoriteManager);
+        songsAdapter.setOfflineDownloadManager(offlineDownloadManager);
+        songsAdapter.setOnItemLongClickListener(this::toggleSongDownload);
         songsListView.setAdapter(songsAdapter);
+        songsListView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                requestVisibleSongUrls();
+            }
+        });
     }
 
     private void bindImportAction() {
@@ -107,6 +130,88 @@ public class SongListActivity extends BaseActivity {
         }
     }
 
+    private void bindDownloadAction() {
+        if (downloadAlbumButton == null) {
+            return;
+        }
+        downloadAlbumButton.setVisibility(isLocalLibraryPage ? android.view.View.GONE : android.view.View.VISIBLE);
+        downloadAlbumButton.setOnClickListener(v -> downloadAlbum());
+        offlineDownloadManager.addListener(downloadListener);
+    }
+
+    private void downloadAlbum() {
+        if (remoteSongs.isEmpty()) {
+            showSafeToast("歌曲列表尚未加载", Toast.LENGTH_SHORT);
+            return;
+        }
+        int queued = offlineDownloadManager.downloadAlbum(getIntent().getLongExtra("id", 0),
+                getIntent().getStringExtra("title"), getIntent().getStringExtra("pic"), remoteSongs);
+        showSafeToast(queued > 0 ? "已加入下载队列 " + queued + " 首" : "专辑歌曲已全部下载或正在下载", Toast.LENGTH_SHORT);
+        updateDownloadButton();
+    }
+
+    /**
+     * 长按单首歌曲：未下载的开始下载，下载中的取消，已下载的删除离线文件
+     */
+    private void toggleSongDownload(int position) {
+        SongsList.ResultBean.SongsBean song = position >= 0 && position < songs.size() ? songs.get(position) : null;
+        if (song == null || song.isLocal()) {
+            return;
+        }
+        OfflineDownloadManager.DownloadInfo info = offlineDownloadManager.getInfo(song.getMid());
+        if (info != null && info.state != OfflineDownloadManager.State.FAILED) {
+            offlineDownloadManager.delete(song.getMid());
+            showSafeToast(info.state == OfflineDownloadManager.State.COMPLETED ? "已删除离线歌曲" : "已取消下载", Toast.LENGTH_SHORT);
+            return;
+        }
+        offlineDownloadManager.downloadAlbum(getIntent().getLongExtra("id", 0), getIntent().getStringExtra("title"),
+                getIntent().getStringExtra("pic"), Collections.singletonList(song));
+        showSafeToast("开始下载: " + song.getName(), Toast.LENGTH_SHORT);
+    }
+
+    private void handleDownloadChanged(OfflineDownloadManager.DownloadInfo info) {
+        for (int i = 0; i < songs.size(); i++) {
+            SongsList.ResultBean.SongsBean song = songs.get(i);
+            if (song != null && info.mid.equals(song.getMid())) {
+                songsAdapter.notifyItemChanged(i);
+                if (info.state == OfflineDownloadManager.State.FAILED) {
+                    showSafeToast("下载失败: " + song.getName() + ", " + info.error, Toast.LENGTH_SHORT);
+                }
+                break;
+            }
+        }
+        updateDownloadButton();
+    }
+
+    /**
+     * 下载按钮显示专辑的整体进度
+     */
+    private void updateDownloadButton() {
+        if (downloadAlbumButton == null || isLocalLibraryPage) {
+            return;
+        }
+        int done = 0;
+        int active = 0;
+        for (SongsList.ResultBean.SongsBean song : remoteSongs) {
+            OfflineDownloadManager.DownloadInfo info = offlineDownloadManager.getInfo(song.getMid());
+            if (info == null) {
+                continue;
+            }
+            if (info.state == OfflineDownloadManager.State.COMPLETED) {
+                done++;
+            } else if (info.state != OfflineDownloadManager.State.FAILED) {
+                active++;
+            }
+        }
+        if (active > 0) {
+            downloadAlbumButton.setText(getString(R.string.download_progress, done, done + active));
+        } else if (done > 0 && done == remoteSongs.size()) {
+            downloadAlbumButton.setText(R.string.download_done);
+        } else {
+            downloadAlbumButton.setText(R.string.download_album);
+        }
+    }
+
     private void setAlbumData() {
         String pic = getIntent().getStringExtra("pic");
         String title = getIntent().getStringExtra("title");
@@ -124,111 +229,127 @@ public class SongListActivity extends BaseActivity {
 
     private void getRecommendSongs() {
         long albumId = getIntent().getLongExtra("id", 0);
-        String url = Config.getBaseUrl() + Config.API_GET_ALBUM + "?id=" + albumId;
-        LogUtil.d(TAG, "请求专辑歌曲列表: " + url);
-        Request request = new Request.Builder().url(url).build();
+        LogUtil.d(TAG, "请求专辑歌曲列表: " + Config.API_GET_ALBUM + "?id=" + albumId);
 
-        okHttpClient.newCall(request).enqueue(new Callback() {
+        // 有缓存时先用缓存渲染列表，后台校验后只有数据变化才会再次回调
+        ApiCache.getInstance(this).get(Config.API_GET_ALBUM, "id=" + albumId, this, new ApiCache.Listener() {
             @Override
-            public void onFailure(@NonNull Call call, @NonNull IOException e) {
+            public void onData(String jsonData, boolean fromCache) {
+                try {
+                    long decodeStart = System.nanoTime();
+                    SongsList songsList = gson.fromJson(jsonData, SongsList.class);
+                    ApiMetrics.getInstance().record(Config.API_GET_ALBUM, ApiMetrics.Phase.DECODE, decodeStart);
+                    long dispatchStart = System.nanoTime();
+                    runOnUiThread(() -> {
+                        handleSongsData(songsList);
+                        // 从投递到主线程处理完成，包含主线程排队时间
+                        ApiMetrics.getInstance().record(Config.API_GET_ALBUM, ApiMetrics.Phase.UI_DISPATCH, dispatchStart);
+                    });
+                } catch (Exception e) {
+                    LogUtil.e(TAG, "解析歌曲数据失败: " + e.getMessage());
+                    if (!fromCache) {
+                        runOnUiThread(() -> showSafeToast("解析歌曲数据失败", Toast.LENGTH_SHORT));
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e, boolean hasCachedData) {
                 LogUtil.e(TAG, "获取歌曲列表失败: " + e.getMessage());
+                if (hasCachedData) {
+                    return;
+                }
+                List<SongsList.ResultBean.SongsBean> offlineSongs = offlineDownloadManager.getAlbumSongs(albumId);
+                if (offlineSongs != null && !offlineSongs.isEmpty()) {
+                    // 没有网络时展示已下载的歌曲
+                    runOnUiThread(() -> {
+                        showOfflineSongs(offlineSongs);
+                        showSafeToast("网络不可用，显示已下载的 " + offlineSongs.size() + " 首歌曲", Toast.LENGTH_SHORT);
+                    });
+                    return;
+                }
                 runOnUiThread(() -> {
                     rebuildSongsDisplay();
                     showSafeToast("获取歌曲列表失败: " + e.getMessage(), Toast.LENGTH_SHORT);
                 });
             }
-
-            @Override
-            public void onResponse(@NonNull Call call, @NonNull Response response) throws IOException {
-                if (response.isSuccessful() && response.body() != null) {
-                    try {
-                        String jsonData = response.body().string();
-                        SongsList songsList = gson.fromJson(jsonData, SongsList.class);
-                        runOnUiThread(() -> handleSongsData(songsList));
-                    } catch (Exception e) {
-                        LogUtil.e(TAG, "解析歌曲数据失败: " + e.getMessage());
-                        runOnUiThread(() -> showSafeToast("解析歌曲数据失败", Toast.LENGTH_SHORT));
-                    }
-                } else {
-                    LogUtil.e(TAG, "服务器响应失败: " + response.code());
-                    runOnUiThread(() -> showSafeToast("服务器响应失败: " + response.code(), Toast.LENGTH_SHORT));
-                }
-            }
         });
     }
 
-    private void getSongsUrl() {
-        if (remoteSongs.isEmpty()) {
-            rebuildSongsDisplay();
+    /**
+     * 只解析可见区域及其后 {@link #urlLookaheadRows} 行歌曲的播放地址，随滚动逐步扩展；
+     * 窗口移动后，上一窗口中尚未发出的请求会被取消，已在途的请求照常完成并写入缓存
+     */
+    private void requestVisibleSongUrls() {
+        if (isLocalLibraryPage || remoteSongs.isEmpty()) {
             return;
         }
+        LinearLayoutManager layoutManager = (LinearLayoutManager) songsListView.getLayoutManager();
+        int first = layoutManager != null ? layoutManager.findFirstVisibleItemPosition() : RecyclerView.NO_POSITION;
+        int last = layoutManager != null ? layoutManager.findLastVisibleItemPosition() : RecyclerView.NO_POSITION;
+        if (first == RecyclerView.NO_POSITION || last == RecyclerView.NO_POSITION) {
+            // 尚未完成布局时按首屏估算
+            first = 0;
+            last = urlLookaheadRows / 2;
+        }
+        int start = Math.max(0, first);
+        int end = Math.min(songs.size() - 1, last + urlLookaheadRows);
+        if (start == urlWindowStart && end == urlWindowEnd) {
+            return;
+        }
+        urlWindowStart = start;
+        urlWindowEnd = end;
 
-        StringBuilder midUrls = new StringBuilder();
-        for (SongsList.ResultBean.SongsBean song : remoteSongs) {
+        List<String> mids = new ArrayList<>();
+        for (int i = start; i <= end; i++) {
+            SongsList.ResultBean.SongsBean song = songs.get(i);
             if (song == null || song.isLocal()) {
                 continue;
             }
+            String url = song.getUrl();
             String mid = song.getMid();
-            if (mid == null || mid.isEmpty()) {
-                continue;
-            }
-            if (midUrls.length() > 0) {
-                midUrls.append("&");
+            if ((url == null || url.isEmpty()) && mid != null && !mid.isEmpty()) {
+                mids.add(mid);
             }
-            midUrls.append("mid[]=").append(mid);
         }
 
-        if (midUrls.length() == 0) {
-            rebuildSongsDisplay();
-            return;
+        SongUrlBiz.Ticket previousTicket = songUrlTicket;
+        songUrlTicket = mids.isEmpty() ? null : getSongsUrl(mids);
+        // 先登记新窗口再取消旧窗口，两个窗口重叠的 mid 会直接复用在途请求
+        if (previousTicket != null) {
+            previousTicket.cancel();
         }
+    }
 
-        String url = Config.getBaseUrl() + Config.API_GET_SONGS_URL + "?" + midUrls;
-        LogUtil.d(TAG, "请求歌曲URL: " + url);
-        Request request = new Request.Builder().url(url).build();
-
-        okHttpClient.newCall(request).enqueue(new Callback() {
+    private SongUrlBiz.Ticket getSongsUrl(List<String> mids) {
+        LogUtil.d(TAG, "请求歌曲URL，行 " + urlWindowStart + "-" + urlWindowEnd + "，共 " + mids.size() + " 首");
+        // 与随后打开的播放页共享同一次在途请求，避免重复解析同一批 mid
+        return SongUrlBiz.getInstance(this).resolve(mids, new SongUrlBiz.SongUrlCallback() {
             @Override
-            public void onFailure(@NonNull Call call, @NonNull IOException e) {
-                LogUtil.e(TAG, "获取歌曲URL失败: " + e.getMessage());
-                runOnUiThread(() -> showSafeToast("获取歌曲URL失败: " + e.getMessage(), Toast.LENGTH_SHORT));
+            public void onUrlsResolved(Map<String, String> urlMap) {
+                // 每个分片返回后立即刷新列表
+                runOnUiThread(() -> handleSongUrls(urlMap));
             }
 
             @Override
-            public void onResponse(@NonNull Call call, @NonNull Response response) throws IOException {
-                if (response.isSuccessful() && response.body() != null) {
-                    try {
-                        String jsonData = response.body().string();
-                        SongUrls songUrls = gson.fromJson(jsonData, SongUrls.class);
-                        runOnUiThread(() -> handleSongUrls(songUrls));
-                    } catch (Exception e) {
-                        LogUtil.e(TAG, "解析歌曲URL数据失败: " + e.getMessage());
-                        runOnUiThread(() -> showSafeToast("解析歌曲URL数据失败", Toast.LENGTH_SHORT));
-                    }
-                } else {
-                    LogUtil.e(TAG, "获取歌曲URL响应失败: " + response.code());
-                    runOnUiThread(() -> showSafeToast("获取歌曲URL响应失败: " + response.code(), Toast.LENGTH_SHORT));
+            public void onComplete(Exception error) {
+                if (error != null) {
+                    LogUtil.e(TAG, "获取歌曲URL失败: " + error.getMessage());
+                    runOnUiThread(() -> showSafeToast("获取歌曲URL失败: " + error.getMessage(), Toast.LENGTH_SHORT));
                 }
             }
         });
     }
 
-    private void handleSongUrls(SongUrls songUrls) {
-        if (songUrls != null && songUrls.getCode() == 0 && songUrls.getResult() != null) {
-            for (SongsList.ResultBean.SongsBean song : remoteSongs) {
-                String mid = song.getMid();
-                if (mid != null && songUrls.getResult().getMap().containsKey(mid)) {
-                    String url = songUrls.getResult().getMap().get(mid);
-                    if (url != null && !url.isEmpty()) {
-                        song.setUrl(url);
-                    }
-                }
+    private void handleSongUrls(Map<String, String> urlMap) {
+        for (SongsList.ResultBean.SongsBean song : remoteSongs) {
+            String mid = song.getMid();
+            String url = mid != null ? urlMap.get(mid) : null;
+            if (url != null && !url.isEmpty()) {
+                song.setUrl(url);
             }
-            rebuildSongsDisplay();
-        } else {
-            LogUtil.e(TAG, "未获取到有效的歌曲URL数据，songUrls对象: " + songUrls);
-            showSafeToast("未获取到有效的歌曲URL数据", Toast.LENGTH_SHORT);
         }
+        rebuildSongsDisplay();
     }
 
     private void handleSongsData(SongsList songsListResponse) {
@@ -241,7 +362,30 @@ public class SongListActivity extends BaseActivity {
             }
         }
         rebuildSongsDisplay();
-        getSongsUrl();
+        updateDownloadButton();
+        urlWindowStart = RecyclerView.NO_POSITION;
+        urlWindowEnd = RecyclerView.NO_POSITION;
+        // 等列表完成布局后再按可见区域请求播放地址
+        songsListView.post(this::requestVisibleSongUrls);
+    }
+
+    private void showOfflineSongs(List<SongsList.ResultBean.SongsBean> offlineSongs) {
+        remoteSongs.clear();
+        remoteSongs.addAll(offlineSongs);
+        rebuildSongsDisplay();
+        updateDownloadButton();
+    }
+
+    @Override
+    protected void onDestroy() {
+        offlineDownloadManager.removeListener(downloadListener);
+        if (songUrlTicket != null) {
+            songUrlTicket.cancel();
+            songUrlTicket = null;
+        }
+        // 离开页面后不再需要尚未返回的歌单请求
+        RequestScheduler.getInstance().cancelAll(this);
+        super.onDestroy();
     }
 
     private void rebuildSongsDisplay() {
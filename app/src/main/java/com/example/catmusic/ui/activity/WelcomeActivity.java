@@ -9,6 +9,7 @@ import android.widget.Button;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.catmusic.R;
+import com.example.catmusic.net.ConnectionWarmer;
 
 /**
  * 欢迎页面Activity
@@ -31,7 +32,7 @@ public class WelcomeActivity extends AppCompatActivity
     /**
      * Activity的入口方法，在创建Activity时被系统调用
      * 设置布局文件，初始化视图和事件监听器
-     * 启动3秒延时跳转到主页的定时器
+     * 启动3秒延时跳转到主页的定时器，并利用欢迎页展示的时间预热服务器和图片CDN的连接
      * @param savedInstanceState 保存的Activity状态信息
      */
     @Override
@@ -45,6 +46,7 @@ public class WelcomeActivity extends AppCompatActivity
         initView();
         initEvent();
 
+        ConnectionWarmer.getInstance().warmUp();
         mHandler.postDelayed(mRunnableToLogin, 3000);
     }
 
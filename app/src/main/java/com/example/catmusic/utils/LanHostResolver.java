@@ -2,21 +2,42 @@ package com.example.catmusic.utils;
 
 import android.os.Build;
 
+import androidx.annotation.NonNull;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
 import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.net.SocketException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
 
 /**
  * 解析用于拼接 API 基础地址的主机名或 IP。
  * 模拟器（含未命中指纹检测但网卡为 10.0.2.x 的 QEMU NAT 环境）返回 10.0.2.2 以访问宿主机；
  * 真机返回本机当前活跃网卡上的私网 IPv4。
+ * 也可以并发探测所有可能的主机，以第一个正常响应 {@code /api/serverBase} 的主机为准。
  */
 public final class LanHostResolver {
+    private static final String TAG = "LanHostResolver";
+    public static final String EMULATOR_HOST = "10.0.2.2";
 
     private LanHostResolver() {
     }
@@ -26,52 +47,164 @@ public final class LanHostResolver {
      * 用于向宿主机发起引导请求（{@code 10.0.2.2}）以拉取电脑真实局域网 IPv4。
      */
     public static boolean isLikelyEmulatorNatNetwork() {
-        if (isAndroidEmulator()) {
-            return true;
-        }
-        return hasIpv4In10_0_2Subnet();
+        return snapshot().isLikelyEmulatorNat();
     }
 
     public static String resolveServerHost() {
-        if (isAndroidEmulator() || hasIpv4In10_0_2Subnet()) {
-            return "10.0.2.2";
+        return resolveServerHost(snapshot());
+    }
+
+    /**
+     * 根据已枚举的网卡信息推测主机，不发起网络请求
+     */
+    public static String resolveServerHost(NetworkSnapshot snapshot) {
+        if (snapshot.isLikelyEmulatorNat()) {
+            return EMULATOR_HOST;
+        }
+        for (String[] pair : snapshot.addresses) {
+            String lower = pair[0].toLowerCase(Locale.US);
+            if (lower.startsWith("wlan") || lower.startsWith("eth") || lower.startsWith("en")) {
+                return pair[1];
+            }
+        }
+        if (!snapshot.addresses.isEmpty()) {
+            return snapshot.addresses.get(0)[1];
         }
-        List<String[]> candidates = new ArrayList<>();
+        return "127.0.0.1";
+    }
+
+    /**
+     * 枚举一次网卡，收集活跃网卡上的私网 IPv4 以及模拟器特征
+     */
+    public static NetworkSnapshot snapshot() {
+        List<String[]> addresses = new ArrayList<>();
+        boolean in10_0_2Subnet = false;
         try {
             Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
-            while (interfaces.hasMoreElements()) {
+            while (interfaces != null && interfaces.hasMoreElements()) {
                 NetworkInterface ni = interfaces.nextElement();
                 if (!ni.isUp() || ni.isLoopback()) {
                     continue;
                 }
                 String name = ni.getName();
-                Enumeration<InetAddress> addresses = ni.getInetAddresses();
-                while (addresses.hasMoreElements()) {
-                    InetAddress addr = addresses.nextElement();
-                    if (!(addr instanceof Inet4Address)
-                            || addr.isLoopbackAddress()
-                            || addr.isLinkLocalAddress()) {
+                Enumeration<InetAddress> inetAddresses = ni.getInetAddresses();
+                while (inetAddresses.hasMoreElements()) {
+                    InetAddress addr = inetAddresses.nextElement();
+                    if (!(addr instanceof Inet4Address)) {
                         continue;
                     }
-                    if (!isPrivateIpv4(addr)) {
+                    String ip = addr.getHostAddress();
+                    // AOSP 模拟器客户机通常落在 10.0.2.0/24；误把 10.0.2.15 当服务器会导致连接失败
+                    if (ip != null && ip.startsWith("10.0.2.")) {
+                        in10_0_2Subnet = true;
+                    }
+                    if (addr.isLoopbackAddress() || addr.isLinkLocalAddress() || !isPrivateIpv4(addr)) {
                         continue;
                     }
-                    candidates.add(new String[]{name, addr.getHostAddress()});
+                    addresses.add(new String[]{name, ip});
                 }
             }
         } catch (SocketException ignored) {
             // fall through
         }
-        for (String[] pair : candidates) {
-            String lower = pair[0].toLowerCase(Locale.US);
-            if (lower.startsWith("wlan") || lower.startsWith("eth") || lower.startsWith("en")) {
-                return pair[1];
+        return new NetworkSnapshot(addresses, isAndroidEmulator(), in10_0_2Subnet);
+    }
+
+    /**
+     * 探测候选主机，按优先级排列：上次可用的主机、模拟器宿主机、各私网 /24 网段的网关（.1）、本机 IP
+     * @param lastKnownGood 上次探测成功的主机，可为 null
+     */
+    public static List<String> probeCandidates(NetworkSnapshot snapshot, String lastKnownGood) {
+        Set<String> hosts = new LinkedHashSet<>();
+        if (lastKnownGood != null && !lastKnownGood.isEmpty()) {
+            hosts.add(lastKnownGood);
+        }
+        if (snapshot.isLikelyEmulatorNat()) {
+            hosts.add(EMULATOR_HOST);
+        }
+        for (String[] pair : snapshot.addresses) {
+            String ip = pair[1];
+            if (ip.startsWith("10.0.2.")) {
+                continue;
             }
+            // 手机连接电脑热点时，电脑通常就是网关
+            hosts.add(ip.substring(0, ip.lastIndexOf('.') + 1) + "1");
         }
-        if (!candidates.isEmpty()) {
-            return candidates.get(0)[1];
+        for (String[] pair : snapshot.addresses) {
+            if (!pair[1].startsWith("10.0.2.")) {
+                hosts.add(pair[1]);
+            }
         }
-        return "127.0.0.1";
+        return new ArrayList<>(hosts);
+    }
+
+    /**
+     * 并发向所有候选主机请求 {@code /api/serverBase}，返回第一个正常响应的结果，其余请求随即取消
+     * 阻塞调用，需在后台线程执行。
+     * @return 获胜的探测结果，全部失败或超时返回 null
+     */
+    public static ProbeResult race(OkHttpClient client, List<String> hosts, int port, String apiPath, long timeoutMillis) {
+        if (hosts.isEmpty()) {
+            return null;
+        }
+        long start = System.currentTimeMillis();
+        CountDownLatch finished = new CountDownLatch(1);
+        AtomicReference<ProbeResult> winner = new AtomicReference<>();
+        AtomicInteger remaining = new AtomicInteger(hosts.size());
+        List<Call> calls = new ArrayList<>();
+        for (String host : hosts) {
+            Request request = new Request.Builder()
+                    .url("http://" + host + ":" + port + "/" + apiPath)
+                    .get()
+                    .build();
+            Call call = client.newCall(request);
+            calls.add(call);
+            call.enqueue(new Callback() {
+                @Override
+                public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                    onDone();
+                }
+
+                @Override
+                public void onResponse(@NonNull Call call, @NonNull Response response) {
+                    try (Response r = response) {
+                        if (r.isSuccessful() && r.body() != null) {
+                            JSONObject root = new JSONObject(r.body().string());
+                            JSONObject result = root.optJSONObject("result");
+                            if (root.optInt("code", -1) == 0 && result != null) {
+                                String reportedBaseUrl = result.optString("baseUrl", "").trim();
+                                ProbeResult probe = new ProbeResult(host, reportedBaseUrl,
+                                        System.currentTimeMillis() - start);
+                                if (winner.compareAndSet(null, probe)) {
+                                    finished.countDown();
+                                }
+                            }
+                        }
+                    } catch (Exception ignored) {
+                        // 非 CatMusic 服务的响应，视为探测失败
+                    }
+                    onDone();
+                }
+
+                private void onDone() {
+                    if (remaining.decrementAndGet() == 0) {
+                        finished.countDown();
+                    }
+                }
+            });
+        }
+        try {
+            finished.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Call call : calls) {
+            call.cancel();
+        }
+        ProbeResult result = winner.get();
+        LogUtil.d(TAG, "并发探测 " + hosts.size() + " 个主机 " + hosts + "，结果: "
+                + (result != null ? result.host + "（" + result.elapsedMillis + "ms）" : "无可用主机"));
+        return result;
     }
 
     private static boolean isPrivateIpv4(InetAddress addr) {
@@ -102,31 +235,51 @@ public final class LanHostResolver {
     }
 
     /**
-     * AOSP 模拟器客户机通常落在 10.0.2.0/24；误把 10.0.2.15 当服务器会导致连接失败。
+     * 一次网卡枚举的结果
      */
-    private static boolean hasIpv4In10_0_2Subnet() {
-        try {
-            Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
-            while (interfaces.hasMoreElements()) {
-                NetworkInterface ni = interfaces.nextElement();
-                if (!ni.isUp() || ni.isLoopback()) {
-                    continue;
-                }
-                Enumeration<InetAddress> addresses = ni.getInetAddresses();
-                while (addresses.hasMoreElements()) {
-                    InetAddress addr = addresses.nextElement();
-                    if (!(addr instanceof Inet4Address)) {
-                        continue;
-                    }
-                    String ip = addr.getHostAddress();
-                    if (ip != null && ip.startsWith("10.0.2.")) {
-                        return true;
-                    }
-                }
+    public static final class NetworkSnapshot {
+        // {网卡名, 私网 IPv4}
+        final List<String[]> addresses;
+        final boolean emulator;
+        final boolean in10_0_2Subnet;
+
+        NetworkSnapshot(List<String[]> addresses, boolean emulator, boolean in10_0_2Subnet) {
+            this.addresses = addresses;
+            this.emulator = emulator;
+            this.in10_0_2Subnet = in10_0_2Subnet;
+        }
+
+        public boolean isLikelyEmulatorNat() {
+            return emulator || in10_0_2Subnet;
+        }
+
+        /**
+         * 网络标识：各网卡名及所在 /24 网段，连接同一个 Wi-Fi 时保持不变，用于按网络记忆探测结果
+         */
+        public String identity() {
+            List<String> parts = new ArrayList<>();
+            for (String[] pair : addresses) {
+                parts.add(pair[0] + "@" + pair[1].substring(0, pair[1].lastIndexOf('.')));
             }
-        } catch (SocketException ignored) {
-            // fall through
+            Collections.sort(parts);
+            return (isLikelyEmulatorNat() ? "emu|" : "") + String.join(",", parts);
+        }
+    }
+
+    /**
+     * 探测结果
+     */
+    public static final class ProbeResult {
+        /** 实际响应的主机 */
+        public final String host;
+        /** 服务器自报的 baseUrl，可能为空 */
+        public final String reportedBaseUrl;
+        public final long elapsedMillis;
+
+        ProbeResult(String host, String reportedBaseUrl, long elapsedMillis) {
+            this.host = host;
+            this.reportedBaseUrl = reportedBaseUrl;
+            this.elapsedMillis = elapsedMillis;
         }
-        return false;
     }
 }
@@ -0,0 +1,17 @@
+package com.example.catmusic.net;
+
+import android.content.Context;
+
+/**
+ * 接口 JSON 解码基准测试的 release 空实现。
+ * 基准测试和它使用的测试数据只在 debug 构建中（src/debug），release 构建不打包。
+ */
+public final class ApiJsonBenchmark {
+
+    private ApiJsonBenchmark() {
+    }
+
+    public static String run(Context context) {
+        return "release 构建不包含JSON解码基准测试，请使用 debug 构建";
+    }
+}